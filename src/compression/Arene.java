@@ -0,0 +1,113 @@
+package compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Arene d'allocation des plans hors du tas.
+ * 
+ * <p>
+ * Les plans de coefficients et d'etiquettes alloues par une arene sont stockes
+ * dans des ByteBuffer directs : ils ne pesent pas sur le tas, quelle que soit
+ * la taille de l'image. A la fermeture de l'arene (ou du plan), les plans sont
+ * fermes : tout acces ulterieur leve une IllegalStateException, et leur
+ * memoire est rendue par le ramasse-miettes des qu'ils ne sont plus
+ * references.
+ * </p>
+ * 
+ * <p>
+ * Une arene est prevue pour la duree d'un codage ou d'un decodage :
+ * </p>
+ * 
+ * <pre>
+ * Arene arene = new Arene();
+ * try {
+ * 	PlanCoefficients plan = TraitImage.centrageImage(image, 0, arene);
+ * 	TraitImage.haar2D_multi(plan, niv_resol);
+ * 	new CodageZTW(CodageZTW.STOCKAGE_HORS_TAS).ztw_code(plan, ...);
+ * } finally {
+ * 	arene.close();
+ * }
+ * </pre>
+ * 
+ * <p>
+ * Un plan ne doit plus etre utilise apres la fermeture de son arene.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public class Arene implements Closeable {
+
+	private final ArrayList<Closeable> ressources = new ArrayList<Closeable>();
+	private boolean fermee = false;
+
+	public Arene() {
+	}
+
+	/**
+	 * Allocation d'un plan de coefficients hors du tas, initialise a 0.
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return plan libere a la fermeture de l'arene
+	 */
+	public PlanCoefficients allouerCoefficients(int hauteur, int largeur) {
+		verifierOuverte();
+		return enregistrer(new PlanCoefficientsTampon(this, hauteur, largeur));
+	}
+
+	/**
+	 * Allocation d'un plan d'etiquettes hors du tas, initialise a 0.
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return plan libere a la fermeture de l'arene
+	 */
+	public PlanEtiquettes allouerEtiquettes(int hauteur, int largeur) {
+		verifierOuverte();
+		return enregistrer(new PlanEtiquettesTampon(hauteur, largeur));
+	}
+
+	/**
+	 * Confie une ressource a l'arene : elle sera fermee avec l'arene.
+	 * @param ressource
+	 * @return la ressource
+	 */
+	public synchronized <T extends Closeable> T enregistrer(T ressource) {
+		verifierOuverte();
+		ressources.add(ressource);
+		return ressource;
+	}
+
+	/**
+	 * @return vrai si l'arene a ete fermee
+	 */
+	public synchronized boolean estFermee() {
+		return fermee;
+	}
+
+	private synchronized void verifierOuverte() {
+		if (fermee)
+			throw new IllegalStateException("Arene deja fermee");
+	}
+
+	/**
+	 * Fermeture de toutes les ressources, dans l'ordre inverse d'allocation.
+	 */
+	public synchronized void close() throws IOException {
+		if (fermee)
+			return;
+		fermee = true;
+		IOException erreur = null;
+		for (int k = ressources.size() - 1; k >= 0; k--) {
+			try {
+				ressources.get(k).close();
+			} catch (IOException e) {
+				if (erreur == null)
+					erreur = e;
+			}
+		}
+		ressources.clear();
+		if (erreur != null)
+			throw erreur;
+	}
+}
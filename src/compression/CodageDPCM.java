@@ -0,0 +1,614 @@
+package compression;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * CodageDPCM code sans perte les residus d'une prediction AR 2D
+ * (TraitImage.predictionAR2d avec un pas de 1 sur une image entiere) par des
+ * codes de Golomb-Rice adaptatifs.
+ *
+ * <p>
+ * Chaque residu e est ramene a un entier positif m par entrelacement des
+ * signes (0, -1, 1, -2, 2... devient 0, 1, 2, 3, 4...), puis code avec le
+ * parametre k de son contexte : m >> k en unaire, puis les k bits de poids
+ * faible. Le contexte est l'ordre de grandeur de l'activite locale, somme des
+ * residus deja codes a gauche et au-dessus. Chaque contexte tient la moyenne
+ * des m qu'il a codes (somme et effectif, divises par deux regulierement) et
+ * en deduit k, comme dans LOCO-I. Un quotient trop long est remplace par un
+ * echappement suivi de m sur 32 bits.
+ * </p>
+ *
+ * <p>
+ * Le codage et le decodage se font en une seule passe, ligne par ligne, sans
+ * allocation par pixel : les bits passent par un accumulateur de 64 bits et un
+ * tampon d'octets reutilise.
+ * </p>
+ *
+ * <p>
+ * Format du flux : {@link #MAGIQUE}, hauteur et largeur (int), moyenne
+ * (double), dimensions du predicteur (octets) et coefficients (double), puis
+ * les residus dans l'ordre des lignes, le dernier octet complete par des zeros.
+ * </p>
+ *
+ * <p>
+ * Avec un predicteur par tuile (TraitImage.predictionAR2dTuiles), le flux
+ * commence par {@link #MAGIQUE_TUILES} ; apres les dimensions du predicteur
+ * viennent le cote des tuiles (int) et le predicteur par defaut, puis pour
+ * chaque tuile, dans l'ordre des lignes, un octet : 0 si elle emploie le
+ * predicteur par defaut, 1 suivi de son propre predicteur. Les coefficients
+ * sont en virgule fixe sur 16 bits (12 bits de partie fractionnaire, voir
+ * {@link #coefficientSignale(double)}), sans celui du pixel predit. Les
+ * residus suivent comme ci-dessus.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class CodageDPCM {
+
+	/**
+	 * Debut d'un flux DPCM : 'DPCM'
+	 */
+	public static final int MAGIQUE = 0x4450434D;
+
+	/**
+	 * Debut d'un flux DPCM a predicteurs par tuile : 'DPCT'
+	 */
+	public static final int MAGIQUE_TUILES = 0x44504354;
+
+	/**
+	 * Echelle des coefficients signales par tuile (12 bits fractionnaires)
+	 */
+	private static final double ECHELLE = 1 << 12;
+
+	/**
+	 * Nombre de contextes (ordres de grandeur de l'activite)
+	 */
+	private static final int CONTEXTES = 16;
+
+	/**
+	 * Longueur maximale du quotient unaire ; au-dela, echappement
+	 */
+	private static final int LIMITE = 24;
+
+	/**
+	 * Effectif d'un contexte au-dela duquel somme et effectif sont divises par deux
+	 */
+	private static final int REMISE = 64;
+
+	private static final int TAILLE_TAMPON = 1 << 16;
+
+	private final long[] somme = new long[CONTEXTES];
+	private final int[] effectif = new int[CONTEXTES];
+	private final byte[] tampon = new byte[TAILLE_TAMPON];
+
+	private double[][] coeffs;
+	private double[][][][] coeffsTuiles;
+	private int tuile;
+	private double moyenne;
+
+	public CodageDPCM() {
+	}
+
+	/**
+	 * Codage des residus dans un fichier.
+	 * @param err residus entiers [hauteur][largeur]
+	 * @param coeffs coefficients du predicteur, memorises pour le decodage
+	 * @param moyenne moyenne retiree de l'image, memorisee pour le decodage
+	 * @param bitstream_name nom du fichier de stockage du flux binaire
+	 * @return taille du flux en octets
+	 * @throws IOException
+	 */
+	public long code(double[][] err, double[][] coeffs, double moyenne,
+			String bitstream_name) throws IOException {
+		OutputStream os = new FileOutputStream(bitstream_name);
+		try {
+			return code(err, coeffs, moyenne, os);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Codage des residus dans un flux (non ferme).
+	 * @param err residus entiers [hauteur][largeur]
+	 * @param coeffs coefficients du predicteur
+	 * @param moyenne moyenne retiree de l'image
+	 * @param os flux de sortie
+	 * @return nombre d'octets ecrits
+	 * @throws IOException
+	 * @throws IllegalArgumentException si un residu n'est pas un entier sur 32 bits
+	 */
+	public long code(double[][] err, double[][] coeffs, double moyenne,
+			OutputStream os) throws IOException {
+		int hauteur = err.length;
+		int largeur = hauteur == 0 ? 0 : err[0].length;
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(MAGIQUE);
+		dos.writeInt(hauteur);
+		dos.writeInt(largeur);
+		dos.writeDouble(moyenne);
+		dos.writeByte(coeffs.length);
+		dos.writeByte(coeffs.length == 0 ? 0 : coeffs[0].length);
+		for (double[] ligne : coeffs)
+			for (double c : ligne)
+				dos.writeDouble(c);
+		dos.flush();
+		return dos.size() + coderResidus(err, os);
+	}
+
+	/**
+	 * Codage dans un fichier des residus d'une prediction par tuile.
+	 * @param err residus entiers [hauteur][largeur]
+	 * @param defaut predicteur signale une seule fois, pour toutes les tuiles
+	 *            qui l'emploient
+	 * @param coeffs predicteurs [tuiles sur i][tuiles sur j][K][L], signales
+	 *            tels quels (voir {@link #coefficientSignale(double)})
+	 * @param tuile cote des tuiles
+	 * @param moyenne moyenne retiree de l'image
+	 * @param bitstream_name nom du fichier de stockage du flux binaire
+	 * @return taille du flux en octets
+	 * @throws IOException
+	 */
+	public long code(double[][] err, double[][] defaut, double[][][][] coeffs,
+			int tuile, double moyenne, String bitstream_name)
+			throws IOException {
+		OutputStream os = new FileOutputStream(bitstream_name);
+		try {
+			return code(err, defaut, coeffs, tuile, moyenne, os);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Codage dans un flux (non ferme) des residus d'une prediction par tuile.
+	 * @param err residus entiers [hauteur][largeur]
+	 * @param defaut predicteur signale une seule fois, pour toutes les tuiles
+	 *            qui l'emploient
+	 * @param coeffs predicteurs [tuiles sur i][tuiles sur j][K][L]
+	 * @param tuile cote des tuiles
+	 * @param moyenne moyenne retiree de l'image
+	 * @param os flux de sortie
+	 * @return nombre d'octets ecrits
+	 * @throws IOException
+	 * @throws IllegalArgumentException si un coefficient n'est pas representable
+	 *             sur 16 bits, si celui du pixel predit n'est pas nul, si les
+	 *             tuiles ne couvrent pas l'image ou si un residu n'est pas un
+	 *             entier sur 32 bits
+	 */
+	public long code(double[][] err, double[][] defaut, double[][][][] coeffs,
+			int tuile, double moyenne, OutputStream os) throws IOException {
+		int hauteur = err.length;
+		int largeur = hauteur == 0 ? 0 : err[0].length;
+		if (tuile <= 0 || coeffs.length != (hauteur + tuile - 1) / tuile
+				|| coeffs.length > 0
+				&& coeffs[0].length != (largeur + tuile - 1) / tuile)
+			throw new IllegalArgumentException("Tuiles de " + tuile
+					+ " pixels incompatibles avec une image " + hauteur + " x "
+					+ largeur);
+		int K = defaut.length;
+		int L = K == 0 ? 0 : defaut[0].length;
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(MAGIQUE_TUILES);
+		dos.writeInt(hauteur);
+		dos.writeInt(largeur);
+		dos.writeDouble(moyenne);
+		dos.writeByte(K);
+		dos.writeByte(L);
+		dos.writeInt(tuile);
+		ecrireCoefficients(dos, defaut, K, L);
+		// un octet par tuile : 0 pour le predicteur par defaut, 1 suivi des
+		// coefficients de la tuile
+		for (double[][][] ligne : coeffs)
+			for (double[][] c : ligne)
+				if (Arrays.deepEquals(c, defaut))
+					dos.writeByte(0);
+				else {
+					dos.writeByte(1);
+					ecrireCoefficients(dos, c, K, L);
+				}
+		dos.flush();
+		return dos.size() + coderResidus(err, os);
+	}
+
+	/**
+	 * Coefficients d'un predicteur K x L en virgule fixe sur 16 bits, sans
+	 * celui du pixel predit
+	 */
+	private static void ecrireCoefficients(DataOutputStream dos, double[][] c,
+			int K, int L) throws IOException {
+		if (c.length != K || K > 0 && (c[0].length != L || c[K - 1][L - 1] != 0))
+			throw new IllegalArgumentException(
+					"Predicteur de tuile non causal ou de dimensions differentes");
+		for (int k = 0; k < K; k++)
+			for (int l = 0; l < L; l++)
+				if (k < K - 1 || l < L - 1) {
+					double v = c[k][l] * ECHELLE;
+					if (v != (short) v)
+						throw new IllegalArgumentException(
+								"Coefficient non representable sur 16 bits : "
+										+ c[k][l]);
+					dos.writeShort((short) v);
+				}
+	}
+
+	private static double[][] lireCoefficients(DataInputStream dis, int K,
+			int L) throws IOException {
+		double[][] c = new double[K][L];
+		for (int k = 0; k < K; k++)
+			for (int l = 0; l < L; l++)
+				if (k < K - 1 || l < L - 1)
+					c[k][l] = dis.readShort() / ECHELLE;
+		return c;
+	}
+
+	/**
+	 * Valeur d'un coefficient telle qu'elle est signalee dans un flux par
+	 * tuile : arrondi au 1/4096 le plus proche, sature sur 16 bits. Le codeur
+	 * doit predire avec ces valeurs, les seules connues du decodeur.
+	 * @param c coefficient estime
+	 * @return coefficient signale
+	 */
+	public static double coefficientSignale(double c) {
+		double v = Math.rint(c * ECHELLE);
+		if (!(v >= Short.MIN_VALUE))
+			v = c != c ? 0 : Short.MIN_VALUE;
+		else if (v > Short.MAX_VALUE)
+			v = Short.MAX_VALUE;
+		return v / ECHELLE;
+	}
+
+	/**
+	 * Codage des residus apres l'entete
+	 * @return nombre d'octets ecrits
+	 */
+	private long coderResidus(double[][] err, OutputStream os)
+			throws IOException {
+		int hauteur = err.length;
+		int largeur = hauteur == 0 ? 0 : err[0].length;
+		initialiserContextes();
+		Ecrivain e = new Ecrivain(os, tampon);
+		int[] activite = new int[largeur];
+		for (int i = 0; i < hauteur; i++) {
+			double[] ligne = err[i];
+			int gauche = 0;
+			for (int j = 0; j < largeur; j++) {
+				double v = ligne[j];
+				int r = (int) v;
+				if (r != v)
+					throw new IllegalArgumentException("Residu non entier en ("
+							+ i + ", " + j + ") : " + v);
+				int ctx = contexte(gauche + activite[j]);
+				int k = parametre(ctx);
+				int m = (r << 1) ^ (r >> 31);
+				int q = m >>> k;
+				if (q < LIMITE) {
+					e.ecrire(((1 << q) - 1) << 1, q + 1);
+					if (k > 0)
+						e.ecrire(m & ((1 << k) - 1), k);
+				} else {
+					e.ecrire((1 << LIMITE) - 1, LIMITE);
+					e.ecrire(m, 32);
+				}
+				actualiser(ctx, m);
+				// |r| borne pour que la somme de deux activites tienne sur un int
+				int a = r == Integer.MIN_VALUE ? Integer.MAX_VALUE : Math.abs(r);
+				gauche = a >> 1;
+				activite[j] = a >> 1;
+			}
+		}
+		return e.terminer();
+	}
+
+	/**
+	 * Decodage d'un fichier ; coefficients et moyenne sont ensuite donnes par
+	 * {@link #coefficients()} et {@link #moyenne()}.
+	 * @param bitstream_name nom du fichier du flux binaire
+	 * @return residus [hauteur][largeur]
+	 * @throws IOException
+	 */
+	public double[][] decode(String bitstream_name) throws IOException {
+		InputStream is = new FileInputStream(bitstream_name);
+		try {
+			return decode(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Decodage d'un flux (non ferme, lu au-dela de la fin des residus).
+	 * @param is flux d'entree
+	 * @return residus [hauteur][largeur]
+	 * @throws IOException
+	 */
+	public double[][] decode(InputStream is) throws IOException {
+		DataInputStream dis = new DataInputStream(is);
+		int magique = dis.readInt();
+		if (magique != MAGIQUE && magique != MAGIQUE_TUILES)
+			throw new IOException("Ce n'est pas un flux DPCM");
+		int hauteur = dis.readInt();
+		int largeur = dis.readInt();
+		if (hauteur < 0 || largeur < 0)
+			throw new IOException("Dimensions invalides : " + hauteur + " x "
+					+ largeur);
+		moyenne = dis.readDouble();
+		int K = dis.readUnsignedByte();
+		int L = dis.readUnsignedByte();
+		if (magique == MAGIQUE) {
+			tuile = 0;
+			coeffsTuiles = null;
+			coeffs = new double[K][L];
+			for (int k = 0; k < K; k++)
+				for (int l = 0; l < L; l++)
+					coeffs[k][l] = dis.readDouble();
+		} else {
+			tuile = dis.readInt();
+			if (tuile <= 0)
+				throw new IOException("Cote de tuile invalide : " + tuile);
+			coeffs = null;
+			int ti = (hauteur + tuile - 1) / tuile;
+			int tj = (largeur + tuile - 1) / tuile;
+			double[][] defaut = lireCoefficients(dis, K, L);
+			coeffsTuiles = new double[ti][tj][][];
+			for (double[][][] ligne : coeffsTuiles)
+				for (int t = 0; t < tj; t++)
+					switch (dis.readUnsignedByte()) {
+					case 0:
+						ligne[t] = defaut;
+						break;
+					case 1:
+						ligne[t] = lireCoefficients(dis, K, L);
+						break;
+					default:
+						throw new IOException("Predicteur de tuile invalide");
+					}
+		}
+		return decoderResidus(is, hauteur, largeur);
+	}
+
+	/**
+	 * Decodage des residus apres l'entete
+	 */
+	private double[][] decoderResidus(InputStream is, int hauteur, int largeur)
+			throws IOException {
+		initialiserContextes();
+		Lecteur lec = new Lecteur(is, tampon);
+		double[][] err = new double[hauteur][largeur];
+		int[] activite = new int[largeur];
+		for (int i = 0; i < hauteur; i++) {
+			double[] ligne = err[i];
+			int gauche = 0;
+			for (int j = 0; j < largeur; j++) {
+				int ctx = contexte(gauche + activite[j]);
+				int k = parametre(ctx);
+				int q = lec.unaire(LIMITE);
+				int m;
+				if (q < LIMITE)
+					m = (q << k) | (k > 0 ? lec.lire(k) : 0);
+				else
+					m = lec.lire(32);
+				actualiser(ctx, m);
+				int r = (m >>> 1) ^ -(m & 1);
+				ligne[j] = r;
+				int a = r == Integer.MIN_VALUE ? Integer.MAX_VALUE : Math.abs(r);
+				gauche = a >> 1;
+				activite[j] = a >> 1;
+			}
+		}
+		return err;
+	}
+
+	/**
+	 * @return coefficients du predicteur du dernier flux decode (null pour
+	 *         un flux par tuile)
+	 */
+	public double[][] coefficients() {
+		return coeffs;
+	}
+
+	/**
+	 * @return predicteurs [tuiles sur i][tuiles sur j][K][L] du dernier flux
+	 *         decode (null pour un flux a predicteur unique)
+	 */
+	public double[][][][] coefficientsTuiles() {
+		return coeffsTuiles;
+	}
+
+	/**
+	 * @return cote des tuiles du dernier flux decode, 0 pour un flux a
+	 *         predicteur unique
+	 */
+	public int tuile() {
+		return tuile;
+	}
+
+	/**
+	 * @return moyenne de l'image du dernier flux decode
+	 */
+	public double moyenne() {
+		return moyenne;
+	}
+
+	/**
+	 * @param bitstream_name nom d'un fichier
+	 * @return vrai si le fichier commence par l'entete d'un flux DPCM
+	 */
+	public static boolean estFluxDPCM(String bitstream_name) {
+		try {
+			DataInputStream dis = new DataInputStream(new FileInputStream(
+					bitstream_name));
+			try {
+				int magique = dis.readInt();
+				return magique == MAGIQUE || magique == MAGIQUE_TUILES;
+			} finally {
+				dis.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void initialiserContextes() {
+		for (int c = 0; c < CONTEXTES; c++) {
+			somme[c] = 4;
+			effectif[c] = 1;
+		}
+	}
+
+	/**
+	 * Contexte : nombre de bits de l'activite locale
+	 */
+	private static int contexte(int activite) {
+		int c = 32 - Integer.numberOfLeadingZeros(activite);
+		return c < CONTEXTES ? c : CONTEXTES - 1;
+	}
+
+	/**
+	 * Plus petit k tel que effectif.2^k >= somme
+	 */
+	private int parametre(int ctx) {
+		long n = effectif[ctx], a = somme[ctx];
+		int k = 0;
+		while ((n << k) < a && k < 31)
+			k++;
+		return k;
+	}
+
+	private void actualiser(int ctx, int m) {
+		somme[ctx] += m & 0xFFFFFFFFL;
+		if (++effectif[ctx] >= REMISE) {
+			somme[ctx] >>= 1;
+			effectif[ctx] >>= 1;
+		}
+	}
+
+	/**
+	 * Ecriture de bits, poids forts d'abord.
+	 */
+	private static final class Ecrivain {
+		private final OutputStream os;
+		private final byte[] tampon;
+		private int pos;
+		private long bits;
+		private int nb;
+		private long ecrits;
+
+		Ecrivain(OutputStream os, byte[] tampon) {
+			this.os = os;
+			this.tampon = tampon;
+		}
+
+		/**
+		 * Ecrit les n bits de poids faible de v (n <= 32)
+		 */
+		void ecrire(int v, int n) throws IOException {
+			bits = (bits << n) | (v & ((1L << n) - 1));
+			nb += n;
+			while (nb >= 8) {
+				nb -= 8;
+				tampon[pos++] = (byte) (bits >>> nb);
+				if (pos == tampon.length)
+					vider();
+			}
+		}
+
+		/**
+		 * Complete le dernier octet par des zeros et vide le tampon
+		 * @return nombre d'octets ecrits
+		 */
+		long terminer() throws IOException {
+			if (nb > 0)
+				ecrire(0, 8 - nb);
+			vider();
+			os.flush();
+			return ecrits;
+		}
+
+		private void vider() throws IOException {
+			os.write(tampon, 0, pos);
+			ecrits += pos;
+			pos = 0;
+		}
+	}
+
+	/**
+	 * Lecture de bits, poids forts d'abord.
+	 */
+	private static final class Lecteur {
+		private final InputStream is;
+		private final byte[] tampon;
+		private int pos;
+		private int fin;
+		private long bits;
+		private int nb;
+		/**
+		 * Octets nuls ajoutes apres la fin du flux
+		 */
+		private int ajoutes;
+
+		Lecteur(InputStream is, byte[] tampon) {
+			this.is = is;
+			this.tampon = tampon;
+		}
+
+		/**
+		 * Au moins 57 bits dans l'accumulateur
+		 */
+		private void remplir() throws IOException {
+			while (nb <= 56) {
+				if (pos == fin) {
+					fin = is.read(tampon, 0, tampon.length);
+					pos = 0;
+					if (fin <= 0) {
+						fin = 0;
+						// le dernier code lu peut deborder de quelques
+						// octets sur la fin du flux, pas davantage
+						if (++ajoutes > 8)
+							throw new EOFException("Flux DPCM tronque");
+						bits <<= 8;
+						nb += 8;
+						continue;
+					}
+				}
+				bits = (bits << 8) | (tampon[pos++] & 0xFF);
+				nb += 8;
+			}
+		}
+
+		/**
+		 * Lit n bits (n <= 32)
+		 */
+		int lire(int n) throws IOException {
+			if (nb < n)
+				remplir();
+			nb -= n;
+			return (int) ((bits >>> nb) & ((1L << n) - 1));
+		}
+
+		/**
+		 * Lit un quotient unaire : nombre de 1 avant un 0, au plus limite
+		 * (limite 1 lus sans 0 final)
+		 */
+		int unaire(int limite) throws IOException {
+			if (nb < limite + 1)
+				remplir();
+			int fenetre = (int) (bits >>> (nb - limite)) << (32 - limite);
+			int q = Integer.numberOfLeadingZeros(~fenetre);
+			if (q >= limite) {
+				nb -= limite;
+				return limite;
+			}
+			nb -= q + 1;
+			return q;
+		}
+	}
+}
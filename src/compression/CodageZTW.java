@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 /**
  * CodageZTW est une classe qui permet d'effectuer un codage/decodage binaire
@@ -20,6 +21,28 @@ import java.io.IOException;
  * <p>
  * La classe doit être instanciee car elle utilise un buffer pour la lecture et l'écriture d'un fichier binaire.
  * </p>
+ * 
+ * <p>
+ * L'image transformee et les etiquettes sont manipulees au travers de
+ * {@link PlanCoefficients} et {@link PlanEtiquettes}. Avec le stockage
+ * {@link #STOCKAGE_FICHIER}, les etiquettes sont placees dans un fichier
+ * temporaire projete en memoire : associe a un {@link PlanCoefficientsTampon},
+ * le codage d'images plus grandes que le tas est alors possible. Les
+ * parcours complets du plan (seuil, reaffectation des etiquettes,
+ * actualisation des coefficients) se font par lignes croissantes et lisent
+ * les fichiers en flux. En revanche, a chaque passe, la determination des
+ * etiquettes descend recursivement dans chaque arbre de zeros : coefficients
+ * et etiquettes sont lus et ecrits un par un, sur 2, 4, 8... lignes eparses
+ * des niveaux plus fins. Ces acces sont aleatoires dans les fichiers, et
+ * rapides seulement si les pages parcourues tiennent dans le cache de pages
+ * du systeme ; l'ordre de ce parcours est fixe par le format du flux.
+ * </p>
+ * 
+ * <p>
+ * Avec le stockage {@link #STOCKAGE_HORS_TAS}, les etiquettes sont allouees
+ * hors du tas dans une {@link Arene} propre a chaque codage ou decodage, et
+ * rendues des la fin de celui-ci.
+ * </p>
  * @author Cedric Golmard, Ghizlane Aroussi
  * @version 1.0
  */
@@ -66,13 +89,74 @@ public class CodageZTW {
 	 */
 	private final int NS = 0x0004;
 
+	/**
+	 * Stockage des etiquettes sur le tas (int[][]).
+	 */
+	public static final int STOCKAGE_TAS = 1;
+
+	/**
+	 * Stockage des etiquettes dans un fichier temporaire projete en memoire.
+	 */
+	public static final int STOCKAGE_FICHIER = 2;
+
+	/**
+	 * Stockage des etiquettes hors du tas, dans une arene liberee a la fin du codage/decodage.
+	 */
+	public static final int STOCKAGE_HORS_TAS = 3;
+
 	private int bitBuffer;
-	private final  int sizeOfBitBuffer = 32;
+	private static final int sizeOfBitBuffer = 32;
 	private  int posBuffer;
+	private final int stockage;
+
+	/**
+	 * Etat d'un codage ou d'un decodage passe par passe.
+	 */
+	private PlanCoefficients xtPasse;
+	private PlanEtiquettes etiquettesPasse;
+	private double seuilPasse;
+	private int nivPasse;
+	private int hauteurPasse;
+	private int largeurPasse;
+
+	/**
+	 * Suivi des passes, null si aucun
+	 */
+	private SuiviCodage suivi;
+
+	/**
+	 * Courbe debit-distorsion relevee pendant le codage, null si aucune
+	 */
+	private CourbeDebitDistorsion courbe;
 	
 	public CodageZTW(){
+		this(STOCKAGE_TAS);
+	}
+
+	/**
+	 * @param stockage mode de stockage des etiquettes : STOCKAGE_TAS, STOCKAGE_FICHIER ou STOCKAGE_HORS_TAS
+	 */
+	public CodageZTW(int stockage){
 		this.bitBuffer = 0x0000;
 		this.posBuffer = 0x0000;
+		this.stockage = stockage;
+	}
+
+	/**
+	 * Suivi des passes des codages et decodages suivants.
+	 * @param suivi progression et annulation, null pour aucun suivi
+	 */
+	public void setSuivi(SuiviCodage suivi) {
+		this.suivi = suivi;
+	}
+
+	/**
+	 * Releve de la courbe debit-distorsion des codages suivants : un seul
+	 * codage a la plus grande taille donne tous les debits inferieurs.
+	 * @param courbe courbe remplie par chaque codage, null pour aucun releve
+	 */
+	public void setCourbe(CourbeDebitDistorsion courbe) {
+		this.courbe = courbe;
 	}
 	
 	/**
@@ -101,111 +185,81 @@ public class CodageZTW {
 	 */
 	public int ztw_code(double[][] xt, int width, int height,
 			int niv_resol, int size, String bitstream_name) throws IOException {
+		return ztw_code(new PlanCoefficientsTableau(xt), width, height,
+				niv_resol, size, bitstream_name);
+	}
+
+	/**
+	 * Codage ZTW d'une image transformee stockee dans un plan de coefficients.
+	 * 
+	 * @param xt
+	 *            image transformee a coder (modifiee par le codage)
+	 * @see #ztw_code(double[][], int, int, int, int, String)
+	 */
+	public int ztw_code(PlanCoefficients xt, int width, int height,
+			int niv_resol, int size, String bitstream_name) throws IOException {
+		Arene arene = new Arene();
+		try {
+			PlanEtiquettes etiquettes = allouerEtiquettes(arene, height, width);
+			return ztw_code(xt, etiquettes, width, height, niv_resol, size,
+					bitstream_name);
+		} finally {
+			arene.close();
+		}
+	}
+
+	private int ztw_code(PlanCoefficients xt, PlanEtiquettes etiquettes,
+			int width, int height, int niv_resol, int size,
+			String bitstream_name) throws IOException {
 		/**
 		 * Initialisation
 		 */
-		int MM = (int) (height / Math.pow(2, niv_resol));
-		int NN = (int) (width / Math.pow(2, niv_resol));
-		double T = seuil(xt, height, width, niv_resol);
 		int current_size = 0;
 		
-		int[][] etiquettes = new int[height][width];
-		
 		DataOutputStream ecrivain = new DataOutputStream(
 				new BufferedOutputStream(new FileOutputStream(bitstream_name)));
 
 		System.out.println("[CodageZTW] : codage de l'image dans '"
 				+ bitstream_name + "'... ");
 		System.out.println("[CodageZTW] : taille demandee " + size + " kbit. ");
-		System.out.println("[CodageZTW] : seuil = " + T);
 
 		/**
-		 * Ecriture du seuil initial
-		 */
-		ecrivain.writeDouble(T);
-		
-		/**
-		 * Ecriture de la sous-bande basses frequences
+		 * Ecriture du seuil initial et de la sous-bande basses frequences
 		 */
-		for (int i = 0; i < MM; i++) {
-			for (int j = 0; j < NN; j++) {
-				ecrivain.writeDouble(xt[i][j]);
-			}
-		}
+		debutCodage(xt, etiquettes, width, height, niv_resol, ecrivain);
 		
 		/**
 		 * Iterations de l'algorithme
 		 */
+		int passe = 0;
 		while (current_size  < (size * 1000)) {
-			/**
-			 * Reaffectation des etiquettes
-			 */
-			for (int i = 0; i < height; i++)
-				for (int j = 0; j < width; j++)
-					affecter(etiquettes, 0xFFFF, i, j);
-			
-			MM = (int) (height / Math.pow(2, niv_resol));
-			NN = (int) (width / Math.pow(2, niv_resol));
-			
-			/**
-			 * Sous-bande basses frequences
-			 * 
-			 */
-			/*
-			for (int i = 0; i < MM; i++) {
-				for (int j = 0; j < NN; j++) {
-					determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
-							height, width);
-					ecrireEtiquette(etiquettes, i, j, ecrivain);
-				}
-			}
-			*/
-			/**
-			 * Sous-bande hautes frequences
-			 * 
-			 */
-			while (MM <= height && NN <= width) {
-				for (int i = 0; i < MM; i++)
-					for (int j = NN; j < 2 * NN; j++) { // Sous-bande 1
-						determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
-								height, width);
-						ecrireEtiquette(etiquettes, i, j, ecrivain);
-						
-					}
-				for (int i = MM; i < 2 * MM; i++)
-					for (int j = 0; j < NN; j++) { // Sous-bande 2
-						determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
-								height, width);
-						ecrireEtiquette(etiquettes, i, j, ecrivain);
-					}
-				for (int i = MM; i < 2 * MM; i++)
-					for (int j = NN; j < 2 * NN; j++) { // Sous-bande 3
-						determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
-								height, width);
-						ecrireEtiquette(etiquettes, i, j, ecrivain);
-					}
-				MM *= 2;
-				NN *= 2;
-			}
+			double seuil = seuilPasse;
+			codePasse(ecrivain);
 			
 			System.out.println("[CodageZTW] : taille du fichier "+ (ecrivain.size() / 1000) + " kbit. ");
 			// Flush : écrit cette partie dans le fichier, au cas ou ça bloque
 			// avant on a toujours cette partie de codée.
 			current_size = ecrivain.size();
 			ecrivain.flush();
+			passe++;
+			if (courbe != null)
+				courbe.finPasse(current_size);
+			if (suivi != null) {
+				suivi.passe(passe, current_size, seuil);
+				if (suivi.estAnnule()) {
+					// Le flux garde les passes deja codees
+					terminerPasse(ecrivain);
+					ecrivain.close();
+					throw new InterruptedIOException("Codage annule");
+				}
+			}
 			
 			if(current_size < (size * 1000)){
-				/**
-				 * Actualisation du seuil et des coefficients de l'image
-				 */
-				T /= 2;
-				actualiseCoeff(xt, etiquettes, T, niv_resol, height, width);
+				passeSuivante();
 			}
 			else{
-				ecrivain.writeInt(bitBuffer);
+				terminerPasse(ecrivain);
 				current_size = ecrivain.size();
-				bitBuffer = 0;
-				posBuffer = 0;
 				break;
 			}
 		}
@@ -220,6 +274,127 @@ public class CodageZTW {
 		return current_size;
 	}
 
+	/**
+	 * Debut d'un codage passe par passe : calcule le seuil initial, ecrit ce
+	 * seuil et la sous-bande basses frequences.
+	 * <p>
+	 * Les passes suivent par {@link #codePasse(DataOutputStream)} et
+	 * {@link #passeSuivante()}. Le plan et les etiquettes restent references
+	 * par l'instance jusqu'au prochain debut de codage ou de decodage.
+	 * </p>
+	 * 
+	 * @return seuil initial
+	 * @throws IOException
+	 */
+	double debutCodage(PlanCoefficients xt, PlanEtiquettes etiquettes,
+			int width, int height, int niv_resol, DataOutputStream dos)
+			throws IOException {
+		this.xtPasse = xt;
+		this.etiquettesPasse = etiquettes;
+		this.largeurPasse = width;
+		this.hauteurPasse = height;
+		this.nivPasse = niv_resol;
+		this.seuilPasse = seuil(xt, height, width, niv_resol);
+		bitBuffer = 0x0000;
+		posBuffer = 0;
+		System.out.println("[CodageZTW] : seuil = " + seuilPasse);
+
+		dos.writeDouble(seuilPasse);
+		int MM = (int) (height / Math.pow(2, niv_resol));
+		int NN = (int) (width / Math.pow(2, niv_resol));
+		for (int i = 0; i < MM; i++) {
+			for (int j = 0; j < NN; j++) {
+				dos.writeDouble(xt.lire(i, j));
+			}
+		}
+		if (courbe != null)
+			courbe.debut(xt, height, width, niv_resol, dos.size());
+		return seuilPasse;
+	}
+
+	/**
+	 * Code une passe au seuil courant : reaffectation des etiquettes puis
+	 * ecriture des sous-bandes hautes frequences, des plus grossieres aux plus
+	 * fines.
+	 * 
+	 * @param dos
+	 *            flux recevant les etiquettes de la passe
+	 * @throws IOException
+	 */
+	void codePasse(DataOutputStream dos) throws IOException {
+		PlanCoefficients xt = xtPasse;
+		PlanEtiquettes etiquettes = etiquettesPasse;
+		int height = hauteurPasse;
+		int width = largeurPasse;
+		int niv_resol = nivPasse;
+		double T = seuilPasse;
+		/**
+		 * Reaffectation des etiquettes
+		 */
+		for (int i = 0; i < height; i++)
+			for (int j = 0; j < width; j++)
+				affecter(etiquettes, 0xFFFF, i, j);
+		
+		int MM = (int) (height / Math.pow(2, niv_resol));
+		int NN = (int) (width / Math.pow(2, niv_resol));
+		
+		/**
+		 * Sous-bande hautes frequences
+		 * 
+		 */
+		while (MM <= height && NN <= width) {
+			for (int i = 0; i < MM; i++)
+				for (int j = NN; j < 2 * NN; j++) { // Sous-bande 1
+					determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
+							height, width);
+					ecrireEtiquette(etiquettes, i, j, dos);
+					
+				}
+			for (int i = MM; i < 2 * MM; i++)
+				for (int j = 0; j < NN; j++) { // Sous-bande 2
+					determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
+							height, width);
+					ecrireEtiquette(etiquettes, i, j, dos);
+				}
+			for (int i = MM; i < 2 * MM; i++)
+				for (int j = NN; j < 2 * NN; j++) { // Sous-bande 3
+					determinerEtiquette(xt, etiquettes, i, j, T, niv_resol,
+							height, width);
+					ecrireEtiquette(etiquettes, i, j, dos);
+				}
+			MM *= 2;
+			NN *= 2;
+		}
+	}
+
+	/**
+	 * Actualisation du seuil et des coefficients de l'image avant la passe
+	 * suivante.
+	 */
+	void passeSuivante() {
+		seuilPasse /= 2;
+		actualiseCoeff(xtPasse, etiquettesPasse, seuilPasse, nivPasse,
+				hauteurPasse, largeurPasse);
+	}
+
+	/**
+	 * Ecrit le contenu du buffer d'etiquettes et le remet a zero.
+	 * 
+	 * @throws IOException
+	 */
+	void terminerPasse(DataOutputStream dos) throws IOException {
+		dos.writeInt(bitBuffer);
+		bitBuffer = 0;
+		posBuffer = 0;
+	}
+
+	/**
+	 * @return seuil de la prochaine passe de codage ou de decodage
+	 */
+	double seuilCourant() {
+		return seuilPasse;
+	}
+
 	/**
 	 * Decodage d'un flux binaire ZWTC
 	 * <p>
@@ -241,95 +416,62 @@ public class CodageZTW {
 	 */
 	public  int ztw_decode(double[][] xtrec, int width, int height,
 			int niv_resol, String bitstream_name) throws IOException {
-		/**
-		 * Initialisations
-		 */
-		int[][] etiquettes ;//= new int[height][width];
-		double T = 0;
-		int MM,NN; 
-		bitBuffer = 0x0000;
-		posBuffer = 0;
-		xtrec = new double[height][width];
-		for (int i = 0; i < height; i++)
-			for (int j = 0; j < width; j++)
-				xtrec[i][j] = 0;
-		
+		return ztw_decode(new PlanCoefficientsTableau(xtrec), width, height,
+				niv_resol, bitstream_name);
+	}
+
+	/**
+	 * Decodage d'un flux binaire ZWTC dans un plan de coefficients.
+	 * 
+	 * @param xtrec
+	 *            plan recevant l'image transformee reconstruite
+	 * @see #ztw_decode(double[][], int, int, int, String)
+	 */
+	public  int ztw_decode(PlanCoefficients xtrec, int width, int height,
+			int niv_resol, String bitstream_name) throws IOException {
+		Arene arene = new Arene();
+		try {
+			PlanEtiquettes etiquettes = allouerEtiquettes(arene, height, width);
+			return ztw_decode(xtrec, etiquettes, width, height, niv_resol,
+					bitstream_name);
+		} finally {
+			arene.close();
+		}
+	}
+
+	private  int ztw_decode(PlanCoefficients xtrec, PlanEtiquettes etiquettes,
+			int width, int height, int niv_resol, String bitstream_name)
+			throws IOException {
 		/**
 		 * Ouverture du fichier
 		 */
+		File fichier = new File(bitstream_name);
+		long longueur = fichier.length();
 		DataInputStream dis = null;
-		dis = new DataInputStream(new FileInputStream(new File(bitstream_name)));
+		dis = new DataInputStream(new FileInputStream(fichier));
 
 		System.out.println("[CodageZTW] : decodage de '"+ bitstream_name + "'... ");
 
 		/**
-		 * Lecture du seuil initial
-		 */
-		T = dis.readDouble();
-		System.out.println("[CodageZTW] : seuil = " + T);
-		/**
-		 * Lecture de la sous-bande basse frequence
+		 * Lecture du seuil initial et de la sous-bande basse frequence
 		 */
-		MM =(int) (height / Math.pow(2, niv_resol));
-		NN = (int) (width / Math.pow(2, niv_resol));
-		for (int i = 0; i < MM; i++) {
-			for (int j = 0; j < NN; j++) {
-				xtrec[i][j] = dis.readDouble();
-			}
-		}
+		debutDecodage(xtrec, etiquettes, width, height, niv_resol, dis);
 		
 		/**
 		 * Iteration
 		 */
+		int passe = 0;
 		while (dis.available() > 4) {
+			if (suivi != null && suivi.estAnnule()) {
+				dis.close();
+				throw new InterruptedIOException("Decodage annule");
+			}
 			System.out.println("[CodageZTW] : reste " + dis.available() / 1000
 					+ " kbit a decoder.");
-			
-			etiquettes = new int[height][width];
-			for (int i = 0; i < height; i++)
-				for (int j = 0; j < width; j++) {
-					affecter(etiquettes, 0xFFFF, i, j);
-				}
-			/**
-			 * Sous-bande basses frequences
-			 */
-			/*
-			for (int i = 0; i < MM; i++) {
-				for (int j = 0; j < NN; j++) {
-					readEtiquetteFromBitstream(etiquettes, width, height,
-							niv_resol, i, j, dis);
-				}
-			}
-			*/
-			MM = (int) (height / Math.pow(2, niv_resol));
-			NN = (int) (width / Math.pow(2, niv_resol));
-			/**
-			 * Sous-bande hautes frequences
-			 */
-			while (MM <= height && NN <= width) {
-				for (int i = 0; i < MM; i++)
-					for (int j = NN; j < 2 * NN; j++) { // Sous-bande 1
-						readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
-					}
-				for (int i = MM; i < 2 * MM; i++)
-					for (int j = 0; j < NN; j++) { // Sous-bande 2
-						readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
-					}
-				for (int i = MM; i < 2 * MM; i++)
-					for (int j = NN; j < 2 * NN; j++) { // Sous-bande 3
-						readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
-					}
-				MM = MM * 2;
-				NN = NN * 2;
-			}
-			/**
-			 * Actualisation des coefficients de l'image
-			 */
-			actualiseCoeff(xtrec, etiquettes, T,niv_resol, height, width);
-			/**
-			 * Actualisation du seuil
-			 */
-			T /= 2;
+			double seuil = seuilPasse;
+			decodePasse(dis);
+			if (suivi != null)
+				suivi.passe(++passe, longueur - dis.available(), seuil);
 		}
 
 		dis.close();
@@ -337,6 +479,93 @@ public class CodageZTW {
 		return 0;
 	}
 
+	/**
+	 * Debut d'un decodage passe par passe : remet le plan a zero, lit le seuil
+	 * initial et la sous-bande basses frequences.
+	 * 
+	 * @return seuil initial
+	 * @throws IOException
+	 */
+	double debutDecodage(PlanCoefficients xtrec, PlanEtiquettes etiquettes,
+			int width, int height, int niv_resol, DataInputStream dis)
+			throws IOException {
+		this.xtPasse = xtrec;
+		this.etiquettesPasse = etiquettes;
+		this.largeurPasse = width;
+		this.hauteurPasse = height;
+		this.nivPasse = niv_resol;
+		reinitialiserTampon();
+		for (int i = 0; i < height; i++)
+			for (int j = 0; j < width; j++)
+				xtrec.ecrire(i, j, 0);
+
+		seuilPasse = dis.readDouble();
+		System.out.println("[CodageZTW] : seuil = " + seuilPasse);
+		int MM = (int) (height / Math.pow(2, niv_resol));
+		int NN = (int) (width / Math.pow(2, niv_resol));
+		for (int i = 0; i < MM; i++) {
+			for (int j = 0; j < NN; j++) {
+				xtrec.ecrire(i, j, dis.readDouble());
+			}
+		}
+		return seuilPasse;
+	}
+
+	/**
+	 * Decode une passe : lecture des etiquettes des sous-bandes hautes
+	 * frequences, actualisation des coefficients puis du seuil.
+	 * 
+	 * @throws IOException
+	 */
+	void decodePasse(DataInputStream dis) throws IOException {
+		PlanEtiquettes etiquettes = etiquettesPasse;
+		int height = hauteurPasse;
+		int width = largeurPasse;
+		int niv_resol = nivPasse;
+		for (int i = 0; i < height; i++)
+			for (int j = 0; j < width; j++) {
+				affecter(etiquettes, 0xFFFF, i, j);
+			}
+		int MM = (int) (height / Math.pow(2, niv_resol));
+		int NN = (int) (width / Math.pow(2, niv_resol));
+		/**
+		 * Sous-bande hautes frequences
+		 */
+		while (MM <= height && NN <= width) {
+			for (int i = 0; i < MM; i++)
+				for (int j = NN; j < 2 * NN; j++) { // Sous-bande 1
+					readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
+				}
+			for (int i = MM; i < 2 * MM; i++)
+				for (int j = 0; j < NN; j++) { // Sous-bande 2
+					readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
+				}
+			for (int i = MM; i < 2 * MM; i++)
+				for (int j = NN; j < 2 * NN; j++) { // Sous-bande 3
+					readEtiquetteFromBitstream(etiquettes, width, height, niv_resol, i, j, dis);
+				}
+			MM = MM * 2;
+			NN = NN * 2;
+		}
+		/**
+		 * Actualisation des coefficients de l'image
+		 */
+		actualiseCoeff(xtPasse, etiquettes, seuilPasse, niv_resol, height, width);
+		/**
+		 * Actualisation du seuil
+		 */
+		seuilPasse /= 2;
+	}
+
+	/**
+	 * Remet a zero le buffer de lecture/ecriture des etiquettes, au debut d'un
+	 * flux ou d'un morceau de flux code independamment.
+	 */
+	void reinitialiserTampon() {
+		bitBuffer = 0x0000;
+		posBuffer = 0;
+	}
+
 	/**
 	 * readEtiquetteFromBitstream
 	 * @param etiquettes
@@ -348,7 +577,7 @@ public class CodageZTW {
 	 * @param dis
 	 * @throws IOException
 	 */
-	 private void readEtiquetteFromBitstream(int [][] etiquettes, int width,
+	 private void readEtiquetteFromBitstream(PlanEtiquettes etiquettes, int width,
 			int height, int niv_resol, int i, int j, DataInputStream dis)
 			throws IOException {
 		 
@@ -414,27 +643,47 @@ public class CodageZTW {
 	 * 
 	 * @return valeur de seuil initiale
 	 */
-	private  double seuil(double[][] donnee, int height, int width, int niv_resol) {
+	static double seuil(PlanCoefficients donnee, int height, int width, int niv_resol) {
 		double max_temp = -10000;
 		int MM = (int) (height / Math.pow(2, niv_resol));
 		int NN = (int) (width / Math.pow(2, niv_resol));
 		for (int i = 0; i<MM; i++) {
 			for (int j = NN; j<width; j++) {
-				if (max_temp < Math.abs(donnee[i][j])){
-					max_temp = Math.abs(donnee[i][j]);
+				double v = Math.abs(donnee.lire(i, j));
+				if (max_temp < v){
+					max_temp = v;
 				}
 			}
 		}
 		for (int i = MM; i<height; i++) {
 			for (int j = 0; j<width; j++) {
-				if (max_temp < Math.abs(donnee[i][j]))
-					max_temp = Math.abs(donnee[i][j]);
+				double v = Math.abs(donnee.lire(i, j));
+				if (max_temp < v)
+					max_temp = v;
 				
 			}
 		}
 		return (max_temp / 2);
 	}
 
+	/**
+	 * Taille en octets du flux ecrit par ztw_code apres un nombre donne
+	 * d'etiquettes : seuil initial, sous-bande basses frequences, un octet par
+	 * groupe complet de 16 etiquettes (voir ecrireEtiquette), puis le contenu
+	 * du buffer ecrit a la fin du codage.
+	 * 
+	 * @param etiquettes nombre total d'etiquettes ecrites par les passes
+	 * @param fin vrai pour compter le buffer ecrit a la fin du codage
+	 * @return taille du flux en octets
+	 */
+	static long tailleFlux(int height, int width, int niv_resol,
+			long etiquettes, boolean fin) {
+		long MM = (int) (height / Math.pow(2, niv_resol));
+		long NN = (int) (width / Math.pow(2, niv_resol));
+		return 8 + 8 * MM * NN + etiquettes / (sizeOfBitBuffer / 2)
+				+ (fin ? 4 : 0);
+	}
+
 	/**
 	 * Actualise les coefficients d'un pixel significatif selon son signe
 	 * 
@@ -451,26 +700,26 @@ public class CodageZTW {
 	 * 
 	 * @return nouvelle valeur du coefficient
 	 */
-	private  void actualiseCoeff(double donnee[][],int[][] etiquettes, double seuil, int niv_resol, int height, int width) {
+	private  void actualiseCoeff(PlanCoefficients donnee, PlanEtiquettes etiquettes, double seuil, int niv_resol, int height, int width) {
 		int MM = (int) (height / Math.pow(2, niv_resol));
 		int NN = (int) (width / Math.pow(2, niv_resol));
 		for (int i = 0; i<MM; i++) {
 			for (int j = NN; j<width; j++) {
 				if (estEgal(etiquettes, P, i, j)){
-					donnee[i][j] -= seuil;
+					donnee.ecrire(i, j, donnee.lire(i, j) - seuil);
 				}
 				else if (estEgal(etiquettes, N, i, j)){
-					donnee[i][j] += seuil;
+					donnee.ecrire(i, j, donnee.lire(i, j) + seuil);
 				}
 			}
 		}
 		for (int i = MM; i<height; i++) {
 			for (int j = 0; j<width; j++) {
 				if (estEgal(etiquettes, P, i, j)){
-					donnee[i][j] -= seuil;
+					donnee.ecrire(i, j, donnee.lire(i, j) - seuil);
 				}
 				else if (estEgal(etiquettes, N, i, j)){
-					donnee[i][j] += seuil;
+					donnee.ecrire(i, j, donnee.lire(i, j) + seuil);
 				}
 			}
 		}
@@ -489,7 +738,7 @@ public class CodageZTW {
 	 * @param height
 	 * @param width
 	 */
-	private  void determinerEtiquette(double[][] x,int[][] etiquettes, int i, int j, double seuil, int niv_resol, int height, int width) {	
+	private  void determinerEtiquette(PlanCoefficients x, PlanEtiquettes etiquettes, int i, int j, double seuil, int niv_resol, int height, int width) {	
 		/**
 		 * Extremites depassees
 		 */
@@ -507,8 +756,8 @@ public class CodageZTW {
 		/**
 		 * Pixel significatif
 		 */
-		else if (Math.abs(x[i][j]) > seuil) {
-			if (x[i][j] >= 0) {
+		else if (Math.abs(x.lire(i, j)) > seuil) {
+			if (x.lire(i, j) >= 0) {
 				affecter(etiquettes, P, i, j);
 			} else {
 				affecter(etiquettes, N, i, j);
@@ -545,10 +794,8 @@ public class CodageZTW {
 			/**
 			 * Pixel ZI
 			 */
-			else if (etiquettes[2*i][2*j] == P || etiquettes[2*i][2*j] == N || etiquettes[2*i][2*j] == ZI
-					|| etiquettes[2*i+1][2*j] == P || etiquettes[2*i+1][2*j] == N || etiquettes[2*i+1][2*j] == ZI
-					|| etiquettes[2*i][2*j+1] == P || etiquettes[2*i][2*j+1] == N || etiquettes[2*i][2*j+1] == ZI
-					|| etiquettes[2*i+1][2*j +1] == P || etiquettes[2*i+1][2*j +1] == N || etiquettes[2*i+1][2*j+1] == ZI){
+			else if (estSignificatif(etiquettes.lire(2*i, 2*j)) || estSignificatif(etiquettes.lire(2*i+1, 2*j))
+					|| estSignificatif(etiquettes.lire(2*i, 2*j+1)) || estSignificatif(etiquettes.lire(2*i+1, 2*j+1))){
 				affecter(etiquettes, ZI, i, j);
 				return;
 			}
@@ -574,7 +821,7 @@ public class CodageZTW {
 	 * @param height
 	 * @param width
 	 */
-	private  void marquerDescendantsNS(int[][] etiquettes, int i,int j, int niv_resol, int height, int width) {
+	private  void marquerDescendantsNS(PlanEtiquettes etiquettes, int i,int j, int niv_resol, int height, int width) {
 	//private  void marquerDescendantsNS(boolean[][][] etiquettes, int i,int j, int niv_resol, int height, int width) {
 	
 		/**
@@ -637,11 +884,11 @@ public class CodageZTW {
 	 * @param u
 	 * @param v
 	 */
-	private  void affecter(int[][] etiquettes, int etiq,int u, int v) {
+	private  void affecter(PlanEtiquettes etiquettes, int etiq,int u, int v) {
 	//private  void affecter(boolean[][][] etiquettes, boolean[] etiq,int u, int v) {
-		if(u >= etiquettes.length || v >= etiquettes[0].length)
+		if(u >= etiquettes.hauteur() || v >= etiquettes.largeur())
 			return;
-		etiquettes[u][v] = etiq;
+		etiquettes.ecrire(u, v, etiq);
 	}
 
 	/**
@@ -652,10 +899,35 @@ public class CodageZTW {
 	 * @param v
 	 * @return
 	 */
-	private  boolean estEgal(int[][] etiquettes, int etiq, int u, int v) { 
-		if(u>= etiquettes.length || v >= etiquettes[1].length)
+	private  boolean estEgal(PlanEtiquettes etiquettes, int etiq, int u, int v) { 
+		if(u>= etiquettes.hauteur() || v >= etiquettes.largeur())
 			return false;
-		return (etiq == etiquettes[u][v]);
+		return (etiq == etiquettes.lire(u, v));
+	}
+
+	/**
+	 * Vrai si l'etiquette indique un pixel ou un descendant significatif (P, N ou ZI).
+	 * @param etiq
+	 * @return
+	 */
+	private  boolean estSignificatif(int etiq) {
+		return etiq == P || etiq == N || etiq == ZI;
+	}
+
+	/**
+	 * Allocation du plan des etiquettes selon le mode de stockage.
+	 * @param arene arene du codage/decodage en cours, qui liberera le plan
+	 * @param height
+	 * @param width
+	 * @return plan des etiquettes
+	 * @throws IOException
+	 */
+	PlanEtiquettes allouerEtiquettes(Arene arene, int height, int width) throws IOException {
+		if (stockage == STOCKAGE_FICHIER)
+			return arene.enregistrer(PlanEtiquettesTampon.temporaire(height, width));
+		if (stockage == STOCKAGE_HORS_TAS)
+			return arene.allouerEtiquettes(height, width);
+		return new PlanEtiquettesTableau(height, width);
 	}
 
 	/**
@@ -668,14 +940,17 @@ public class CodageZTW {
 	 * @param dos
 	 * @throws IOException
 	 */
-	private  void ecrireEtiquette(int[][] etiquettes, int u, int v,DataOutputStream dos) throws IOException {
+	private  void ecrireEtiquette(PlanEtiquettes etiquettes, int u, int v,DataOutputStream dos) throws IOException {
 	//private  void ecrireEtiquette(boolean[][][] etiquettes, int u, int v,DataOutputStream dos) throws IOException {
-			if( u >= etiquettes.length || v >= etiquettes[0].length)
+			if( u >= etiquettes.hauteur() || v >= etiquettes.largeur())
 				return;
 			if(estEgal(etiquettes,NS, u, v))
 				return;
+			if(courbe != null)
+				courbe.etiquette(u, v, estEgal(etiquettes, P, u, v) || estEgal(etiquettes, N, u, v),
+						xtPasse.lire(u, v), seuilPasse, dos.size());
 			
-			bitBuffer |= (etiquettes[u][v] >> (sizeOfBitBuffer - posBuffer));
+			bitBuffer |= (etiquettes.lire(u, v) >> (sizeOfBitBuffer - posBuffer));
 			posBuffer +=2;
 
 			/*
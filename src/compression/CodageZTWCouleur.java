@@ -0,0 +1,493 @@
+package compression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CodageZTWCouleur code les composantes d'une image couleur (luminance et deux
+ * chrominances) dans un seul flux ZTW progressif.
+ *
+ * <p>
+ * Chaque composante est codee par son propre {@link CodageZTW}, passe par
+ * passe. Les passes des trois composantes sont calculees en parallele (un
+ * thread par composante) et entrelacees dans le flux : la passe ecrite ensuite
+ * est toujours celle dont le seuil pondere (poids de la composante x seuil de
+ * la passe) est le plus grand. La taille demandee est ainsi repartie entre les
+ * composantes, et la luminance garde la priorite sur les chrominances.
+ * </p>
+ *
+ * <p>
+ * Format du flux :
+ * </p>
+ * <ul>
+ * <li>entete : {@link #MAGIQUE}, espace couleur (octet), nombre de composantes
+ * (octet), puis pour chaque composante hauteur, largeur et niveaux de
+ * resolution (int) ;</li>
+ * <li>pour chaque composante : longueur (int) puis seuil initial et sous-bande
+ * basses frequences, comme en tete d'un flux {@link CodageZTW} ;</li>
+ * <li>une suite de passes : composante (octet), longueur (int), etiquettes de
+ * la passe. Chaque passe se termine par le contenu de son buffer d'etiquettes
+ * et se decode independamment des passes des autres composantes.</li>
+ * </ul>
+ *
+ * <p>
+ * La conversion couleur et la transformee des composantes sont faites par
+ * l'appelant (voir TraitImage) ; l'espace couleur est seulement memorise dans
+ * le flux pour le decodage.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class CodageZTWCouleur {
+
+	/**
+	 * Debut d'un flux couleur : 'ZTWC'
+	 */
+	public static final int MAGIQUE = 0x5A545743;
+
+	/**
+	 * Espace YCbCr (ITU-R BT.601), chrominances centrees sur zero.
+	 */
+	public static final int ESPACE_YCBCR = 0;
+
+	/**
+	 * Transformee couleur reversible entiere (RCT de JPEG 2000).
+	 */
+	public static final int ESPACE_RCT = 1;
+
+	private final int stockage;
+	private double[] poids = { 1.0, 0.5, 0.5 };
+	private int espace;
+	private int[] niveaux;
+	private SuiviCodage suivi;
+
+	public CodageZTWCouleur() {
+		this(CodageZTW.STOCKAGE_TAS);
+	}
+
+	/**
+	 * @param stockage mode de stockage des etiquettes de chaque composante
+	 *            (voir {@link CodageZTW#CodageZTW(int)})
+	 */
+	public CodageZTWCouleur(int stockage) {
+		this.stockage = stockage;
+	}
+
+	/**
+	 * Poids des composantes pour la repartition du debit.
+	 * <p>
+	 * Par defaut 1 pour la luminance et 0.5 pour les chrominances. Un poids nul
+	 * exclut la composante des passes (seule sa sous-bande basses frequences
+	 * est ecrite).
+	 * </p>
+	 * @param poids un poids positif ou nul par composante
+	 */
+	public void setPoids(double... poids) {
+		this.poids = poids.clone();
+	}
+
+	/**
+	 * Suivi des passes des codages et decodages suivants, toutes composantes
+	 * confondues. Au decodage, les passes des composantes sont signalees dans
+	 * l'ordre ou elles se terminent.
+	 * @param suivi progression et annulation, null pour aucun suivi
+	 */
+	public void setSuivi(SuiviCodage suivi) {
+		this.suivi = suivi;
+	}
+
+	/**
+	 * Codage ZTW des composantes transformees d'une image couleur.
+	 *
+	 * @param composantes composantes transformees, [x][y] (modifiees par le codage)
+	 * @param niv_resol niveaux de resolution de chaque composante
+	 * @param espace espace couleur ({@link #ESPACE_YCBCR} ou {@link #ESPACE_RCT})
+	 * @param size taille imposee du flux binaire (kbits)
+	 * @param bitstream_name nom du fichier de stockage du flux binaire
+	 * @return taille du flux ecrit
+	 * @throws IOException
+	 */
+	public int ztw_code(double[][][] composantes, int[] niv_resol, int espace,
+			int size, String bitstream_name) throws IOException {
+		PlanCoefficients[] plans = new PlanCoefficients[composantes.length];
+		for (int c = 0; c < plans.length; c++)
+			plans[c] = new PlanCoefficientsTableau(composantes[c]);
+		return ztw_code(plans, niv_resol, espace, size, bitstream_name);
+	}
+
+	/**
+	 * Codage ZTW des composantes transformees d'une image couleur stockees
+	 * dans des plans de coefficients.
+	 *
+	 * @see #ztw_code(double[][][], int[], int, int, String)
+	 */
+	public int ztw_code(PlanCoefficients[] composantes, int[] niv_resol,
+			int espace, int size, String bitstream_name) throws IOException {
+		final int n = composantes.length;
+		if (n == 0 || n > 255 || niv_resol.length != n)
+			throw new IllegalArgumentException("Composantes invalides");
+		long budget = (long) size * 1000;
+
+		System.out.println("[CodageZTWCouleur] : codage de " + n
+				+ " composantes dans '" + bitstream_name + "'... ");
+		System.out.println("[CodageZTWCouleur] : taille demandee " + size
+				+ " kbit. ");
+
+		Arene arene = new Arene();
+		ExecutorService groupe = creerGroupe(n);
+		DataOutputStream ecrivain = null;
+		try {
+			final CodageZTW[] codeurs = new CodageZTW[n];
+			final PlanEtiquettes[] etiquettes = new PlanEtiquettes[n];
+			for (int c = 0; c < n; c++) {
+				codeurs[c] = new CodageZTW(stockage);
+				etiquettes[c] = codeurs[c].allouerEtiquettes(arene,
+						composantes[c].hauteur(), composantes[c].largeur());
+			}
+
+			/**
+			 * Seuils initiaux et sous-bandes basses frequences, en parallele
+			 */
+			List<Future<byte[]>> debuts = new ArrayList<Future<byte[]>>(n);
+			for (int c = 0; c < n; c++)
+				debuts.add(groupe.submit(debut(codeurs[c], composantes[c],
+						etiquettes[c], niv_resol[c])));
+			byte[][] entetes = new byte[n][];
+			for (int c = 0; c < n; c++)
+				entetes[c] = attendre(debuts.get(c));
+
+			ecrivain = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(bitstream_name)));
+			ecrivain.writeInt(MAGIQUE);
+			ecrivain.writeByte(espace);
+			ecrivain.writeByte(n);
+			for (int c = 0; c < n; c++) {
+				ecrivain.writeInt(composantes[c].hauteur());
+				ecrivain.writeInt(composantes[c].largeur());
+				ecrivain.writeInt(niv_resol[c]);
+			}
+			double[] seuils = new double[n];
+			for (int c = 0; c < n; c++) {
+				seuils[c] = new DataInputStream(new ByteArrayInputStream(
+						entetes[c])).readDouble();
+				ecrivain.writeInt(entetes[c].length);
+				ecrivain.write(entetes[c]);
+			}
+
+			/**
+			 * Passes : la premiere de chaque composante est lancee tout de
+			 * suite, la suivante des que la precedente est ecrite.
+			 */
+			List<Future<byte[]>> enCours = new ArrayList<Future<byte[]>>(n);
+			for (int c = 0; c < n; c++)
+				enCours.add(poids(c) > 0 ? groupe.submit(passe(codeurs[c],
+						false)) : null);
+			int[] passes = new int[n];
+			int ecrites = 0;
+			while (ecrivain.size() < budget) {
+				int c = prochaineComposante(seuils, enCours);
+				if (c < 0)
+					break;
+				byte[] donnees = attendre(enCours.get(c));
+				ecrivain.writeByte(c);
+				ecrivain.writeInt(donnees.length);
+				ecrivain.write(donnees);
+				passes[c]++;
+				if (suivi != null) {
+					suivi.passe(++ecrites, ecrivain.size(), seuils[c]);
+					if (suivi.estAnnule()) {
+						// Chaque passe est terminee : le flux reste decodable
+						ecrivain.close();
+						throw new InterruptedIOException("Codage annule");
+					}
+				}
+				seuils[c] /= 2;
+				enCours.set(c, ecrivain.size() < budget ? groupe.submit(passe(
+						codeurs[c], true)) : null);
+			}
+			ecrivain.close();
+			for (int c = 0; c < n; c++)
+				System.out.println("[CodageZTWCouleur] : composante " + c
+						+ " : " + passes[c] + " passes. ");
+			System.out.println("[CodageZTWCouleur] : fin du codage dans '"
+					+ bitstream_name + "', " + (ecrivain.size() / 1000)
+					+ " kbit. ");
+			return ecrivain.size();
+		} finally {
+			if (ecrivain != null)
+				ecrivain.close();
+			// Les passes lancees d'avance travaillent dans les plans de
+			// l'arene : elles doivent etre terminees avant sa fermeture
+			fermerGroupe(groupe);
+			arene.close();
+		}
+	}
+
+	/**
+	 * Decodage d'un flux ZTW couleur.
+	 * <p>
+	 * Les passes sont reparties par composante puis decodees en parallele.
+	 * L'espace couleur et les niveaux de resolution lus dans l'entete sont
+	 * ensuite donnes par {@link #espace()} et {@link #niveaux()}.
+	 * </p>
+	 *
+	 * @param bitstream_name nom du fichier du flux binaire
+	 * @return composantes transformees reconstruites, [x][y]
+	 * @throws IOException flux illisible ou qui n'est pas un flux couleur
+	 */
+	public double[][][] ztw_decode(String bitstream_name) throws IOException {
+		System.out.println("[CodageZTWCouleur] : decodage de '"
+				+ bitstream_name + "'... ");
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(bitstream_name)));
+		final int n;
+		final int[] hauteurs, largeurs;
+		final byte[][] entetes;
+		final List<List<byte[]>> passes;
+		try {
+			if (dis.readInt() != MAGIQUE)
+				throw new IOException("Flux ZTW couleur invalide : "
+						+ bitstream_name);
+			espace = dis.readUnsignedByte();
+			n = dis.readUnsignedByte();
+			hauteurs = new int[n];
+			largeurs = new int[n];
+			niveaux = new int[n];
+			for (int c = 0; c < n; c++) {
+				hauteurs[c] = dis.readInt();
+				largeurs[c] = dis.readInt();
+				niveaux[c] = dis.readInt();
+			}
+			entetes = new byte[n][];
+			for (int c = 0; c < n; c++)
+				entetes[c] = lireBloc(dis);
+			passes = new ArrayList<List<byte[]>>(n);
+			for (int c = 0; c < n; c++)
+				passes.add(new ArrayList<byte[]>());
+			int c;
+			while ((c = dis.read()) >= 0) {
+				if (c >= n)
+					throw new IOException("Flux ZTW couleur invalide : "
+							+ bitstream_name);
+				passes.get(c).add(lireBloc(dis));
+			}
+		} finally {
+			dis.close();
+		}
+
+		// octets lus avant les passes : entete puis seuils et sous-bandes
+		// basses frequences
+		final long[] lus = { 6 + 12L * n };
+		for (int c = 0; c < n; c++)
+			lus[0] += 4 + entetes[c].length;
+		final int[] decodees = { 0 };
+		final SuiviCodage suivi = this.suivi;
+
+		final double[][][] composantes = new double[n][][];
+		Arene arene = new Arene();
+		ExecutorService groupe = creerGroupe(n);
+		try {
+			List<Future<byte[]>> futurs = new ArrayList<Future<byte[]>>(n);
+			for (int c = 0; c < n; c++) {
+				final CodageZTW decodeur = new CodageZTW(stockage);
+				final PlanEtiquettes etiquettes = decodeur.allouerEtiquettes(
+						arene, hauteurs[c], largeurs[c]);
+				final PlanCoefficientsTableau plan = new PlanCoefficientsTableau(
+						hauteurs[c], largeurs[c]);
+				composantes[c] = plan.tableau();
+				final int k = c;
+				futurs.add(groupe.submit(new Callable<byte[]>() {
+					public byte[] call() throws IOException {
+						decodeur.debutDecodage(plan, etiquettes, largeurs[k],
+								hauteurs[k], niveaux[k], flux(entetes[k]));
+						for (byte[] donnees : passes.get(k)) {
+							if (Thread.interrupted()
+									|| (suivi != null && suivi.estAnnule()))
+								throw new InterruptedIOException("Decodage annule");
+							double seuil = decodeur.seuilCourant();
+							decodeur.reinitialiserTampon();
+							decodeur.decodePasse(flux(donnees));
+							if (suivi != null)
+								synchronized (lus) {
+									lus[0] += 5 + donnees.length;
+									suivi.passe(++decodees[0], lus[0], seuil);
+								}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<byte[]> f : futurs)
+				attendre(f);
+		} finally {
+			fermerGroupe(groupe);
+			arene.close();
+		}
+		System.out.println("[CodageZTWCouleur] : fin du decodage de '"
+				+ bitstream_name + "'. ");
+		return composantes;
+	}
+
+	/**
+	 * @return espace couleur du dernier flux decode
+	 */
+	public int espace() {
+		return espace;
+	}
+
+	/**
+	 * @return niveaux de resolution des composantes du dernier flux decode
+	 */
+	public int[] niveaux() {
+		return niveaux == null ? null : niveaux.clone();
+	}
+
+	/**
+	 * Vrai si le fichier commence par l'entete d'un flux couleur.
+	 * @param bitstream_name nom du fichier
+	 * @return vrai pour un flux ecrit par CodageZTWCouleur
+	 */
+	public static boolean estFluxCouleur(String bitstream_name) {
+		try {
+			DataInputStream dis = new DataInputStream(new FileInputStream(
+					bitstream_name));
+			try {
+				return dis.readInt() == MAGIQUE;
+			} finally {
+				dis.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private double poids(int c) {
+		return c < poids.length ? poids[c] : 0;
+	}
+
+	/**
+	 * Composante dont la passe en cours a le plus grand seuil pondere, -1 si
+	 * aucune passe n'est en cours.
+	 */
+	private int prochaineComposante(double[] seuils, List<Future<byte[]>> enCours) {
+		int choix = -1;
+		double meilleur = 0;
+		for (int c = 0; c < seuils.length; c++) {
+			if (enCours.get(c) == null)
+				continue;
+			double p = poids(c) * seuils[c];
+			if (choix < 0 || p > meilleur) {
+				choix = c;
+				meilleur = p;
+			}
+		}
+		return choix;
+	}
+
+	private static Callable<byte[]> debut(final CodageZTW codeur,
+			final PlanCoefficients plan, final PlanEtiquettes etiquettes,
+			final int niv_resol) {
+		return new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+				DataOutputStream dos = new DataOutputStream(tampon);
+				codeur.debutCodage(plan, etiquettes, plan.largeur(),
+						plan.hauteur(), niv_resol, dos);
+				dos.flush();
+				return tampon.toByteArray();
+			}
+		};
+	}
+
+	private static Callable<byte[]> passe(final CodageZTW codeur,
+			final boolean suivante) {
+		return new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+				DataOutputStream dos = new DataOutputStream(tampon);
+				if (suivante)
+					codeur.passeSuivante();
+				codeur.codePasse(dos);
+				codeur.terminerPasse(dos);
+				dos.flush();
+				return tampon.toByteArray();
+			}
+		};
+	}
+
+	private static DataInputStream flux(byte[] donnees) {
+		return new DataInputStream(new ByteArrayInputStream(donnees));
+	}
+
+	private static byte[] lireBloc(DataInputStream dis) throws IOException {
+		int longueur = dis.readInt();
+		if (longueur < 0)
+			throw new EOFException();
+		byte[] bloc = new byte[longueur];
+		dis.readFully(bloc);
+		return bloc;
+	}
+
+	private static byte[] attendre(Future<byte[]> futur) throws IOException {
+		try {
+			return futur.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Codage interrompu");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private static ExecutorService creerGroupe(int n) {
+		return Executors.newFixedThreadPool(n, new ThreadFactory() {
+			private int numero = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ztw-composante-" + numero++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	private static void fermerGroupe(ExecutorService groupe) {
+		groupe.shutdownNow();
+		boolean interrompu = false;
+		while (true) {
+			try {
+				if (groupe.awaitTermination(1, TimeUnit.SECONDS))
+					break;
+			} catch (InterruptedException e) {
+				interrompu = true;
+			}
+		}
+		if (interrompu)
+			Thread.currentThread().interrupt();
+	}
+}
@@ -0,0 +1,253 @@
+package compression;
+
+import java.util.Arrays;
+
+/**
+ * Courbe debit-distorsion relevee pendant un codage ZTW.
+ *
+ * <p>
+ * Le flux etant imbrique, un seul codage passe par tous les debits : la
+ * courbe recoit un point apres l'en-tete, un point a la fin de chaque passe
+ * et, si un pas est donne, un point toutes les <i>pas</i> etiquettes ecrites.
+ * Chaque point donne la taille du flux arrete a cet endroit (buffer final
+ * compris) et l'erreur quadratique totale, dans le domaine des coefficients,
+ * de la reconstruction correspondante : la sous-bande basses frequences est
+ * transmise sans perte, et chaque etiquette P ou N ecrite rapproche son
+ * coefficient de la moitie du seuil de la passe, comme l'actualisation du
+ * codeur.
+ * </p>
+ *
+ * <p>
+ * La distorsion initiale est calculee en une lecture du plan, puis mise a
+ * jour a chaque etiquette significative ecrite : le releve coute une
+ * lecture du plan et quelques operations par etiquette. L'erreur est aussi
+ * ramenee au domaine des pixels avec le gain 4^n des sous-bandes du niveau n,
+ * comme dans {@link EstimateurZTW} : exacte pour la transformee de Haar
+ * (moyenne et demi-difference) et des dimensions multiples de 2^niv_resol.
+ * </p>
+ *
+ * <p>
+ * A utiliser avec {@link CodageZTW#setCourbe(CourbeDebitDistorsion)} ; un
+ * nouveau codage remplace les points releves.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class CourbeDebitDistorsion {
+
+	/**
+	 * Taille du buffer d'etiquettes ecrit a la fin d'un codage (octets)
+	 */
+	static final int FIN = 4;
+
+	private final int pas;
+
+	private int height, width, niv_resol, MM0, NN0;
+
+	/**
+	 * Distorsions courantes : domaine des coefficients et des pixels
+	 */
+	private double distorsion, distorsionPixels;
+	private long etiquettes;
+
+	private int nombre;
+	private long[] octets = new long[64];
+	private double[] distorsions = new double[64];
+	private double[] distorsionsPixels = new double[64];
+	private int[] passes = new int[64];
+	private int passe;
+
+	/**
+	 * Courbe relevee a la fin de chaque passe.
+	 */
+	public CourbeDebitDistorsion() {
+		this(0);
+	}
+
+	/**
+	 * @param pas nombre d'etiquettes entre deux points releves en cours de
+	 *            passe, 0 pour un point par passe seulement
+	 */
+	public CourbeDebitDistorsion(int pas) {
+		if (pas < 0)
+			throw new IllegalArgumentException("Pas invalide : " + pas);
+		this.pas = pas;
+	}
+
+	/**
+	 * Debut d'un codage, apres l'ecriture de l'en-tete : distorsion sans
+	 * aucune passe.
+	 * @param xt plan a coder, avant la premiere passe
+	 * @param taille taille du flux apres l'en-tete (octets)
+	 */
+	void debut(PlanCoefficients xt, int height, int width, int niv_resol,
+			long taille) {
+		this.height = height;
+		this.width = width;
+		this.niv_resol = niv_resol;
+		this.MM0 = (int) (height / Math.pow(2, niv_resol));
+		this.NN0 = (int) (width / Math.pow(2, niv_resol));
+		nombre = 0;
+		passe = 0;
+		etiquettes = 0;
+		distorsion = distorsionPixels = 0;
+		double[] ligne = new double[xt.largeur()];
+		for (int i = 0; i < height; i++) {
+			xt.lireLigne(i, ligne);
+			for (int j = (i < MM0 ? NN0 : 0); j < width; j++) {
+				double r2 = ligne[j] * ligne[j];
+				distorsion += r2;
+				distorsionPixels += gain(i, j) * r2;
+			}
+		}
+		ajouter(taille);
+	}
+
+	/**
+	 * Etiquette ecrite dans le flux.
+	 * @param significatif vrai pour une etiquette P ou N
+	 * @param r valeur residuelle du coefficient avant la passe
+	 * @param seuil seuil de la passe
+	 * @param taille taille du flux avant cette etiquette (octets, sans le
+	 *            buffer final)
+	 */
+	void etiquette(int i, int j, boolean significatif, double r,
+			double seuil, long taille) {
+		if (significatif) {
+			// |r| - seuil/2 remplace |r| : variation seuil^2/4 - |r| seuil
+			double d = seuil * (seuil / 4 - Math.abs(r));
+			distorsion += d;
+			distorsionPixels += gain(i, j) * d;
+		}
+		if (pas > 0 && ++etiquettes % pas == 0)
+			ajouter(taille + FIN);
+	}
+
+	/**
+	 * Fin d'une passe.
+	 * @param taille taille du flux a la fin de la passe (octets, sans le
+	 *            buffer final)
+	 */
+	void finPasse(long taille) {
+		passe++;
+		ajouter(taille + FIN);
+	}
+
+	private void ajouter(long taille) {
+		if (nombre == octets.length) {
+			int n = 2 * nombre;
+			octets = Arrays.copyOf(octets, n);
+			distorsions = Arrays.copyOf(distorsions, n);
+			distorsionsPixels = Arrays.copyOf(distorsionsPixels, n);
+			passes = Arrays.copyOf(passes, n);
+		}
+		octets[nombre] = taille;
+		// somme de variations : ramenee a 0 plutot que legerement negative
+		distorsions[nombre] = Math.max(0, distorsion);
+		distorsionsPixels[nombre] = Math.max(0, distorsionPixels);
+		passes[nombre] = passe;
+		nombre++;
+	}
+
+	/**
+	 * Gain 4^n d'un coefficient du niveau n (1 : le plus fin) ; 1 pour un
+	 * coefficient jamais parcouru par le codeur.
+	 */
+	private double gain(int i, int j) {
+		int MM = MM0, NN = NN0;
+		for (int n = niv_resol; MM <= height && NN <= width; n--) {
+			if (i < 2 * MM && j < 2 * NN)
+				return n < 1 ? 1 : (double) (1L << (2 * n));
+			MM *= 2;
+			NN *= 2;
+		}
+		return 1;
+	}
+
+	/**
+	 * @return nombre de points releves
+	 */
+	public int nombre() {
+		return nombre;
+	}
+
+	/**
+	 * @param k point (0 : apres l'en-tete)
+	 * @return taille du flux arrete a ce point, en octets
+	 */
+	public long octets(int k) {
+		verifier(k);
+		return octets[k];
+	}
+
+	/**
+	 * @param k point
+	 * @return nombre de passes terminees a ce point
+	 */
+	public int passe(int k) {
+		verifier(k);
+		return passes[k];
+	}
+
+	/**
+	 * @param k point
+	 * @return erreur quadratique totale dans le domaine des coefficients
+	 */
+	public double distorsion(int k) {
+		verifier(k);
+		return distorsions[k];
+	}
+
+	/**
+	 * @param k point
+	 * @return erreur quadratique moyenne par pixel, ramenee au domaine des
+	 *         pixels
+	 */
+	public double mse(int k) {
+		verifier(k);
+		return distorsionsPixels[k] / ((double) height * width);
+	}
+
+	/**
+	 * @param k point
+	 * @return PSNR pour une dynamique de 255, en dB (infini sans erreur)
+	 */
+	public double psnr(int k) {
+		double mse = mse(k);
+		if (mse <= 0)
+			return Double.POSITIVE_INFINITY;
+		return 10 * Math.log10(255.0 * 255.0 / mse);
+	}
+
+	/**
+	 * Dernier point dont le flux tient dans une taille donnee.
+	 * @param octetsMax taille maximale du flux (octets)
+	 * @return point, -1 si meme l'en-tete depasse
+	 */
+	public int pourTaille(long octetsMax) {
+		int k = Arrays.binarySearch(octets, 0, nombre, octetsMax);
+		if (k >= 0) {
+			while (k + 1 < nombre && octets[k + 1] == octetsMax)
+				k++;
+			return k;
+		}
+		return -k - 2;
+	}
+
+	private void verifier(int k) {
+		if (k < 0 || k >= nombre)
+			throw new IndexOutOfBoundsException("Point " + k + " sur "
+					+ nombre);
+	}
+
+	/**
+	 * @return un point par ligne : passe, octets, distorsion, mse, psnr
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < nombre; k++)
+			sb.append(String.format("%d\t%d\t%.6g\t%.6g\t%.3f%n", passes[k],
+					octets[k], distorsions[k], mse(k), psnr(k)));
+		return sb.toString();
+	}
+}
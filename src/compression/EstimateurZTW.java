@@ -0,0 +1,452 @@
+package compression;
+
+/**
+ * EstimateurZTW predit, sans coder, la taille du flux et la qualite obtenues
+ * par {@link CodageZTW#ztw_code(PlanCoefficients, int, int, int, int, String)}
+ * pour chaque nombre de passes.
+ *
+ * <p>
+ * Le signe d'un coefficient (P ou N) a une passe ne depend que de sa propre
+ * valeur residuelle, actualisee par le codeur apres chaque passe ou il est
+ * significatif. L'estimateur rejoue donc ces actualisations coefficient par
+ * coefficient (un masque de bits des passes significatives par coefficient),
+ * puis en deduit par un parcours des arbres les passes ou chaque coefficient
+ * est ecrit : un coefficient n'est pas ecrit (NS) quand l'un de ses ancetres
+ * est un ZTR. Pour des dimensions multiples de 2^niv_resol, le nombre
+ * d'etiquettes par passe, et donc la taille du flux, sont exacts.
+ * </p>
+ *
+ * <p>
+ * Sont aussi calculees, pour chaque sous-bande : l'entropie d'ordre 1 des
+ * coefficients quantifies avec un pas donne, et le nombre de coefficients
+ * significatifs a chaque passe. L'erreur quadratique du residu du codeur est
+ * ramenee au domaine des pixels avec le gain 4^n des sous-bandes du niveau n
+ * de la transformee de Haar (moyenne et demi-difference) : exacte pour cette
+ * transformee, approchee pour une autre.
+ * </p>
+ *
+ * <p>
+ * Le plan est lu deux fois par lignes croissantes et n'est pas modifie ;
+ * l'estimateur garde 8 octets par coefficient.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class EstimateurZTW {
+
+	/**
+	 * Nombre de passes modelisees par defaut
+	 */
+	public static final int PASSES_DEFAUT = 32;
+
+	/**
+	 * Nombre maximal de passes modelisees (un bit par passe)
+	 */
+	public static final int PASSES_MAX = 63;
+
+	private final int height;
+	private final int width;
+	private final int niv_resol;
+	private final int passes;
+	private final double seuil;
+	private final double pas;
+
+	/**
+	 * Taille de la sous-bande basses frequences
+	 */
+	private final int MM0;
+	private final int NN0;
+
+	/**
+	 * Etiquettes ecrites a chaque passe
+	 */
+	private final long[] etiquettes;
+
+	/**
+	 * Erreur quadratique dans le domaine des pixels apres k passes (0..passes)
+	 */
+	private final double[] distorsion;
+
+	/**
+	 * Coefficients significatifs par niveau (1 : le plus fin), orientation
+	 * (1 a 3, comme les sous-bandes du codeur) et passe
+	 */
+	private final long[][][] significatifs;
+
+	/**
+	 * Entropie par niveau et orientation, et par niveau
+	 */
+	private final double[][] entropie;
+	private final double[] entropieNiveau;
+
+	/**
+	 * Estimation pour une image transformee rangee dans un tableau.
+	 * @see #EstimateurZTW(PlanCoefficients, int, int, int, int, double)
+	 */
+	public EstimateurZTW(double[][] xt, int width, int height, int niv_resol) {
+		this(new PlanCoefficientsTableau(xt), width, height, niv_resol,
+				PASSES_DEFAUT, 1);
+	}
+
+	/**
+	 * Estimation pour une image transformee.
+	 *
+	 * @param xt
+	 *            image transformee (non modifiee)
+	 * @param width
+	 *            taille de l'image, comme pour ztw_code
+	 * @param height
+	 *            taille de l'image, comme pour ztw_code
+	 * @param niv_resol
+	 *            nombre de niveaux de resolution
+	 * @param passes
+	 *            nombre de passes modelisees (au plus {@link #PASSES_MAX})
+	 * @param pas
+	 *            pas de quantification pour le calcul des entropies
+	 */
+	public EstimateurZTW(PlanCoefficients xt, int width, int height,
+			int niv_resol, int passes, double pas) {
+		if (passes < 1 || passes > PASSES_MAX)
+			throw new IllegalArgumentException("Nombre de passes invalide : "
+					+ passes);
+		if (!(pas > 0))
+			throw new IllegalArgumentException("Pas invalide : " + pas);
+		this.height = height;
+		this.width = width;
+		this.niv_resol = niv_resol;
+		this.passes = passes;
+		this.pas = pas;
+		this.MM0 = (int) (height / Math.pow(2, niv_resol));
+		this.NN0 = (int) (width / Math.pow(2, niv_resol));
+		if (MM0 < 1 || NN0 < 1)
+			throw new IllegalArgumentException("Trop de niveaux de resolution : "
+					+ niv_resol);
+		this.etiquettes = new long[passes];
+		this.distorsion = new double[passes + 1];
+		this.significatifs = new long[niv_resol + 1][4][passes];
+		this.entropie = new double[niv_resol + 1][4];
+		this.entropieNiveau = new double[niv_resol + 1];
+
+		/**
+		 * Premiere lecture : seuil initial du codeur. Seconde lecture :
+		 * passes significatives, distorsion et histogrammes.
+		 */
+		this.seuil = CodageZTW.seuil(xt, height, width, niv_resol);
+		long[][] masques = new long[height][width];
+		simuler(xt, masques);
+		compterEtiquettes(masques);
+	}
+
+	/**
+	 * Position (niveau, orientation) d'un coefficient dans le parcours des
+	 * sous-bandes du codeur : 0 pour la sous-bande basses frequences ou un
+	 * coefficient jamais parcouru.
+	 * @return niveau * 4 + orientation
+	 */
+	private int sousBande(int i, int j) {
+		int MM = MM0;
+		int NN = NN0;
+		if (i < MM && j < NN)
+			return 0;
+		for (int n = niv_resol; MM <= height && NN <= width; n--) {
+			if (i < 2 * MM && j < 2 * NN) {
+				if (n < 1)
+					return 0;
+				if (i < MM)
+					return 4 * n + 1;
+				return 4 * n + (j < NN ? 2 : 3);
+			}
+			MM *= 2;
+			NN *= 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * Rejoue les actualisations du codeur : masques des passes ou chaque
+	 * coefficient est significatif, distorsion et histogrammes.
+	 */
+	private void simuler(PlanCoefficients xt, long[][] masques) {
+		double[] T = new double[passes + 1];
+		T[0] = seuil;
+		for (int k = 1; k <= passes; k++)
+			T[k] = T[k - 1] / 2;
+		Classes[] classes = new Classes[4 * (niv_resol + 1)];
+		for (int b = 0; b < classes.length; b++)
+			classes[b] = new Classes();
+		double[] ligne = new double[xt.largeur()];
+		for (int i = 0; i < height; i++) {
+			xt.lireLigne(i, ligne);
+			for (int j = 0; j < width; j++) {
+				int b = sousBande(i, j);
+				if (b == 0)
+					continue;
+				int n = b >> 2;
+				double gain = Math.pow(4, n);
+				double r = ligne[j];
+				classes[b].ajouter(Math.floor(r / pas + 0.5));
+				distorsion[0] += gain * r * r;
+				long masque = 0;
+				long[] sig = significatifs[n][b & 3];
+				for (int k = 0; k < passes; k++) {
+					if (Math.abs(r) > T[k]) {
+						masque |= 1L << k;
+						sig[k]++;
+						if (r >= 0)
+							r -= T[k + 1];
+						else
+							r += T[k + 1];
+					}
+					distorsion[k + 1] += gain * r * r;
+				}
+				masques[i][j] = masque;
+			}
+		}
+		double pixels = (double) height * width;
+		for (int k = 0; k <= passes; k++)
+			distorsion[k] /= pixels;
+		for (int n = 1; n <= niv_resol; n++) {
+			Classes niveau = new Classes();
+			for (int o = 1; o <= 3; o++) {
+				entropie[n][o] = classes[4 * n + o].entropie();
+				niveau.ajouter(classes[4 * n + o]);
+			}
+			entropieNiveau[n] = niveau.entropie();
+		}
+	}
+
+	/**
+	 * Passes ou chaque coefficient est ecrit.
+	 * <p>
+	 * Des sous-bandes fines vers les grossieres, le masque d'un coefficient
+	 * devient celui de son arbre : significatif ou ZI a la passe k si lui-meme
+	 * ou un descendant est significatif (un coefficient sans descendant complet
+	 * est ZTR sans marquer ses descendants NS, comme dans
+	 * determinerEtiquette). Puis, des grossieres vers les fines, chaque
+	 * coefficient recoit les passes ou il est ecrit : celles de son parent,
+	 * restreintes a l'arbre du parent quand celui-ci peut etre ZTR.
+	 * </p>
+	 */
+	private void compterEtiquettes(long[][] masques) {
+		long tout = (1L << passes) - 1;
+		int iterations = 0;
+		for (int MM = MM0, NN = NN0; MM <= height && NN <= width; MM *= 2, NN *= 2)
+			iterations++;
+
+		// Arbres : des sous-bandes fines vers les grossieres
+		for (int t = iterations - 1; t >= 0; t--) {
+			int MM = MM0 << t;
+			int NN = NN0 << t;
+			for (int i = 0; i < 2 * MM && i < height; i++)
+				for (int j = (i < MM ? NN : 0); j < 2 * NN && j < width; j++) {
+					if (complet(i, j))
+						masques[i][j] |= masques[2 * i][2 * j]
+								| masques[2 * i + 1][2 * j]
+								| masques[2 * i][2 * j + 1]
+								| masques[2 * i + 1][2 * j + 1];
+				}
+		}
+
+		// Passes d'ecriture : des sous-bandes grossieres vers les fines.
+		// Chaque case recoit les passes d'ecriture transmises a ses enfants.
+		for (int t = 0; t < iterations; t++) {
+			int MM = MM0 << t;
+			int NN = NN0 << t;
+			for (int i = 0; i < 2 * MM && i < height; i++)
+				for (int j = (i < MM ? NN : 0); j < 2 * NN && j < width; j++) {
+					long ecrite = t == 0 ? tout : masques[i / 2][j / 2];
+					for (long m = ecrite; m != 0; m &= m - 1)
+						etiquettes[Long.numberOfTrailingZeros(m)]++;
+					if (complet(i, j))
+						masques[i][j] &= ecrite;
+					else
+						masques[i][j] = ecrite;
+				}
+		}
+	}
+
+	/**
+	 * Vrai si les quatre enfants du coefficient existent
+	 */
+	private boolean complet(int i, int j) {
+		return 2 * i + 1 < height && 2 * j + 1 < width;
+	}
+
+	/**
+	 * @return seuil initial du codeur
+	 */
+	public double seuilInitial() {
+		return seuil;
+	}
+
+	/**
+	 * @return nombre de passes modelisees
+	 */
+	public int nbPasses() {
+		return passes;
+	}
+
+	/**
+	 * @param passe numero de passe (0 : la premiere)
+	 * @return nombre d'etiquettes ecrites pendant la passe
+	 */
+	public long etiquettes(int passe) {
+		return etiquettes[passe];
+	}
+
+	/**
+	 * Taille du flux arrete apres un nombre de passes donne.
+	 * @param nb nombre de passes codees (0 a nbPasses())
+	 * @return taille en octets, buffer final compris
+	 */
+	public long taille(int nb) {
+		long total = 0;
+		for (int k = 0; k < nb; k++)
+			total += etiquettes[k];
+		return CodageZTW.tailleFlux(height, width, niv_resol, total, nb > 0);
+	}
+
+	/**
+	 * Nombre de passes codees par ztw_code pour une taille demandee : le
+	 * codeur s'arrete apres la premiere passe qui atteint la taille.
+	 * @param size taille demandee (kbits), comme pour ztw_code
+	 * @return nombre de passes, -1 s'il en faut plus que nbPasses()
+	 */
+	public int passesPourTaille(int size) {
+		long cible = (long) size * 1000;
+		if (cible <= 0)
+			return 0;
+		long total = 0;
+		for (int k = 0; k < passes; k++) {
+			total += etiquettes[k];
+			if (CodageZTW.tailleFlux(height, width, niv_resol, total, false) >= cible)
+				return k + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Taille du flux que rendrait ztw_code pour une taille demandee.
+	 * @param size taille demandee (kbits)
+	 * @return taille en octets, -1 au-dela des passes modelisees
+	 */
+	public long tailleFlux(int size) {
+		int nb = passesPourTaille(size);
+		if (nb < 0)
+			return -1;
+		return taille(nb);
+	}
+
+	/**
+	 * Erreur quadratique moyenne par pixel du residu du codeur apres un
+	 * nombre de passes (la sous-bande basses frequences est transmise sans
+	 * perte).
+	 * @param nb nombre de passes (0 a nbPasses())
+	 * @return erreur quadratique moyenne
+	 */
+	public double mse(int nb) {
+		return distorsion[nb];
+	}
+
+	/**
+	 * PSNR approche apres un nombre de passes, pour une dynamique de 255.
+	 * @param nb nombre de passes (0 a nbPasses())
+	 * @return PSNR en dB (infini sans erreur)
+	 */
+	public double psnr(int nb) {
+		double mse = distorsion[nb];
+		if (mse <= 0)
+			return Double.POSITIVE_INFINITY;
+		return 10 * Math.log10(255.0 * 255.0 / mse);
+	}
+
+	/**
+	 * @param niveau niveau de resolution (1 : le plus fin)
+	 * @param orientation sous-bande 1, 2 ou 3 du niveau
+	 * @return entropie d'ordre 1 des coefficients quantifies (bits par coefficient)
+	 */
+	public double entropie(int niveau, int orientation) {
+		return entropie[niveau][orientation];
+	}
+
+	/**
+	 * @param niveau niveau de resolution (1 : le plus fin)
+	 * @return entropie d'ordre 1 des coefficients quantifies des trois sous-bandes du niveau
+	 */
+	public double entropieNiveau(int niveau) {
+		return entropieNiveau[niveau];
+	}
+
+	/**
+	 * @param niveau niveau de resolution (1 : le plus fin)
+	 * @param orientation sous-bande 1, 2 ou 3 du niveau
+	 * @param passe numero de passe (0 : la premiere)
+	 * @return nombre de coefficients significatifs de la sous-bande a cette passe
+	 */
+	public long significatifs(int niveau, int orientation, int passe) {
+		return significatifs[niveau][orientation][passe];
+	}
+
+	/**
+	 * Histogramme des coefficients quantifies d'une sous-bande, agrandi a la
+	 * demande. Au-dela de 2^24 classes, les valeurs extremes sont regroupees.
+	 */
+	private static final class Classes {
+		private static final int MAX = 1 << 24;
+		private long[] compte = new long[0];
+		private long origine;
+		private long total;
+
+		void ajouter(double q) {
+			if (q != q)
+				return;
+			ajouter((long) Math.max(Long.MIN_VALUE / 4,
+					Math.min(Long.MAX_VALUE / 4, q)), 1);
+		}
+
+		void ajouter(Classes c) {
+			for (int k = 0; k < c.compte.length; k++)
+				if (c.compte[k] > 0)
+					ajouter(c.origine + k, c.compte[k]);
+		}
+
+		private void ajouter(long v, long n) {
+			if (compte.length == 0) {
+				compte = new long[16];
+				origine = v - 8;
+			}
+			long k = v - origine;
+			if (k < 0 || k >= compte.length)
+				k = agrandir(v);
+			compte[(int) k] += n;
+			total += n;
+		}
+
+		private long agrandir(long v) {
+			long debut = Math.min(origine, v);
+			long fin = Math.max(origine + compte.length, v + 1);
+			long taille = Math.min(MAX, Math.max(2L * compte.length, fin - debut));
+			if (fin - debut > taille) {
+				// Trop de classes : la valeur rejoint la classe extreme
+				return v < origine ? 0 : compte.length - 1;
+			}
+			long[] nouveau = new long[(int) taille];
+			long nouvelleOrigine = v < origine ? fin - taille : debut;
+			System.arraycopy(compte, 0, nouveau,
+					(int) (origine - nouvelleOrigine), compte.length);
+			compte = nouveau;
+			origine = nouvelleOrigine;
+			return v - origine;
+		}
+
+		double entropie() {
+			if (total == 0)
+				return 0;
+			double somme = 0;
+			for (long n : compte)
+				if (n > 0)
+					somme += n * Math.log(n);
+			return (Math.log(total) - somme / total) / Math.log(2);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * PlanCoefficients represente un plan de coefficients (image transformee)
+ * independamment de son stockage.
+ * 
+ * <p>
+ * Le plan peut etre stocke dans un tableau <code>double[][]</code> (voir
+ * {@link PlanCoefficientsTableau}) ou dans un fichier projete en memoire (voir
+ * {@link PlanCoefficientsTampon}) pour les images plus grandes que le tas.
+ * Les coefficients sont ranges ligne par ligne : un parcours par lignes
+ * croissantes lit donc le stockage sequentiellement.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public interface PlanCoefficients extends Closeable {
+
+	/**
+	 * @return nombre de lignes du plan (premier indice)
+	 */
+	int hauteur();
+
+	/**
+	 * @return nombre de colonnes du plan (second indice)
+	 */
+	int largeur();
+
+	/**
+	 * Lecture d'un coefficient
+	 * @param i ligne
+	 * @param j colonne
+	 * @return valeur du coefficient
+	 */
+	double lire(int i, int j);
+
+	/**
+	 * Ecriture d'un coefficient
+	 * @param i ligne
+	 * @param j colonne
+	 * @param valeur nouvelle valeur du coefficient
+	 */
+	void ecrire(int i, int j, double valeur);
+
+	/**
+	 * Lecture d'une ligne complete
+	 * @param i ligne
+	 * @param ligne tableau de taille au moins largeur()
+	 */
+	void lireLigne(int i, double[] ligne);
+
+	/**
+	 * Ecriture d'une ligne complete
+	 * @param i ligne
+	 * @param ligne tableau de taille au moins largeur()
+	 */
+	void ecrireLigne(int i, double[] ligne);
+
+	/**
+	 * Cree un plan de travail de meme nature (tas, fichier...) que ce plan.
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return nouveau plan initialise a 0, a fermer par l'appelant
+	 * @throws IOException
+	 */
+	PlanCoefficients creerSimilaire(int hauteur, int largeur) throws IOException;
+}
@@ -0,0 +1,63 @@
+package compression;
+
+/**
+ * Plan de coefficients stocke sur le tas dans un tableau <code>double[][]</code>.
+ * 
+ * <p>
+ * Le tableau n'est pas copie : les modifications du plan sont visibles dans le
+ * tableau d'origine.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public class PlanCoefficientsTableau implements PlanCoefficients {
+
+	private final double[][] donnee;
+
+	public PlanCoefficientsTableau(double[][] donnee) {
+		this.donnee = donnee;
+	}
+
+	public PlanCoefficientsTableau(int hauteur, int largeur) {
+		this(new double[hauteur][largeur]);
+	}
+
+	/**
+	 * @return tableau sous-jacent
+	 */
+	public double[][] tableau() {
+		return donnee;
+	}
+
+	public int hauteur() {
+		return donnee.length;
+	}
+
+	public int largeur() {
+		return donnee[0].length;
+	}
+
+	public double lire(int i, int j) {
+		return donnee[i][j];
+	}
+
+	public void ecrire(int i, int j, double valeur) {
+		donnee[i][j] = valeur;
+	}
+
+	public void lireLigne(int i, double[] ligne) {
+		System.arraycopy(donnee[i], 0, ligne, 0, donnee[i].length);
+	}
+
+	public void ecrireLigne(int i, double[] ligne) {
+		System.arraycopy(ligne, 0, donnee[i], 0, donnee[i].length);
+	}
+
+	public PlanCoefficients creerSimilaire(int hauteur, int largeur) {
+		return new PlanCoefficientsTableau(hauteur, largeur);
+	}
+
+	public void close() {
+		// Rien a liberer, le ramasse-miettes s'en charge.
+	}
+}
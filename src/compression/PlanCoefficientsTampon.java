@@ -0,0 +1,142 @@
+package compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plan de coefficients stocke hors du tas, dans un fichier projete en memoire
+ * ou dans une memoire allouee par une {@link Arene}.
+ * 
+ * <p>
+ * Permet de transformer et de coder des images plus grandes que le tas : seules
+ * les pages en cours d'utilisation sont chargees par le systeme. Les
+ * coefficients sont ranges ligne par ligne (8 octets par coefficient, ordre
+ * natif), il faut donc privilegier les parcours par lignes croissantes pour que
+ * le cache de pages du systeme lise le fichier sequentiellement.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public class PlanCoefficientsTampon implements PlanCoefficients {
+
+	private final TamponSegmente tampon;
+	private final int hauteur;
+	private final int largeur;
+	private final RandomAccessFile fichier;
+	private final File chemin;
+	private final boolean temporaire;
+	private final Arene arene;
+
+	private PlanCoefficientsTampon(RandomAccessFile fichier, File chemin,
+			boolean temporaire, int hauteur, int largeur) throws IOException {
+		this.fichier = fichier;
+		this.chemin = chemin;
+		this.temporaire = temporaire;
+		this.arene = null;
+		this.hauteur = hauteur;
+		this.largeur = largeur;
+		long taille = (long) hauteur * largeur * 8;
+		if (fichier.length() < taille)
+			fichier.setLength(taille);
+		this.tampon = TamponSegmente.mapper(fichier.getChannel(), hauteur,
+				largeur * 8);
+	}
+
+	/**
+	 * Plan hors du tas alloue par une arene (voir {@link Arene#allouerCoefficients(int, int)}).
+	 */
+	PlanCoefficientsTampon(Arene arene, int hauteur, int largeur) {
+		this.fichier = null;
+		this.chemin = null;
+		this.temporaire = false;
+		this.arene = arene;
+		this.hauteur = hauteur;
+		this.largeur = largeur;
+		this.tampon = TamponSegmente.allouerDirect(hauteur, largeur * 8);
+	}
+
+	/**
+	 * Ouverture (ou creation) d'un plan stocke dans un fichier.
+	 * Le fichier est conserve a la fermeture du plan.
+	 * @param chemin fichier de stockage des coefficients
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return plan projete sur le fichier
+	 * @throws IOException
+	 */
+	public static PlanCoefficientsTampon surFichier(File chemin, int hauteur,
+			int largeur) throws IOException {
+		return new PlanCoefficientsTampon(new RandomAccessFile(chemin, "rw"),
+				chemin, false, hauteur, largeur);
+	}
+
+	/**
+	 * Creation d'un plan dans un fichier temporaire, initialise a 0.
+	 * Le fichier est supprime a la fermeture du plan.
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return plan projete sur un fichier temporaire
+	 * @throws IOException
+	 */
+	public static PlanCoefficientsTampon temporaire(int hauteur, int largeur)
+			throws IOException {
+		File f = File.createTempFile("ztw", ".coef");
+		f.deleteOnExit();
+		return new PlanCoefficientsTampon(new RandomAccessFile(f, "rw"), f,
+				true, hauteur, largeur);
+	}
+
+	public int hauteur() {
+		return hauteur;
+	}
+
+	public int largeur() {
+		return largeur;
+	}
+
+	public double lire(int i, int j) {
+		return tampon.segment(i).getDouble(tampon.decalage(i) + (j << 3));
+	}
+
+	public void ecrire(int i, int j, double valeur) {
+		tampon.segment(i).putDouble(tampon.decalage(i) + (j << 3), valeur);
+	}
+
+	public void lireLigne(int i, double[] ligne) {
+		ByteBuffer s = tampon.segment(i);
+		int d = tampon.decalage(i);
+		for (int j = 0; j < largeur; j++)
+			ligne[j] = s.getDouble(d + (j << 3));
+	}
+
+	public void ecrireLigne(int i, double[] ligne) {
+		ByteBuffer s = tampon.segment(i);
+		int d = tampon.decalage(i);
+		for (int j = 0; j < largeur; j++)
+			s.putDouble(d + (j << 3), ligne[j]);
+	}
+
+	public PlanCoefficients creerSimilaire(int hauteur, int largeur)
+			throws IOException {
+		if (arene != null)
+			return arene.allouerCoefficients(hauteur, largeur);
+		return temporaire(hauteur, largeur);
+	}
+
+	/**
+	 * Fermeture du plan (tout acces ulterieur leve une
+	 * IllegalStateException), fermeture du fichier et suppression s'il est
+	 * temporaire.
+	 */
+	public void close() throws IOException {
+		tampon.liberer();
+		if (fichier == null)
+			return;
+		fichier.close();
+		if (temporaire)
+			chemin.delete();
+	}
+}
@@ -0,0 +1,40 @@
+package compression;
+
+import java.io.Closeable;
+
+/**
+ * Plan des etiquettes (ZTR, ZI, P, N, NS) utilise par le codage ZTW.
+ * 
+ * <p>
+ * Comme pour {@link PlanCoefficients}, le stockage peut etre un tableau
+ * <code>int[][]</code> ou un fichier projete en memoire.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public interface PlanEtiquettes extends Closeable {
+
+	/**
+	 * @return nombre de lignes du plan
+	 */
+	int hauteur();
+
+	/**
+	 * @return nombre de colonnes du plan
+	 */
+	int largeur();
+
+	/**
+	 * @param i ligne
+	 * @param j colonne
+	 * @return etiquette du pixel
+	 */
+	int lire(int i, int j);
+
+	/**
+	 * @param i ligne
+	 * @param j colonne
+	 * @param etiq etiquette du pixel
+	 */
+	void ecrire(int i, int j, int etiq);
+}
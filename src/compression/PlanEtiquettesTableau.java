@@ -0,0 +1,35 @@
+package compression;
+
+/**
+ * Plan des etiquettes stocke sur le tas dans un tableau <code>int[][]</code>.
+ * 
+ * @version 1.0
+ */
+public class PlanEtiquettesTableau implements PlanEtiquettes {
+
+	private final int[][] etiquettes;
+
+	public PlanEtiquettesTableau(int hauteur, int largeur) {
+		this.etiquettes = new int[hauteur][largeur];
+	}
+
+	public int hauteur() {
+		return etiquettes.length;
+	}
+
+	public int largeur() {
+		return etiquettes[0].length;
+	}
+
+	public int lire(int i, int j) {
+		return etiquettes[i][j];
+	}
+
+	public void ecrire(int i, int j, int etiq) {
+		etiquettes[i][j] = etiq;
+	}
+
+	public void close() {
+		// Rien a liberer, le ramasse-miettes s'en charge.
+	}
+}
@@ -0,0 +1,86 @@
+package compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Plan des etiquettes stocke hors du tas, dans un fichier temporaire projete en
+ * memoire ou dans une memoire allouee par une {@link Arene}.
+ * 
+ * <p>
+ * Une etiquette occupe un octet : seuls les 8 bits de poids faible sont
+ * conserves, ce qui suffit pour les codes ZTR, ZI, P, N et NS.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public class PlanEtiquettesTampon implements PlanEtiquettes {
+
+	private final TamponSegmente tampon;
+	private final int hauteur;
+	private final int largeur;
+	private final RandomAccessFile fichier;
+	private final File chemin;
+
+	private PlanEtiquettesTampon(File chemin, int hauteur, int largeur)
+			throws IOException {
+		this.chemin = chemin;
+		this.hauteur = hauteur;
+		this.largeur = largeur;
+		this.fichier = new RandomAccessFile(chemin, "rw");
+		fichier.setLength((long) hauteur * largeur);
+		this.tampon = TamponSegmente.mapper(fichier.getChannel(), hauteur,
+				largeur);
+	}
+
+	/**
+	 * Plan hors du tas alloue par une arene (voir {@link Arene#allouerEtiquettes(int, int)}).
+	 */
+	PlanEtiquettesTampon(int hauteur, int largeur) {
+		this.chemin = null;
+		this.fichier = null;
+		this.hauteur = hauteur;
+		this.largeur = largeur;
+		this.tampon = TamponSegmente.allouerDirect(hauteur, largeur);
+	}
+
+	/**
+	 * Creation d'un plan d'etiquettes dans un fichier temporaire.
+	 * Le fichier est supprime a la fermeture du plan.
+	 * @param hauteur nombre de lignes
+	 * @param largeur nombre de colonnes
+	 * @return plan projete sur un fichier temporaire
+	 * @throws IOException
+	 */
+	public static PlanEtiquettesTampon temporaire(int hauteur, int largeur)
+			throws IOException {
+		File f = File.createTempFile("ztw", ".etiq");
+		f.deleteOnExit();
+		return new PlanEtiquettesTampon(f, hauteur, largeur);
+	}
+
+	public int hauteur() {
+		return hauteur;
+	}
+
+	public int largeur() {
+		return largeur;
+	}
+
+	public int lire(int i, int j) {
+		return tampon.segment(i).get(tampon.decalage(i) + j) & 0xFF;
+	}
+
+	public void ecrire(int i, int j, int etiq) {
+		tampon.segment(i).put(tampon.decalage(i) + j, (byte) etiq);
+	}
+
+	public void close() throws IOException {
+		tampon.liberer();
+		if (fichier == null)
+			return;
+		fichier.close();
+		chemin.delete();
+	}
+}
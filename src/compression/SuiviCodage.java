@@ -0,0 +1,33 @@
+package compression;
+
+/**
+ * Suivi d'un codage ou d'un decodage ZTW passe par passe.
+ *
+ * <p>
+ * Le codeur appelle {@link #passe(int, long, double)} a la fin de chaque passe
+ * et consulte {@link #estAnnule()} entre deux passes : un codage annule se
+ * termine par une InterruptedIOException, apres avoir ferme un flux qui
+ * contient les passes deja codees. Les deux methodes sont appelees depuis le
+ * thread du codage (ou, pour un flux couleur, depuis les threads des
+ * composantes).
+ * </p>
+ *
+ * @version 1.0
+ */
+public interface SuiviCodage {
+
+	/**
+	 * Fin d'une passe.
+	 * @param numero numero de la passe, a partir de 1
+	 * @param octets taille du flux ecrit (codage) ou lu (decodage) a la fin de
+	 *            la passe
+	 * @param seuil seuil de la passe
+	 */
+	void passe(int numero, long octets, double seuil);
+
+	/**
+	 * @return vrai pour arreter le codage ou le decodage avant la passe
+	 *         suivante
+	 */
+	boolean estAnnule();
+}
@@ -0,0 +1,131 @@
+package compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tampon d'octets decoupe en segments de lignes entieres.
+ * 
+ * <p>
+ * Un ByteBuffer est limite a 2 Go. Pour depasser cette limite, le plan est
+ * decoupe en segments contenant chacun un nombre entier de lignes. L'adresse
+ * d'un element (i, j) est : segment i / lignesParSegment, decalage
+ * (i % lignesParSegment) * octetsParLigne + j * tailleElement.
+ * </p>
+ * 
+ * <p>
+ * Les segments sont soit projetes sur un fichier, soit alloues hors du tas
+ * (ByteBuffer direct). {@link #liberer()} abandonne les segments, dont la
+ * memoire est rendue par le ramasse-miettes : une liberation explicite
+ * laisserait un thread qui tient encore un segment lire une memoire rendue,
+ * au risque de faire tomber la JVM. Tout acces apres liberation leve une
+ * IllegalStateException.
+ * </p>
+ * 
+ * @version 1.0
+ */
+final class TamponSegmente {
+
+	/**
+	 * Taille maximale d'un segment (1 Go).
+	 */
+	private static final long TAILLE_MAX_SEGMENT = 1L << 30;
+
+	private static final ByteBuffer VIDE = ByteBuffer.allocate(0);
+
+	private final ByteBuffer[] segments;
+	private final int lignesParSegment;
+	private final int octetsParLigne;
+	private volatile boolean libere;
+
+	private TamponSegmente(ByteBuffer[] segments, int lignesParSegment,
+			int octetsParLigne) {
+		this.segments = segments;
+		this.lignesParSegment = lignesParSegment;
+		this.octetsParLigne = octetsParLigne;
+	}
+
+	/**
+	 * Nombre de lignes par segment pour une taille de ligne donnee.
+	 */
+	private static int lignesParSegment(int lignes, int octetsParLigne) {
+		long l = TAILLE_MAX_SEGMENT / Math.max(1, octetsParLigne);
+		if (l < 1)
+			l = 1;
+		return (int) Math.min(l, Math.max(1, lignes));
+	}
+
+	/**
+	 * Projection en memoire d'un fichier ouvert en lecture/ecriture.
+	 * Le fichier est agrandi si necessaire.
+	 * @param canal canal du fichier
+	 * @param lignes nombre de lignes
+	 * @param octetsParLigne taille d'une ligne en octets
+	 * @return tampon projete
+	 * @throws IOException
+	 */
+	static TamponSegmente mapper(FileChannel canal, int lignes,
+			int octetsParLigne) throws IOException {
+		int lps = lignesParSegment(lignes, octetsParLigne);
+		int nb = (lignes + lps - 1) / lps;
+		ByteBuffer[] segments = new ByteBuffer[Math.max(1, nb)];
+		for (int s = 0; s < nb; s++) {
+			long debut = (long) s * lps * octetsParLigne;
+			long taille = (long) Math.min(lps, lignes - s * lps)
+					* octetsParLigne;
+			segments[s] = canal.map(FileChannel.MapMode.READ_WRITE, debut,
+					taille).order(ByteOrder.nativeOrder());
+		}
+		if (nb == 0)
+			segments[0] = VIDE;
+		return new TamponSegmente(segments, lps, octetsParLigne);
+	}
+
+	/**
+	 * Allocation hors du tas (ByteBuffer direct), initialisee a 0.
+	 * @param lignes nombre de lignes
+	 * @param octetsParLigne taille d'une ligne en octets
+	 * @return tampon alloue
+	 */
+	static TamponSegmente allouerDirect(int lignes, int octetsParLigne) {
+		int lps = lignesParSegment(lignes, octetsParLigne);
+		int nb = (lignes + lps - 1) / lps;
+		ByteBuffer[] segments = new ByteBuffer[Math.max(1, nb)];
+		for (int s = 0; s < nb; s++) {
+			int taille = Math.min(lps, lignes - s * lps) * octetsParLigne;
+			segments[s] = ByteBuffer.allocateDirect(taille).order(
+					ByteOrder.nativeOrder());
+		}
+		if (nb == 0)
+			segments[0] = VIDE;
+		return new TamponSegmente(segments, lps, octetsParLigne);
+	}
+
+	/**
+	 * Segment contenant la ligne i.
+	 */
+	ByteBuffer segment(int i) {
+		if (libere)
+			throw new IllegalStateException("Plan ferme");
+		return segments[i / lignesParSegment];
+	}
+
+	/**
+	 * Decalage de la ligne i dans son segment.
+	 */
+	int decalage(int i) {
+		return (i % lignesParSegment) * octetsParLigne;
+	}
+
+	/**
+	 * Abandon des segments : le plan est ferme, leur memoire (ou leur
+	 * projection) sera rendue par le ramasse-miettes.
+	 */
+	synchronized void liberer() {
+		libere = true;
+		for (int s = 0; s < segments.length; s++)
+			segments[s] = VIDE;
+	}
+}
@@ -0,0 +1,164 @@
+package testimage;
+
+import java.io.File;
+import java.io.IOException;
+
+import compression.CodageZTW;
+import compression.CourbeDebitDistorsion;
+
+/**
+ * Banc d'essai en ligne de commande : debit (Mo/s) du codage sans perte
+ * DPCM compare a celui du codage ZTW, sur la meme image, et qualite de
+ * l'image decodee du flux ZTW (voir {@link Qualite}) et courbe
+ * debit-distorsion du codage ZTW (voir {@link CourbeDebitDistorsion}).
+ *
+ * <p>
+ * Usage : java testimage.BancEssai [image] [fenetre] [niveaux] [repetitions]
+ * [tuile]
+ * </p>
+ * <ul>
+ * <li>image : image a coder, en niveaux de gris (Images/Lena512.gif par
+ * defaut) ;</li>
+ * <li>fenetre : taille du predicteur AR, fenetre x fenetre (2 par defaut) ;</li>
+ * <li>niveaux : niveaux de resolution de la transformee pour ZTW (3 par
+ * defaut) ;</li>
+ * <li>repetitions : nombre de mesures, la meilleure est retenue (5 par
+ * defaut) ;</li>
+ * <li>tuile : cote des tuiles du codage DPCM a predicteur par tuile (64 par
+ * defaut, 0 pour ne pas le mesurer).</li>
+ * </ul>
+ * <p>
+ * Le flux ZTW est limite a la taille du flux DPCM. Les debits sont en
+ * mega-octets d'image 8 bits par seconde ; la prediction et la transformee
+ * sont comptees dans le codage.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class BancEssai {
+
+	public static void main(String[] args) throws IOException {
+		String chemin = args.length > 0 ? args[0] : "./Images/Lena512.gif";
+		int fenetre = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int niveaux = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int tuile = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+		double[][] donnee = TraitImage.getPixelTab(new ImageIO()
+				.OuvrirImageGris(chemin));
+		int largeur = donnee.length, hauteur = donnee[0].length;
+		double mo = (double) largeur * hauteur / 1e6;
+		System.out.println(chemin + " : " + largeur + " x " + hauteur);
+
+		// Predicteur estime sur l'image centree, pixel predit exclu
+		double[][] coeffs = new double[fenetre][fenetre];
+		for (double[] ligne : coeffs)
+			java.util.Arrays.fill(ligne, 1);
+		double[][] centree = TraitImage.centrageImage(copie(donnee),
+				TraitImage.calculMoyenne(donnee));
+		TraitImage.getCoeff(centree, coeffs);
+		coeffs[fenetre - 1][fenetre - 1] = 0;
+
+		File fDPCM = File.createTempFile("banc", ".dpcm");
+		File fZTW = File.createTempFile("banc", ".bitstream");
+		fDPCM.deleteOnExit();
+		fZTW.deleteOnExit();
+		try {
+			long octets = 0;
+			double codage = Double.MAX_VALUE, decodage = Double.MAX_VALUE;
+			double[][] rec = null;
+			for (int r = 0; r < repetitions; r++) {
+				long t0 = System.nanoTime();
+				octets = TraitImage.codageSansPerte(donnee, coeffs,
+						fDPCM.getPath());
+				long t1 = System.nanoTime();
+				rec = TraitImage.decodageSansPerte(fDPCM.getPath());
+				long t2 = System.nanoTime();
+				codage = Math.min(codage, (t1 - t0) / 1e9);
+				decodage = Math.min(decodage, (t2 - t1) / 1e9);
+			}
+			boolean exact = egales(rec, donnee);
+			System.out.printf("DPCM : %d octets, %.3f bits/pixel, %s%n",
+					octets, 8.0 * octets / (largeur * hauteur),
+					exact ? "sans perte" : "ECHEC : image reconstruite differente");
+			System.out.printf("       codage %.1f Mo/s, decodage %.1f Mo/s%n",
+					mo / codage, mo / decodage);
+
+			if (tuile > 0) {
+				// estimation des predicteurs comprise dans le codage
+				long octetsTuiles = 0;
+				codage = decodage = Double.MAX_VALUE;
+				for (int r = 0; r < repetitions; r++) {
+					long t0 = System.nanoTime();
+					octetsTuiles = TraitImage.codageSansPerte(donnee, fenetre,
+							fenetre, tuile, fDPCM.getPath());
+					long t1 = System.nanoTime();
+					rec = TraitImage.decodageSansPerte(fDPCM.getPath());
+					long t2 = System.nanoTime();
+					codage = Math.min(codage, (t1 - t0) / 1e9);
+					decodage = Math.min(decodage, (t2 - t1) / 1e9);
+				}
+				System.out.printf("DPCM par tuiles de %d : %d octets, %.3f bits/pixel, %s%n",
+						tuile, octetsTuiles,
+						8.0 * octetsTuiles / (largeur * hauteur),
+						egales(rec, donnee) ? "sans perte"
+								: "ECHEC : image reconstruite differente");
+				System.out.printf("       codage %.1f Mo/s, decodage %.1f Mo/s%n",
+						mo / codage, mo / decodage);
+			}
+
+			double ztw = Double.MAX_VALUE;
+			int taille = (int) Math.max(1, octets / 1000);
+			CourbeDebitDistorsion courbe = new CourbeDebitDistorsion();
+			for (int r = 0; r < repetitions; r++) {
+				long t0 = System.nanoTime();
+				// transformee en place, comme ChaineCodage
+				double[][] trans = copie(donnee);
+				TraitImage.haar2D_multi(trans, niveaux);
+				CodageZTW codeur = new CodageZTW();
+				codeur.setCourbe(courbe);
+				codeur.ztw_code(trans, trans.length, trans[0].length,
+						niveaux, taille, fZTW.getPath());
+				ztw = Math.min(ztw, (System.nanoTime() - t0) / 1e9);
+			}
+			System.out.printf("ZTW  : %d octets (taille demandee %d), codage %.1f Mo/s%n",
+					fZTW.length(), taille, mo / ztw);
+
+			// qualite de la reconstruction, mesuree a chaque codage
+			double[][] decode = TraitImage.getPixelTab(ChaineCodage.decoder(
+					fZTW.getPath(), largeur, hauteur, niveaux));
+			Qualite q = null;
+			double mesure = Double.MAX_VALUE;
+			for (int r = 0; r < repetitions; r++) {
+				long t0 = System.nanoTime();
+				q = new Qualite(donnee, decode);
+				mesure = Math.min(mesure, (System.nanoTime() - t0) / 1e9);
+			}
+			System.out.printf("       %s, mesure %.1f Mo/s%n", q, mo / mesure);
+
+			// courbe debit-distorsion du meme codage, un point par passe
+			System.out.println("       passe  bits/pixel  PSNR (dB)");
+			for (int k = 1; k < courbe.nombre(); k++)
+				System.out.printf("       %5d  %10.3f  %9.2f%n", courbe.passe(k),
+						8.0 * courbe.octets(k) / (largeur * hauteur),
+						courbe.psnr(k));
+		} finally {
+			fDPCM.delete();
+			fZTW.delete();
+		}
+	}
+
+	private static boolean egales(double[][] a, double[][] b) {
+		for (int i = 0; i < a.length; i++)
+			if (!java.util.Arrays.equals(a[i], b[i]))
+				return false;
+		return true;
+	}
+
+	private static double[][] copie(double[][] x) {
+		double[][] c = new double[x.length][];
+		for (int i = 0; i < x.length; i++)
+			c[i] = x[i].clone();
+		return c;
+	}
+}
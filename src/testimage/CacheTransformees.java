@@ -0,0 +1,243 @@
+package testimage;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU des transformees de Haar d'images en niveaux de gris, borne en
+ * memoire.
+ *
+ * <p>
+ * Un plan est range sous la cle (image source, transformee, niveaux de
+ * resolution). L'image est reconnue par son identite et referencee
+ * faiblement : le cache ne la garde pas en vie, et une image modifiee en
+ * place doit etre oubliee ({@link #oublier(Object)}). Quand la taille des
+ * plans depasse la capacite, les moins recemment utilises sont retires.
+ * </p>
+ *
+ * <p>
+ * Une transformee absente est derivee de celle de la meme image ayant le plus
+ * de niveaux, en dessous du nombre demande : seuls les niveaux manquants sont
+ * calcules (voir {@link TraitImage#haar2D_multi_suite(double[][], int, int)}),
+ * pour un resultat identique a la transformee complete.
+ * </p>
+ *
+ * <p>
+ * Les plans rendus sont des copies : l'appelant peut les transformer ou les
+ * coder en place. Le cache peut etre partage entre threads ; les copies et
+ * les transformees sont faites hors du verrou.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class CacheTransformees {
+
+	/**
+	 * Nom de la transformee de Haar dans les cles
+	 */
+	public static final String HAAR = "Transformee en ondelettes de Haar";
+
+	/**
+	 * Cle d'un plan : source (identite, reference faible), transformee,
+	 * niveaux
+	 */
+	private static final class Cle {
+		final WeakReference<Object> source;
+		final int code;
+		final String transformee;
+		final int niveaux;
+
+		Cle(Object source, String transformee, int niveaux) {
+			this.source = new WeakReference<Object>(source);
+			this.code = System.identityHashCode(source);
+			this.transformee = transformee;
+			this.niveaux = niveaux;
+		}
+
+		boolean perimee() {
+			return source.get() == null;
+		}
+
+		public int hashCode() {
+			return (code * 31 + transformee.hashCode()) * 31 + niveaux;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Cle))
+				return false;
+			Cle c = (Cle) o;
+			Object s = source.get();
+			return s != null && s == c.source.get() && niveaux == c.niveaux
+					&& transformee.equals(c.transformee);
+		}
+	}
+
+	/**
+	 * Plans du moins au plus recemment utilise
+	 */
+	private final LinkedHashMap<Cle, double[][]> plans = new LinkedHashMap<Cle, double[][]>(
+			16, 0.75f, true);
+
+	private long capacite;
+	private long occupe;
+	private int trouves, derives, calcules;
+
+	/**
+	 * @param capacite taille maximale des plans gardes, en octets
+	 */
+	public CacheTransformees(long capacite) {
+		this.capacite = capacite;
+	}
+
+	/**
+	 * @return capacite par defaut : le quart de la memoire maximale de la JVM
+	 */
+	public static long capaciteParDefaut() {
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * Change la capacite, en retirant les plans en trop.
+	 * @param capacite taille maximale des plans gardes, en octets
+	 */
+	public synchronized void setCapacite(long capacite) {
+		this.capacite = capacite;
+		retirerExces();
+	}
+
+	public synchronized long getCapacite() {
+		return capacite;
+	}
+
+	/**
+	 * @return taille des plans gardes, en octets
+	 */
+	public synchronized long occupe() {
+		return occupe;
+	}
+
+	/**
+	 * Transformee de Haar multiresolution d'une image, comme
+	 * {@link ChaineCodage#transformer(BufferedImage, int)}.
+	 * @param im image en niveaux de gris
+	 * @param niv_resol niveaux de resolution
+	 * @return copie du plan [x][y] de la transformee
+	 */
+	public double[][] haar(BufferedImage im, int niv_resol) {
+		double[][] plan, base = null;
+		int deja = 0;
+		synchronized (this) {
+			purger();
+			plan = plans.get(new Cle(im, HAAR, niv_resol));
+			if (plan != null) {
+				trouves++;
+			} else {
+				// transformee la plus avancee en dessous des niveaux demandes
+				for (int k = niv_resol - 1; k > 0 && base == null; k--) {
+					base = plans.get(new Cle(im, HAAR, k));
+					deja = k;
+				}
+				if (base != null)
+					derives++;
+				else
+					calcules++;
+			}
+		}
+		// les plans gardes ne sont plus modifies : copies et calcul hors du
+		// verrou
+		if (plan != null)
+			return copier(plan);
+		if (base != null) {
+			base = copier(base);
+		} else {
+			base = TraitImage.getPixelTab(im);
+			deja = 0;
+		}
+		TraitImage.haar2D_multi_suite(base, deja, niv_resol);
+		if (!ranger(new Cle(im, HAAR, niv_resol), base))
+			return base;
+		return copier(base);
+	}
+
+	/**
+	 * Retire les plans d'une source.
+	 * @param source image source
+	 */
+	public synchronized void oublier(Object source) {
+		for (Iterator<Map.Entry<Cle, double[][]>> it = plans.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<Cle, double[][]> e = it.next();
+			Object s = e.getKey().source.get();
+			if (s == null || s == source) {
+				occupe -= taille(e.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Retire tous les plans.
+	 */
+	public synchronized void vider() {
+		plans.clear();
+		occupe = 0;
+	}
+
+	public synchronized String toString() {
+		return plans.size() + " plans, " + (occupe >> 20) + " Mo sur "
+				+ (capacite >> 20) + " ; " + trouves + " trouves, " + derives
+				+ " derives, " + calcules + " calcules";
+	}
+
+	/**
+	 * Range un plan, s'il tient dans la capacite.
+	 * @return vrai si le plan est garde
+	 */
+	private synchronized boolean ranger(Cle cle, double[][] plan) {
+		long t = taille(plan);
+		if (t > capacite)
+			return false;
+		double[][] ancien = plans.put(cle, plan);
+		if (ancien != null)
+			occupe -= taille(ancien);
+		occupe += t;
+		retirerExces();
+		return true;
+	}
+
+	private void retirerExces() {
+		for (Iterator<double[][]> it = plans.values().iterator(); occupe > capacite
+				&& it.hasNext();) {
+			occupe -= taille(it.next());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Retire les plans dont la source n'existe plus.
+	 */
+	private void purger() {
+		for (Iterator<Map.Entry<Cle, double[][]>> it = plans.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<Cle, double[][]> e = it.next();
+			if (e.getKey().perimee()) {
+				occupe -= taille(e.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	private static long taille(double[][] plan) {
+		return plan.length == 0 ? 0 : 8L * plan.length * plan[0].length;
+	}
+
+	private static double[][] copier(double[][] plan) {
+		double[][] c = new double[plan.length][];
+		for (int i = 0; i < plan.length; i++)
+			c[i] = plan[i].clone();
+		return c;
+	}
+}
@@ -19,36 +19,57 @@ public class CadreImage extends JFrame {
 	 * 
 	 */
 	private static final long serialVersionUID = 1977104241047460485L;
-	Dimension d ;
-	int oriX,oriY;
 	String titre;
 	BufferedImage im;
+	/**
+	 * Vue a tuiles de l'image : zoom a la molette, deplacement a la souris
+	 */
+	VueImage vue;
 
 	public CadreImage(BufferedImage im, String titre) {
 		PlaceFenetres.PlaceFenetre(1.0/3,1.0/3,this);
 		this.im=im;
 		this.titre=titre;
+		this.setTitle(titre);
+		this.vue=new VueImage(im);
+		JScrollPane defil=new JScrollPane(vue);
+		defil.getViewport().setBackground(Color.black);
+		defil.setBorder(null);
+		this.getContentPane().add(defil);
 		this.setBackground(Color.black);
-		this.setResizable(false);
-
+		if(im!=null && !GraphicsEnvironment.isHeadless()){
+			// a la taille de l'image, dans la limite de l'ecran
+			this.pack();
+			Dimension ecran=Toolkit.getDefaultToolkit().getScreenSize();
+			this.setSize(Math.min(this.getWidth(),ecran.width*9/10),
+					Math.min(this.getHeight(),ecran.height*9/10));
+			this.setLocation(ecran.width/2-this.getWidth()/2,
+					ecran.height/2-this.getHeight()/2);
+		}
 	}
 
-	public void paint(Graphics g){
-		this.d=this.getSize();
-		this.oriX=70;
-		this.oriY=60;
-		this.setVisible(true);
-		this.setTitle(this.titre);
-
-		int w = this.im.getWidth()+20;
-		int h =this.im.getHeight()+20;
-
-		//RÈinitialise affichage
-		g.clearRect(0,0,(int)this.getSize().getWidth(),(int)this.getSize().getHeight());
-
-		//Affiche Image
-		g.drawImage(this.im,this.oriX,this.oriY,w,h,null);
+	/**
+	 * Remplace l'image affichee, par exemple par une etape d'un decodage
+	 * progressif. A appeler depuis le thread de l'interface.
+	 * @param im nouvelle image
+	 * @param titre nouveau titre
+	 */
+	public void setImage(BufferedImage im, String titre) {
+		this.im=im;
+		this.titre=titre;
+		this.setTitle(titre);
+		vue.setImage(im);
+	}
 
-		this.setSize(w+140,h+100);
+	/**
+	 * @return intervalle entre deux rafraichissements de l'ecran principal en
+	 * nanosecondes, celui d'un ecran a 60 Hz si la frequence est inconnue
+	 */
+	static long intervalleRafraichissement() {
+		int hz=0;
+		if(!GraphicsEnvironment.isHeadless())
+			hz=GraphicsEnvironment.getLocalGraphicsEnvironment()
+				.getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+		return 1000000000L/(hz>0 ? hz : 60);
 	}
-}
\ No newline at end of file
+}
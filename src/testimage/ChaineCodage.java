@@ -0,0 +1,121 @@
+package testimage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+
+import compression.CodageZTW;
+import compression.PlanCoefficientsTableau;
+
+/**
+ * Chaines de codage et de decodage ZTW d'une image en niveaux de gris, de
+ * l'image au flux binaire et retour, dans un seul plan de coefficients.
+ *
+ * <p>
+ * Les pixels sont lus directement dans le raster (voir
+ * {@link TraitImage#getPixelTab(BufferedImage)}), transformes en place (voir
+ * {@link TraitImage#haar2D_multi(double[][], int)}) puis codes dans ce meme
+ * plan. Aucune image d'affichage n'est construite : l'appelant la demande a
+ * {@link #imageModule(double[][])} seulement s'il l'affiche.
+ * </p>
+ *
+ * <p>
+ * Au decodage, le flux est decode dans un plan, transforme en place puis
+ * ecrit directement dans le raster de l'image (voir
+ * {@link TraitImage#haar2D_multi_inv_image(double[][], int)}).
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class ChaineCodage {
+
+	/**
+	 * Cote des blocs du parcours des pixels
+	 */
+	private static final int BLOC = 64;
+
+	private ChaineCodage() {
+	}
+
+	/**
+	 * Transformee de Haar multiresolution d'une image.
+	 * @param im image en niveaux de gris
+	 * @param niv_resol niveaux de resolution
+	 * @return plan [x][y] de la transformee, seul tableau alloue
+	 */
+	public static double[][] transformer(BufferedImage im, int niv_resol) {
+		double[][] plan = TraitImage.getPixelTab(im);
+		TraitImage.haar2D_multi(plan, niv_resol);
+		return plan;
+	}
+
+	/**
+	 * Codage ZTW d'une image : transformee puis codage dans le meme plan.
+	 * @param im image en niveaux de gris
+	 * @param niv_resol niveaux de resolution
+	 * @param size taille imposee du flux binaire (kbits)
+	 * @param bitstream_name nom du fichier du flux binaire
+	 * @return taille du flux, comme
+	 *         {@link CodageZTW#ztw_code(double[][], int, int, int, int, String)}
+	 * @throws IOException
+	 */
+	public static int coder(BufferedImage im, int niv_resol, int size,
+			String bitstream_name) throws IOException {
+		double[][] plan = transformer(im, niv_resol);
+		return new CodageZTW().ztw_code(new PlanCoefficientsTableau(plan),
+				plan.length, plan[0].length, niv_resol, size, bitstream_name);
+	}
+
+	/**
+	 * Decodage ZTW d'une image : decodage, transformee inverse en place et
+	 * ecriture dans l'image.
+	 * @param bitstream_name nom du fichier du flux binaire
+	 * @param largeur largeur de l'image
+	 * @param hauteur hauteur de l'image
+	 * @param niv_resol niveaux de resolution
+	 * @return image decodee
+	 * @throws IOException
+	 */
+	public static BufferedImage decoder(String bitstream_name, int largeur,
+			int hauteur, int niv_resol) throws IOException {
+		double[][] plan = new double[largeur][hauteur];
+		new CodageZTW().ztw_decode(new PlanCoefficientsTableau(plan), largeur,
+				hauteur, niv_resol, bitstream_name);
+		return reconstruire(plan, niv_resol);
+	}
+
+	/**
+	 * Transformee inverse d'un plan de coefficients jusqu'a l'image.
+	 * @param plan plan [x][y] de la transformee, detruit
+	 * @param niv_resol niveaux de resolution
+	 * @return image reconstruite
+	 */
+	public static BufferedImage reconstruire(double[][] plan, int niv_resol) {
+		return TraitImage.haar2D_multi_inv_image(plan, niv_resol);
+	}
+
+	/**
+	 * Image du module des coefficients, arrondi et sature sur [0, 255], ecrite
+	 * directement dans le tableau d'octets de l'image.
+	 * @param plan plan [x][y]
+	 * @return image en niveaux de gris
+	 */
+	public static BufferedImage imageModule(double[][] plan) {
+		int w = plan.length, h = plan[0].length;
+		BufferedImage im = new BufferedImage(w, h,
+				BufferedImage.TYPE_BYTE_GRAY);
+		byte[] octets = ((DataBufferByte) im.getRaster().getDataBuffer())
+				.getData();
+		// par blocs, comme setPixelTab : le plan est indexe [x][y], le
+		// raster range par lignes
+		for (int y0 = 0; y0 < h; y0 += BLOC)
+			for (int x0 = 0; x0 < w; x0 += BLOC) {
+				int yMax = Math.min(h, y0 + BLOC);
+				int xMax = Math.min(w, x0 + BLOC);
+				for (int j = y0; j < yMax; j++)
+					for (int i = x0, k = j * w + x0; i < xMax; i++, k++)
+						octets[k] = TraitImage.versOctet(Math.abs(plan[i][j]));
+			}
+		return im;
+	}
+}
@@ -0,0 +1,331 @@
+package testimage;
+
+/**
+ * Convolution 2D d'un plan de coefficients ou d'un plan d'octets, avec la
+ * semantique de ConvolveOp en EDGE_NO_OP.
+ *
+ * <p>
+ * Le noyau est range comme celui de java.awt.image.Kernel : w valeurs par
+ * ligne, h lignes, origine en ((w-1)/2, (h-1)/2). Le resultat en (x, y) est
+ * la somme des noyau[j*w+i] * source(x+ox-i, y+oy-j) ; les pixels a moins de
+ * w/2 colonnes ou h/2 lignes du bord, ou le noyau ne tient pas, gardent leur
+ * valeur. Sur un plan d'octets, le resultat est tronque puis sature sur
+ * [0, 255], comme le fait ConvolveOp.
+ * </p>
+ *
+ * <p>
+ * Un noyau de rang 1 (separable, produit d'une colonne et d'une ligne) est
+ * applique en deux passes 1D : O(w+h) operations par pixel au lieu de
+ * O(w.h). Les deux passes, comme la convolution 2D generale, sont des
+ * combinaisons de lignes entieres decalees, parcourues en memoire contigue.
+ * Le plan est decoupe en bandes de lignes traitees en parallele.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class Convolution {
+
+	/**
+	 * Ecart relatif au-dela duquel un noyau n'est pas considere de rang 1
+	 */
+	private static final double TOLERANCE_RANG = 1e-6;
+
+	/**
+	 * Lignes de resultat calculees ensemble : lignes d'entree et resultats
+	 * intermediaires restent en cache
+	 */
+	private static final int BLOC = 32;
+
+	private Convolution() {
+	}
+
+	/**
+	 * Convolution d'un plan de coefficients indexe [x][y], comme
+	 * {@link TraitImage#getPixelTab(java.awt.image.BufferedImage)}.
+	 * @param donnee plan [largeur][hauteur] (non modifie)
+	 * @param noyau noyau de w x h valeurs, par lignes
+	 * @param w largeur du noyau
+	 * @param h hauteur du noyau
+	 * @return plan filtre, sans arrondi
+	 */
+	public static double[][] convoluer(final double[][] donnee, float[] noyau,
+			int w, int h) {
+		verifier(noyau, w, h);
+		final int P = donnee.length;
+		final int Q = P == 0 ? 0 : donnee[0].length;
+		// lignes du calcul : colonnes x du plan ; le premier indice du noyau
+		// suit x
+		final Noyau n = new Noyau(noyau, w, h, true);
+		final double[][] res = new double[P][];
+		for (int p = 0; p < P; p++)
+			if (p < n.ma || p >= P - n.ma || Q - 2 * n.mb <= 0)
+				res[p] = donnee[p].clone();
+		if (P - 2 * n.ma <= 0 || Q - 2 * n.mb <= 0)
+			return res;
+		final int lignes = P - 2 * n.ma;
+		Parallele.pourBandes(lignes,
+				Parallele.nbBandes(lignes, (long) P * Q * n.cout()),
+				new Parallele.Bande() {
+					public void traiter(int bande, int debut, int fin) {
+						double[][] tmp = n.travail(Q);
+						for (int p0 = n.ma + debut; p0 < n.ma + fin; p0 += BLOC) {
+							int p1 = Math.min(n.ma + fin, p0 + BLOC);
+							double[][] calc = new double[p1 - p0][Q];
+							n.calculer(donnee, 0, calc, p0, p1, Q, tmp);
+							for (int p = p0; p < p1; p++) {
+								double[] l = calc[p - p0], s = donnee[p];
+								System.arraycopy(s, 0, l, 0, n.mb);
+								System.arraycopy(s, Q - n.mb, l, Q - n.mb, n.mb);
+								res[p] = l;
+							}
+						}
+					}
+				});
+		return res;
+	}
+
+	/**
+	 * Convolution d'un plan d'octets non signes range par lignes.
+	 * @param src pixels, largeur par ligne (non modifies)
+	 * @param dst resultat, tableau distinct de src, de meme taille
+	 * @param largeur largeur du plan
+	 * @param hauteur hauteur du plan
+	 * @param noyau noyau de w x h valeurs, par lignes
+	 * @param w largeur du noyau
+	 * @param h hauteur du noyau
+	 */
+	public static void convoluer(final byte[] src, final byte[] dst,
+			final int largeur, int hauteur, float[] noyau, int w, int h) {
+		verifier(noyau, w, h);
+		if (src == dst)
+			throw new IllegalArgumentException(
+					"Plans source et resultat confondus");
+		final int Q = largeur;
+		// lignes du calcul : lignes y de l'image ; le premier indice du noyau
+		// suit y
+		final Noyau n = new Noyau(noyau, w, h, false);
+		System.arraycopy(src, 0, dst, 0, largeur * hauteur);
+		if (hauteur - 2 * n.ma <= 0 || Q - 2 * n.mb <= 0)
+			return;
+		final int lignes = hauteur - 2 * n.ma;
+		Parallele.pourBandes(lignes,
+				Parallele.nbBandes(lignes, (long) hauteur * Q * n.cout()),
+				new Parallele.Bande() {
+					public void traiter(int bande, int debut, int fin) {
+						double[][] tmp = n.travail(Q);
+						double[][] entree = new double[BLOC + n.na - 1][Q];
+						double[][] calc = new double[BLOC][Q];
+						for (int p0 = n.ma + debut; p0 < n.ma + fin; p0 += BLOC) {
+							int p1 = Math.min(n.ma + fin, p0 + BLOC);
+							// lignes d'entree p0-ma .. p1+oa-1, en double
+							int d = p0 - n.ma;
+							for (int p = 0; p < p1 - p0 + n.na - 1; p++) {
+								double[] l = entree[p];
+								for (int q = 0, k = (d + p) * Q; q < Q; q++, k++)
+									l[q] = src[k] & 0xFF;
+							}
+							n.calculer(entree, d, calc, p0, p1, Q, tmp);
+							for (int p = p0; p < p1; p++) {
+								double[] l = calc[p - p0];
+								for (int q = n.mb, k = p * Q + n.mb; q < Q - n.mb; q++, k++)
+									dst[k] = versOctet(l[q]);
+							}
+						}
+					}
+				});
+	}
+
+	/**
+	 * Decomposition d'un noyau de rang 1.
+	 * @param noyau noyau de w x h valeurs, par lignes
+	 * @param w largeur du noyau
+	 * @param h hauteur du noyau
+	 * @return {colonne (h valeurs), ligne (w valeurs)} dont le produit
+	 *         colonne[j] * ligne[i] redonne noyau[j*w+i], ou null si le noyau
+	 *         n'est pas de rang 1
+	 */
+	public static double[][] separer(float[] noyau, int w, int h) {
+		verifier(noyau, w, h);
+		int jm = 0, im = 0;
+		double max = 0;
+		for (int j = 0; j < h; j++)
+			for (int i = 0; i < w; i++)
+				if (Math.abs(noyau[j * w + i]) > max) {
+					max = Math.abs(noyau[j * w + i]);
+					jm = j;
+					im = i;
+				}
+		if (max == 0 || max != max)
+			return null;
+		// colonne du plus grand coefficient, ligne normalisee par celui-ci
+		double[] colonne = new double[h];
+		double[] ligne = new double[w];
+		for (int j = 0; j < h; j++)
+			colonne[j] = noyau[j * w + im];
+		for (int i = 0; i < w; i++)
+			ligne[i] = noyau[jm * w + i] / (double) noyau[jm * w + im];
+		for (int j = 0; j < h; j++)
+			for (int i = 0; i < w; i++)
+				if (Math.abs(noyau[j * w + i] - colonne[j] * ligne[i]) > TOLERANCE_RANG
+						* max)
+					return null;
+		return new double[][] { colonne, ligne };
+	}
+
+	private static void verifier(float[] noyau, int w, int h) {
+		if (w <= 0 || h <= 0 || noyau.length < w * h)
+			throw new IllegalArgumentException("Noyau de " + noyau.length
+					+ " valeurs pour " + w + " x " + h);
+	}
+
+	/**
+	 * Troncature et saturation sur [0, 255], comme ConvolveOp
+	 */
+	private static byte versOctet(double v) {
+		if (!(v > 0))
+			return 0;
+		if (v >= 255)
+			return (byte) 255;
+		return (byte) (int) v;
+	}
+
+	/**
+	 * Noyau exprime sur les axes du calcul : a en travers des lignes, b le
+	 * long des lignes.
+	 */
+	private static final class Noyau {
+		final int na, nb;
+		/**
+		 * Origines et marges (lignes et colonnes non calculees de chaque cote)
+		 */
+		final int oa, ob, ma, mb;
+		/**
+		 * Coefficients c[a*nb+b], ou facteurs u[a] et v[b] si le noyau est
+		 * separable
+		 */
+		final double[] c, u, v;
+		/**
+		 * Decalages le long des lignes : db[b] = ob-b, dc[a*nb+b] = ob-b
+		 */
+		final int[] db, dc, zeros;
+
+		/**
+		 * @param transpose vrai si les lignes du calcul suivent le premier
+		 *            indice du noyau (plan [x][y]), faux si elles suivent le
+		 *            second (plan range par lignes)
+		 */
+		Noyau(float[] noyau, int w, int h, boolean transpose) {
+			na = transpose ? w : h;
+			nb = transpose ? h : w;
+			oa = (na - 1) / 2;
+			ob = (nb - 1) / 2;
+			ma = na / 2;
+			mb = nb / 2;
+			db = new int[nb];
+			for (int b = 0; b < nb; b++)
+				db[b] = ob - b;
+			zeros = new int[na];
+			// deux passes et leurs lignes intermediaires ne valent la peine
+			// qu'au-dela de quelques coefficients
+			double[][] s = na * nb > 2 * (na + nb) ? separer(noyau, w, h) : null;
+			if (s != null) {
+				c = null;
+				dc = null;
+				u = transpose ? s[1] : s[0];
+				v = transpose ? s[0] : s[1];
+			} else {
+				c = new double[na * nb];
+				dc = new int[na * nb];
+				for (int j = 0; j < h; j++)
+					for (int i = 0; i < w; i++)
+						if (transpose)
+							c[i * nb + j] = noyau[j * w + i];
+						else
+							c[j * nb + i] = noyau[j * w + i];
+				for (int t = 0; t < na * nb; t++)
+					dc[t] = db[t % nb];
+				u = v = null;
+			}
+		}
+
+		/**
+		 * Operations par pixel
+		 */
+		int cout() {
+			return c == null ? na + nb : na * nb;
+		}
+
+		/**
+		 * Lignes intermediaires de la passe le long des lignes (noyau separable)
+		 */
+		double[][] travail(int Q) {
+			return c == null ? new double[BLOC + na - 1][Q] : null;
+		}
+
+		/**
+		 * Lignes p0..p1-1 (au plus BLOC) du resultat dans res[p-p0], colonnes
+		 * [mb, Q-mb) ; la ligne p de l'entree est src[p-decalage].
+		 */
+		void calculer(double[][] src, int decalage, double[][] res, int p0,
+				int p1, int Q, double[][] tmp) {
+			int q0 = mb, q1 = Q - mb;
+			if (c == null) {
+				// passe le long des lignes sur les lignes p0-ma .. p1+oa-1,
+				// puis combinaison de ces lignes
+				int base = p0 - ma;
+				double[][] s = new double[nb][];
+				for (int t = 0; t < p1 - p0 + na - 1; t++) {
+					java.util.Arrays.fill(s, src[base + t - decalage]);
+					combiner(tmp[t], v, s, db, nb, q0, q1);
+				}
+				s = new double[na][];
+				for (int p = p0; p < p1; p++) {
+					for (int a = 0; a < na; a++)
+						s[a] = tmp[p + oa - a - base];
+					combiner(res[p - p0], u, s, zeros, na, q0, q1);
+				}
+			} else {
+				double[][] s = new double[na * nb][];
+				for (int p = p0; p < p1; p++) {
+					for (int t = 0; t < na * nb; t++)
+						s[t] = src[p + oa - t / nb - decalage];
+					combiner(res[p - p0], c, s, dc, na * nb, q0, q1);
+				}
+			}
+		}
+
+		/**
+		 * l[q] = somme des k[t] * s[t][q+d[t]] pour q dans [q0, q1), par
+		 * groupes de quatre termes : une lecture et une ecriture de l par
+		 * groupe
+		 */
+		private static void combiner(double[] l, double[] k, double[][] s,
+				int[] d, int n, int q0, int q1) {
+			int t = 0;
+			for (; t + 4 <= n; t += 4) {
+				double k0 = k[t], k1 = k[t + 1], k2 = k[t + 2], k3 = k[t + 3];
+				double[] s0 = s[t], s1 = s[t + 1], s2 = s[t + 2], s3 = s[t + 3];
+				int d0 = d[t], d1 = d[t + 1], d2 = d[t + 2], d3 = d[t + 3];
+				if (t == 0)
+					for (int q = q0; q < q1; q++)
+						l[q] = k0 * s0[q + d0] + k1 * s1[q + d1] + k2
+								* s2[q + d2] + k3 * s3[q + d3];
+				else
+					for (int q = q0; q < q1; q++)
+						l[q] += k0 * s0[q + d0] + k1 * s1[q + d1] + k2
+								* s2[q + d2] + k3 * s3[q + d3];
+			}
+			for (; t < n; t++) {
+				double k0 = k[t];
+				double[] s0 = s[t];
+				int d0 = d[t];
+				if (t == 0)
+					for (int q = q0; q < q1; q++)
+						l[q] = k0 * s0[q + d0];
+				else
+					for (int q = q0; q < q1; q++)
+						l[q] += k0 * s0[q + d0];
+			}
+		}
+	}
+}
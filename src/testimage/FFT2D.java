@@ -0,0 +1,661 @@
+package testimage;
+
+/**
+ * Transformee de Fourier discrete 2D.
+ *
+ * <p>
+ * Les tableaux sont indexes [ligne][colonne] comme les autres tableaux du
+ * projet : les lignes sont transformees sur le second indice, puis les
+ * colonnes sur le premier. Chaque dimension a son plan 1D, calcule une fois a
+ * la construction : table des racines de l'unite et decomposition de la
+ * longueur en facteurs.
+ * </p>
+ *
+ * <ul>
+ * <li>longueurs a petits facteurs premiers (2, 3, 5, 7, 11, 13) : algorithme
+ * de Stockham a base mixte (bases 4 et 2 codees a part), sans permutation des
+ * indices ;</li>
+ * <li>autres longueurs : algorithme de Bluestein, qui ramene la transformee a
+ * une convolution de longueur puissance de deux.</li>
+ * </ul>
+ *
+ * <p>
+ * Pour des donnees reelles, deux lignes sont transformees ensemble par une
+ * seule FFT complexe et seule la moitie du spectre (colonnes 0 a C/2) est
+ * calculee. Lignes et colonnes sont reparties entre les processeurs (voir
+ * {@link #setParallele(boolean)}).
+ * </p>
+ *
+ * <p>
+ * Convention : transformee directe sans facteur, inverse divisee par le
+ * nombre de points.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class FFT2D {
+
+	private final int lignes;
+	private final int colonnes;
+	private final Plan planLignes;
+	private final Plan planColonnes;
+	private boolean parallele = true;
+
+	/**
+	 * @param lignes nombre de lignes (premier indice)
+	 * @param colonnes nombre de colonnes (second indice)
+	 */
+	public FFT2D(int lignes, int colonnes) {
+		if (lignes < 1 || colonnes < 1)
+			throw new IllegalArgumentException("Dimensions invalides : "
+					+ lignes + " x " + colonnes);
+		this.lignes = lignes;
+		this.colonnes = colonnes;
+		this.planColonnes = new Plan(lignes);
+		this.planLignes = colonnes == lignes ? planColonnes : new Plan(colonnes);
+	}
+
+	public int lignes() {
+		return lignes;
+	}
+
+	public int colonnes() {
+		return colonnes;
+	}
+
+	/**
+	 * Repartition des lignes et des colonnes entre les processeurs (vrai par defaut).
+	 * @param parallele faux pour tout calculer dans le thread appelant
+	 */
+	public void setParallele(boolean parallele) {
+		this.parallele = parallele;
+	}
+
+	/**
+	 * Transformee directe complexe, en place.
+	 * @param re parties reelles [lignes][colonnes]
+	 * @param im parties imaginaires [lignes][colonnes]
+	 */
+	public void directe(double[][] re, double[][] im) {
+		transformerLignes(re, im, false);
+		transformerColonnes(re, im, colonnes, false);
+	}
+
+	/**
+	 * Transformee inverse complexe, en place (divisee par lignes x colonnes).
+	 * @param re parties reelles [lignes][colonnes]
+	 * @param im parties imaginaires [lignes][colonnes]
+	 */
+	public void inverse(double[][] re, double[][] im) {
+		transformerColonnes(re, im, colonnes, true);
+		transformerLignes(re, im, true);
+		echelle(re, im, colonnes, 1.0 / ((double) lignes * colonnes));
+	}
+
+	/**
+	 * Transformee directe d'un tableau reel.
+	 * @param x donnees reelles [lignes][colonnes] (non modifiees)
+	 * @return {re, im}, demi-spectre [lignes][colonnes/2+1] ; les autres
+	 *         colonnes s'en deduisent par X[k][l] = conj(X[-k][-l])
+	 */
+	public double[][][] directeReelle(final double[][] x) {
+		final int demi = colonnes / 2 + 1;
+		final double[][] re = new double[lignes][demi];
+		final double[][] im = new double[lignes][demi];
+		final int paires = (lignes + 1) / 2;
+		pourBandes(paires, (long) lignes * colonnes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				double[] zr = new double[colonnes];
+				double[] zi = new double[colonnes];
+				Travail t = planLignes.travail();
+				for (int p = debut; p < fin; p++) {
+					int a = 2 * p, b = 2 * p + 1;
+					System.arraycopy(x[a], 0, zr, 0, colonnes);
+					if (b < lignes)
+						System.arraycopy(x[b], 0, zi, 0, colonnes);
+					else
+						java.util.Arrays.fill(zi, 0);
+					planLignes.directe(zr, zi, t);
+					// Separation des spectres des deux lignes reelles
+					for (int k = 0; k < demi; k++) {
+						int kk = k == 0 ? 0 : colonnes - k;
+						double pr = zr[k], pi = zi[k];
+						double qr = zr[kk], qi = -zi[kk];
+						re[a][k] = (pr + qr) / 2;
+						im[a][k] = (pi + qi) / 2;
+						if (b < lignes) {
+							re[b][k] = (pi - qi) / 2;
+							im[b][k] = (qr - pr) / 2;
+						}
+					}
+				}
+			}
+		});
+		transformerColonnes(re, im, demi, false);
+		return new double[][][] { re, im };
+	}
+
+	/**
+	 * Transformee inverse d'un demi-spectre de donnees reelles.
+	 * @param re parties reelles du demi-spectre [lignes][colonnes/2+1] (modifiees)
+	 * @param im parties imaginaires du demi-spectre [lignes][colonnes/2+1] (modifiees)
+	 * @return donnees reelles [lignes][colonnes]
+	 */
+	public double[][] inverseReelle(final double[][] re, final double[][] im) {
+		final int demi = colonnes / 2 + 1;
+		transformerColonnes(re, im, demi, true);
+		final double[][] x = new double[lignes][colonnes];
+		final int paires = (lignes + 1) / 2;
+		final double facteur = 1.0 / ((double) lignes * colonnes);
+		pourBandes(paires, (long) lignes * colonnes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				double[] zr = new double[colonnes];
+				double[] zi = new double[colonnes];
+				Travail t = planLignes.travail();
+				for (int p = debut; p < fin; p++) {
+					int a = 2 * p, b = 2 * p + 1;
+					// Z = A + i.B sur tout le spectre, A et B hermitiens
+					for (int k = 0; k < colonnes; k++) {
+						double ar, ai, br = 0, bi = 0;
+						if (k < demi) {
+							ar = re[a][k];
+							ai = im[a][k];
+							if (b < lignes) {
+								br = re[b][k];
+								bi = im[b][k];
+							}
+						} else {
+							int kk = colonnes - k;
+							ar = re[a][kk];
+							ai = -im[a][kk];
+							if (b < lignes) {
+								br = re[b][kk];
+								bi = -im[b][kk];
+							}
+						}
+						zr[k] = ar - bi;
+						zi[k] = ai + br;
+					}
+					planLignes.inverse(zr, zi, t);
+					for (int k = 0; k < colonnes; k++) {
+						x[a][k] = zr[k] * facteur;
+						if (b < lignes)
+							x[b][k] = zi[k] * facteur;
+					}
+				}
+			}
+		});
+		return x;
+	}
+
+	/**
+	 * Spectre de puissance |X|^2 d'une image reelle, sur toutes les frequences.
+	 * @param x image [lignes][colonnes]
+	 * @return |X[k][l]|^2, frequence nulle en [0][0]
+	 */
+	public static double[][] spectrePuissance(double[][] x) {
+		int L = x.length;
+		int C = x[0].length;
+		double[][][] X = new FFT2D(L, C).directeReelle(x);
+		int demi = C / 2 + 1;
+		double[][] p = new double[L][C];
+		for (int k = 0; k < L; k++) {
+			int kk = k == 0 ? 0 : L - k;
+			for (int l = 0; l < demi; l++) {
+				double v = X[0][k][l] * X[0][k][l] + X[1][k][l] * X[1][k][l];
+				p[k][l] = v;
+				// Symetrie hermitienne pour les colonnes non calculees
+				if (l > 0 && C - l >= demi)
+					p[kk][C - l] = v;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Autocorrelation par FFT, meme definition que
+	 * {@link TraitImage#Autocorelation(double[][], int, int)}.
+	 * <p>
+	 * L'image est completee par des zeros pour que la correlation circulaire
+	 * ne replie aucun des decalages demandes. Le cout ne depend plus de la
+	 * taille de la fenetre. Le resultat differe du calcul direct par les
+	 * erreurs d'arrondi de la FFT : de l'ordre de 1e-15 en relatif aux petits
+	 * decalages, davantage aux decalages extremes ou peu de pixels se
+	 * recouvrent.
+	 * </p>
+	 * @param donnee image
+	 * @param w demi-largeur de la fenetre (premier indice)
+	 * @param h demi-hauteur de la fenetre (second indice)
+	 * @return autocorrelation [2w-1][2h-1]
+	 */
+	public static double[][] autocorrelation(double[][] donnee, int w, int h) {
+		int L = donnee.length;
+		int C = donnee[0].length;
+		int P = tailleRapide(L + w - 1);
+		int Q = tailleRapide(C + h - 1);
+		double[][] x = new double[P][Q];
+		for (int i = 0; i < L; i++)
+			System.arraycopy(donnee[i], 0, x[i], 0, C);
+		FFT2D fft = new FFT2D(P, Q);
+		double[][][] X = fft.directeReelle(x);
+		for (int k = 0; k < P; k++)
+			for (int l = 0; l < X[0][k].length; l++) {
+				X[0][k][l] = X[0][k][l] * X[0][k][l] + X[1][k][l] * X[1][k][l];
+				X[1][k][l] = 0;
+			}
+		double[][] c = fft.inverseReelle(X[0], X[1]);
+		double[][] auto = new double[2 * w - 1][2 * h - 1];
+		for (int k = 0; k < 2 * w - 1; k++) {
+			int di = k - (w - 1);
+			for (int l = 0; l < 2 * h - 1; l++) {
+				int dj = l - (h - 1);
+				long count = (long) Math.max(0, L - Math.abs(di))
+						* Math.max(0, C - Math.abs(dj));
+				if (count == 0)
+					auto[k][l] = Double.NaN;
+				else
+					auto[k][l] = c[(di + P) % P][(dj + Q) % Q] / count;
+			}
+		}
+		return auto;
+	}
+
+	/**
+	 * Convolution d'une image par un noyau, par FFT.
+	 * <p>
+	 * y[i][j] = somme sur (a, b) de noyau[a][b] * x[i-a+ca][j-b+cb], ou (ca,
+	 * cb) est le centre du noyau (longueur / 2) et les pixels hors de l'image
+	 * valent zero. Interessant pour les grands noyaux : le cout ne depend pas
+	 * de leur taille.
+	 * </p>
+	 * @param x image [lignes][colonnes]
+	 * @param noyau noyau de convolution
+	 * @return image filtree, de la taille de x
+	 */
+	public static double[][] convolution(double[][] x, double[][] noyau) {
+		int L = x.length;
+		int C = x[0].length;
+		int A = noyau.length;
+		int B = noyau[0].length;
+		int P = tailleRapide(L + A - 1);
+		int Q = tailleRapide(C + B - 1);
+		double[][] a = new double[P][Q];
+		double[][] b = new double[P][Q];
+		for (int i = 0; i < L; i++)
+			System.arraycopy(x[i], 0, a[i], 0, C);
+		for (int i = 0; i < A; i++)
+			System.arraycopy(noyau[i], 0, b[i], 0, B);
+		FFT2D fft = new FFT2D(P, Q);
+		double[][][] X = fft.directeReelle(a);
+		double[][][] N = fft.directeReelle(b);
+		for (int k = 0; k < P; k++)
+			for (int l = 0; l < X[0][k].length; l++) {
+				double xr = X[0][k][l], xi = X[1][k][l];
+				double nr = N[0][k][l], ni = N[1][k][l];
+				X[0][k][l] = xr * nr - xi * ni;
+				X[1][k][l] = xr * ni + xi * nr;
+			}
+		double[][] plein = fft.inverseReelle(X[0], X[1]);
+		int ca = A / 2;
+		int cb = B / 2;
+		double[][] y = new double[L][C];
+		for (int i = 0; i < L; i++)
+			System.arraycopy(plein[i + ca], cb, y[i], 0, C);
+		return y;
+	}
+
+	/**
+	 * Plus petite longueur au moins egale a n dont les seuls facteurs premiers
+	 * sont 2, 3 et 5.
+	 * @param n longueur minimale
+	 * @return longueur rapide a transformer
+	 */
+	public static int tailleRapide(int n) {
+		int meilleur = Integer.MAX_VALUE;
+		for (long p5 = 1; p5 < 2L * n; p5 *= 5)
+			for (long p3 = p5; p3 < 2L * n; p3 *= 3) {
+				long v = p3;
+				while (v < n)
+					v *= 2;
+				if (v < meilleur)
+					meilleur = (int) v;
+			}
+		return Math.max(1, meilleur);
+	}
+
+	private void transformerLignes(final double[][] re, final double[][] im,
+			final boolean inverse) {
+		pourBandes(lignes, (long) lignes * colonnes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				Travail t = planLignes.travail();
+				for (int i = debut; i < fin; i++)
+					if (inverse)
+						planLignes.inverse(re[i], im[i], t);
+					else
+						planLignes.directe(re[i], im[i], t);
+			}
+		});
+	}
+
+	/**
+	 * Transformee des n premieres colonnes, recopiees une a une dans des
+	 * tableaux de travail.
+	 */
+	private void transformerColonnes(final double[][] re, final double[][] im,
+			int n, final boolean inverse) {
+		pourBandes(n, (long) lignes * n, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				double[] cr = new double[lignes];
+				double[] ci = new double[lignes];
+				Travail t = planColonnes.travail();
+				for (int j = debut; j < fin; j++) {
+					for (int i = 0; i < lignes; i++) {
+						cr[i] = re[i][j];
+						ci[i] = im[i][j];
+					}
+					if (inverse)
+						planColonnes.inverse(cr, ci, t);
+					else
+						planColonnes.directe(cr, ci, t);
+					for (int i = 0; i < lignes; i++) {
+						re[i][j] = cr[i];
+						im[i][j] = ci[i];
+					}
+				}
+			}
+		});
+	}
+
+	private void echelle(final double[][] re, final double[][] im,
+			final int n, final double facteur) {
+		pourBandes(lignes, (long) lignes * n, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int i = debut; i < fin; i++)
+					for (int j = 0; j < n; j++) {
+						re[i][j] *= facteur;
+						im[i][j] *= facteur;
+					}
+			}
+		});
+	}
+
+	private void pourBandes(int n, long travail, Parallele.Bande bande) {
+		// Le log de la longueur : une FFT coute plus qu'un simple parcours
+		int bandes = parallele ? Parallele.nbBandes(n, travail * 8) : 1;
+		Parallele.pourBandes(n, bandes, bande);
+	}
+
+	/**
+	 * Tableaux de travail d'un plan, propres a un thread.
+	 */
+	static final class Travail {
+		final double[] re;
+		final double[] im;
+		final double[] aRe;
+		final double[] aIm;
+		final Travail interne;
+
+		Travail(int n, int m, Travail interne) {
+			this.re = new double[n];
+			this.im = new double[n];
+			this.aRe = new double[m];
+			this.aIm = new double[m];
+			this.interne = interne;
+		}
+	}
+
+	/**
+	 * FFT complexe 1D d'une longueur donnee.
+	 */
+	static final class Plan {
+
+		/**
+		 * Au-dela de ce facteur premier, on passe par Bluestein
+		 */
+		private static final int FACTEUR_MAX = 13;
+
+		final int n;
+
+		/**
+		 * Racines de l'unite : exp(-2 i pi k / n) = cos[k] + i.sin[k]
+		 */
+		private final double[] cos;
+		private final double[] sin;
+		private final int[] bases;
+
+		/**
+		 * Bluestein : longueur de la convolution, plan associe, chirp et
+		 * transformee du noyau
+		 */
+		private final int m;
+		private final Plan planM;
+		private final double[] chRe, chIm, noyauRe, noyauIm;
+
+		Plan(int n) {
+			this.n = n;
+			int[] facteurs = factoriser(n);
+			boolean bluestein = false;
+			for (int f : facteurs)
+				if (f > FACTEUR_MAX)
+					bluestein = true;
+			if (!bluestein) {
+				this.bases = facteurs;
+				this.cos = new double[n];
+				this.sin = new double[n];
+				for (int k = 0; k < n; k++) {
+					double a = -2 * Math.PI * k / n;
+					cos[k] = Math.cos(a);
+					sin[k] = Math.sin(a);
+				}
+				this.m = 0;
+				this.planM = null;
+				this.chRe = this.chIm = this.noyauRe = this.noyauIm = null;
+			} else {
+				this.bases = null;
+				this.cos = this.sin = null;
+				int mm = 1;
+				while (mm < 2 * n - 1)
+					mm *= 2;
+				this.m = mm;
+				this.planM = new Plan(mm);
+				// chirp w[k] = exp(-i pi k^2 / n), k^2 pris modulo 2n
+				chRe = new double[n];
+				chIm = new double[n];
+				for (int k = 0; k < n; k++) {
+					long k2 = ((long) k * k) % (2L * n);
+					double a = -Math.PI * k2 / n;
+					chRe[k] = Math.cos(a);
+					chIm[k] = Math.sin(a);
+				}
+				noyauRe = new double[mm];
+				noyauIm = new double[mm];
+				noyauRe[0] = chRe[0];
+				noyauIm[0] = -chIm[0];
+				for (int k = 1; k < n; k++) {
+					noyauRe[k] = noyauRe[mm - k] = chRe[k];
+					noyauIm[k] = noyauIm[mm - k] = -chIm[k];
+				}
+				planM.directe(noyauRe, noyauIm, planM.travail());
+			}
+		}
+
+		/**
+		 * Facteurs de n, les 4 en premier, puis 2, puis les autres par ordre croissant
+		 */
+		private static int[] factoriser(int n) {
+			int[] f = new int[32];
+			int nb = 0;
+			while (n % 4 == 0) {
+				f[nb++] = 4;
+				n /= 4;
+			}
+			for (int p = 2; n > 1; p++) {
+				if ((long) p * p > n)
+					p = n;
+				while (n % p == 0) {
+					f[nb++] = p;
+					n /= p;
+				}
+			}
+			int[] r = new int[nb];
+			System.arraycopy(f, 0, r, 0, nb);
+			return r;
+		}
+
+		Travail travail() {
+			if (planM == null)
+				return new Travail(n, 0, null);
+			return new Travail(0, m, planM.travail());
+		}
+
+		/**
+		 * Transformee directe en place (sans facteur)
+		 */
+		void directe(double[] re, double[] im, Travail t) {
+			if (planM != null) {
+				bluestein(re, im, t);
+				return;
+			}
+			double[] xr = re, xi = im, yr = t.re, yi = t.im;
+			int s = 1;
+			int len = n;
+			for (int r : bases) {
+				int mm = len / r;
+				if (r == 2)
+					base2(mm, s, xr, xi, yr, yi);
+				else if (r == 4)
+					base4(mm, s, xr, xi, yr, yi);
+				else
+					baseGenerique(r, mm, s, xr, xi, yr, yi);
+				double[] tr = xr, ti = xi;
+				xr = yr;
+				xi = yi;
+				yr = tr;
+				yi = ti;
+				len = mm;
+				s *= r;
+			}
+			if (xr != re) {
+				System.arraycopy(xr, 0, re, 0, n);
+				System.arraycopy(xi, 0, im, 0, n);
+			}
+		}
+
+		/**
+		 * Transformee inverse en place, sans division par n
+		 */
+		void inverse(double[] re, double[] im, Travail t) {
+			for (int k = 0; k < n; k++)
+				im[k] = -im[k];
+			directe(re, im, t);
+			for (int k = 0; k < n; k++)
+				im[k] = -im[k];
+		}
+
+		/**
+		 * Etape de Stockham de base 2 : sous-transformees de longueur 2.mm,
+		 * entrelacees avec un pas s.
+		 */
+		private void base2(int mm, int s, double[] xr, double[] xi,
+				double[] yr, double[] yi) {
+			for (int p = 0; p < mm; p++) {
+				double wr = cos[p * s], wi = sin[p * s];
+				int a0 = s * p, a1 = s * (p + mm), b0 = s * 2 * p, b1 = b0 + s;
+				for (int q = 0; q < s; q++) {
+					double ar = xr[a0 + q], ai = xi[a0 + q];
+					double br = xr[a1 + q], bi = xi[a1 + q];
+					yr[b0 + q] = ar + br;
+					yi[b0 + q] = ai + bi;
+					double dr = ar - br, di = ai - bi;
+					yr[b1 + q] = dr * wr - di * wi;
+					yi[b1 + q] = dr * wi + di * wr;
+				}
+			}
+		}
+
+		private void base4(int mm, int s, double[] xr, double[] xi,
+				double[] yr, double[] yi) {
+			for (int p = 0; p < mm; p++) {
+				int e1 = p * s, e2 = 2 * p * s, e3 = 3 * p * s;
+				double w1r = cos[e1], w1i = sin[e1];
+				double w2r = cos[e2], w2i = sin[e2];
+				double w3r = cos[e3], w3i = sin[e3];
+				int a0 = s * p, a1 = s * (p + mm), a2 = s * (p + 2 * mm), a3 = s
+						* (p + 3 * mm);
+				int b0 = s * 4 * p, b1 = b0 + s, b2 = b1 + s, b3 = b2 + s;
+				for (int q = 0; q < s; q++) {
+					double x0r = xr[a0 + q], x0i = xi[a0 + q];
+					double x1r = xr[a1 + q], x1i = xi[a1 + q];
+					double x2r = xr[a2 + q], x2i = xi[a2 + q];
+					double x3r = xr[a3 + q], x3i = xi[a3 + q];
+					double t0r = x0r + x2r, t0i = x0i + x2i;
+					double t1r = x0r - x2r, t1i = x0i - x2i;
+					double t2r = x1r + x3r, t2i = x1i + x3i;
+					// t3 = -i.(x1 - x3)
+					double t3r = x1i - x3i, t3i = x3r - x1r;
+					yr[b0 + q] = t0r + t2r;
+					yi[b0 + q] = t0i + t2i;
+					double ur = t1r + t3r, ui = t1i + t3i;
+					yr[b1 + q] = ur * w1r - ui * w1i;
+					yi[b1 + q] = ur * w1i + ui * w1r;
+					ur = t0r - t2r;
+					ui = t0i - t2i;
+					yr[b2 + q] = ur * w2r - ui * w2i;
+					yi[b2 + q] = ur * w2i + ui * w2r;
+					ur = t1r - t3r;
+					ui = t1i - t3i;
+					yr[b3 + q] = ur * w3r - ui * w3i;
+					yi[b3 + q] = ur * w3i + ui * w3r;
+				}
+			}
+		}
+
+		private void baseGenerique(int r, int mm, int s, double[] xr,
+				double[] xi, double[] yr, double[] yi) {
+			int pasRacine = n / r;
+			double[] ar = new double[r];
+			double[] ai = new double[r];
+			for (int p = 0; p < mm; p++) {
+				for (int q = 0; q < s; q++) {
+					for (int k = 0; k < r; k++) {
+						ar[k] = xr[q + s * (p + k * mm)];
+						ai[k] = xi[q + s * (p + k * mm)];
+					}
+					for (int t = 0; t < r; t++) {
+						double sr = 0, si = 0;
+						for (int k = 0; k < r; k++) {
+							int e = (int) (((long) t * k * pasRacine) % n);
+							sr += ar[k] * cos[e] - ai[k] * sin[e];
+							si += ar[k] * sin[e] + ai[k] * cos[e];
+						}
+						int e = (int) (((long) p * t * s) % n);
+						yr[q + s * (r * p + t)] = sr * cos[e] - si * sin[e];
+						yi[q + s * (r * p + t)] = sr * sin[e] + si * cos[e];
+					}
+				}
+			}
+		}
+
+		private void bluestein(double[] re, double[] im, Travail t) {
+			double[] ar = t.aRe, ai = t.aIm;
+			for (int k = 0; k < n; k++) {
+				ar[k] = re[k] * chRe[k] - im[k] * chIm[k];
+				ai[k] = re[k] * chIm[k] + im[k] * chRe[k];
+			}
+			java.util.Arrays.fill(ar, n, m, 0);
+			java.util.Arrays.fill(ai, n, m, 0);
+			planM.directe(ar, ai, t.interne);
+			for (int k = 0; k < m; k++) {
+				double xr = ar[k], xi = ai[k];
+				ar[k] = xr * noyauRe[k] - xi * noyauIm[k];
+				ai[k] = xr * noyauIm[k] + xi * noyauRe[k];
+			}
+			planM.inverse(ar, ai, t.interne);
+			for (int k = 0; k < n; k++) {
+				double xr = ar[k] / m, xi = ai[k] / m;
+				re[k] = xr * chRe[k] - xi * chIm[k];
+				im[k] = xr * chIm[k] + xi * chRe[k];
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package testimage;
+
+/**
+ * Factorisation LU d'une matrice carree, calculee une fois pour resoudre
+ * autant de seconds membres que necessaire.
+ *
+ * <p>
+ * P.A = L.U avec pivot partiel, comme l'elimination de
+ * {@link SystemeLineaire} ; les lignes sont permutees par echange de
+ * references. La matrice est factorisee par panneaux de {@link #BLOC}
+ * colonnes : le panneau est factorise colonne par colonne, puis le reste de la
+ * matrice est mis a jour en une seule passe, par tranches de colonnes pour que
+ * les lignes de U correspondantes restent en cache. Pour les grands ordres,
+ * cette mise a jour est repartie entre les processeurs par bandes de lignes.
+ * </p>
+ *
+ * <p>
+ * La factorisation coute O(n^3), chaque resolution O(n^2), en produits
+ * scalaires sur les lignes de L et U. Plusieurs seconds membres passes
+ * ensemble sont repartis entre les processeurs.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class FactorisationLU {
+
+	/**
+	 * Largeur des panneaux de la factorisation
+	 */
+	public static final int BLOC = 48;
+
+	/**
+	 * Largeur des tranches de colonnes de la mise a jour
+	 */
+	private static final int TRANCHE = 256;
+
+	private final int n;
+	private final double[][] lu;
+	private final int[] pivots;
+	private final boolean singuliere;
+
+	/**
+	 * @param a matrice n x n (non modifiee ; les lignes plus longues sont tronquees)
+	 * @param epsilon un pivot de valeur absolue inferieure rend la matrice singuliere
+	 */
+	public FactorisationLU(double[][] a, double epsilon) {
+		this.n = a.length;
+		this.lu = copier(a);
+		this.pivots = new int[n];
+		this.singuliere = !factoriser(epsilon);
+	}
+
+	private static double[][] copier(double[][] a) {
+		int n = a.length;
+		double[][] c = new double[n][n];
+		for (int i = 0; i < n; i++)
+			System.arraycopy(a[i], 0, c[i], 0, n);
+		return c;
+	}
+
+	public int n() {
+		return n;
+	}
+
+	/**
+	 * @return vrai si un pivot est inferieur a epsilon (aucune resolution possible)
+	 */
+	public boolean estSinguliere() {
+		return singuliere;
+	}
+
+	/**
+	 * @return determinant de la matrice (0 si elle est singuliere)
+	 */
+	public double determinant() {
+		if (singuliere)
+			return 0;
+		double d = 1;
+		for (int k = 0; k < n; k++) {
+			d *= lu[k][k];
+			if (pivots[k] != k)
+				d = -d;
+		}
+		return d;
+	}
+
+	/**
+	 * Resolution pour un second membre.
+	 * @param b second membre (non modifie)
+	 * @return solution, null si la matrice est singuliere
+	 */
+	public double[] resoudre(double[] b) {
+		if (singuliere)
+			return null;
+		double[] x = new double[n];
+		System.arraycopy(b, 0, x, 0, n);
+		for (int k = 0; k < n; k++) {
+			int ip = pivots[k];
+			if (ip != k) {
+				double w = x[k];
+				x[k] = x[ip];
+				x[ip] = w;
+			}
+		}
+		// produits scalaires sur les lignes de L et U
+		for (int i = 1; i < n; i++) {
+			double[] li = lu[i];
+			double s = x[i];
+			for (int p = 0; p < i; p++)
+				s -= li[p] * x[p];
+			x[i] = s;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double[] li = lu[i];
+			double s = x[i];
+			for (int p = i + 1; p < n; p++)
+				s -= li[p] * x[p];
+			x[i] = s / li[i];
+		}
+		return x;
+	}
+
+	/**
+	 * Resolution pour plusieurs seconds membres, repartis entre les processeurs.
+	 * @param b seconds membres, b[k] etant le k-ieme (non modifies)
+	 * @return solutions dans le meme ordre, null si la matrice est singuliere
+	 */
+	public double[][] resoudre(final double[][] b) {
+		if (singuliere)
+			return null;
+		final double[][] x = new double[b.length][];
+		int bandes = Parallele.nbBandes(b.length, (long) b.length * n * n);
+		Parallele.pourBandes(b.length, bandes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int k = debut; k < fin; k++)
+					x[k] = resoudre(b[k]);
+			}
+		});
+		return x;
+	}
+
+	/**
+	 * Factorisation par panneaux, en place.
+	 * @return faux si un pivot est inferieur a epsilon
+	 */
+	private boolean factoriser(double epsilon) {
+		for (int k0 = 0; k0 < n; k0 += BLOC) {
+			final int k1 = Math.min(n, k0 + BLOC);
+			// panneau : colonnes k0..k1-1, lignes k0..n-1
+			for (int k = k0; k < k1; k++) {
+				int ip = k;
+				double absPiv = Math.abs(lu[k][k]);
+				for (int i = k + 1; i < n; i++)
+					if (Math.abs(lu[i][k]) > absPiv) {
+						ip = i;
+						absPiv = Math.abs(lu[i][k]);
+					}
+				if (absPiv < epsilon)
+					return false;
+				pivots[k] = ip;
+				if (ip != k) {
+					double[] w = lu[k];
+					lu[k] = lu[ip];
+					lu[ip] = w;
+				}
+				double[] lk = lu[k];
+				double piv = lk[k];
+				for (int i = k + 1; i < n; i++) {
+					double[] li = lu[i];
+					double q = li[k] /= piv;
+					if (q != 0)
+						for (int j = k + 1; j < k1; j++)
+							li[j] -= q * lk[j];
+				}
+			}
+			if (k1 == n)
+				break;
+			// U12 = L11^-1.A12 : lignes du panneau, colonnes a droite
+			for (int i = k0 + 1; i < k1; i++) {
+				double[] li = lu[i];
+				for (int p = k0; p < i; p++) {
+					double q = li[p];
+					if (q != 0) {
+						double[] lp = lu[p];
+						for (int j = k1; j < n; j++)
+							li[j] -= q * lp[j];
+					}
+				}
+			}
+			// A22 -= L21.U12, repartie par bandes de lignes
+			final int kd = k0;
+			int lignes = n - k1;
+			int bandes = Parallele.nbBandes(lignes, (long) lignes * (n - k1)
+					* (k1 - k0));
+			Parallele.pourBandes(lignes, bandes, new Parallele.Bande() {
+				public void traiter(int bande, int debut, int fin) {
+					// par tranches de colonnes : la tranche de U12 reste en cache
+					for (int j0 = k1; j0 < n; j0 += TRANCHE) {
+						int j1 = Math.min(n, j0 + TRANCHE);
+						for (int i = k1 + debut; i < k1 + fin; i++) {
+							double[] li = lu[i];
+							for (int p = kd; p < k1; p++) {
+								double q = li[p];
+								if (q != 0) {
+									double[] lp = lu[p];
+									for (int j = j0; j < j1; j++)
+										li[j] -= q * lp[j];
+								}
+							}
+						}
+					}
+				}
+			});
+		}
+		return true;
+	}
+}
@@ -2,6 +2,14 @@ package testimage;
 
 import java.awt.*;
 import java.awt.image.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 
 /**
@@ -30,6 +38,183 @@ public class ImageIO {
 		return image;
 	}
 
+	/**
+	 * Ouverture d'une image en niveaux de gris (gif, jpeg, bmp, png, pgm, ppm...)
+	 * @param path chemin de l'image
+	 * @return image TYPE_BYTE_GRAY
+	 * @throws IOException si le fichier est illisible ou d'un format inconnu
+	 */
+	public BufferedImage OuvrirImageGris(String path) throws IOException{
+		return OuvrirImageGris(path, 1, null);
+	}
+
+	/**
+	 * Ouverture d'une image en niveaux de gris avec sous-echantillonnage et
+	 * lecture d'une region.
+	 * <p>
+	 * Le decodage passe par javax.imageio.ImageReader : il est synchrone et ne
+	 * necessite pas d'affichage (mode headless). Quand le decodeur sait produire
+	 * directement une image en niveaux de gris (jpeg gris par exemple), il
+	 * decode dans le plan d'octets final. Sinon les pixels decodes sont
+	 * convertis en luminance en un seul parcours, sans redessiner l'image.
+	 * </p>
+	 * @param path chemin de l'image
+	 * @param sousEch pas de sous-echantillonnage (1 : image complete)
+	 * @param region region a lire dans l'image source, null pour toute l'image
+	 * @return image TYPE_BYTE_GRAY
+	 * @throws IOException si le fichier est illisible ou d'un format inconnu
+	 */
+	public BufferedImage OuvrirImageGris(String path, int sousEch, Rectangle region) throws IOException{
+		String nom=path.toLowerCase();
+		if(nom.endsWith(".pgm") || nom.endsWith(".ppm") || nom.endsWith(".pnm"))
+		{
+			// Format brut : lecture directe dans la projection du fichier
+			BufferedImage gris=ImagePNM.ouvrir(path).versImage(sousEch, region);
+			this.image=gris;
+			this.width=gris.getWidth();
+			this.heigth=gris.getHeight();
+			return gris;
+		}
+		BufferedImage gris=versGris(lire(path, sousEch, region, true));
+		this.image=gris;
+		this.width=gris.getWidth();
+		this.heigth=gris.getHeight();
+		return gris;
+	}
+
+	/**
+	 * Ouverture d'une image couleur (gif, jpeg, bmp, png, ppm...)
+	 * @param path chemin de l'image
+	 * @return image decodee, dans le type choisi par le decodeur
+	 * @throws IOException si le fichier est illisible ou d'un format inconnu
+	 */
+	public BufferedImage OuvrirImageCouleur(String path) throws IOException{
+		return OuvrirImageCouleur(path, 1, null);
+	}
+
+	/**
+	 * Ouverture d'une image couleur avec sous-echantillonnage et lecture d'une region.
+	 * @param path chemin de l'image
+	 * @param sousEch pas de sous-echantillonnage (1 : image complete)
+	 * @param region region a lire dans l'image source, null pour toute l'image
+	 * @return image decodee, dans le type choisi par le decodeur
+	 * @throws IOException si le fichier est illisible ou d'un format inconnu
+	 * @see #OuvrirImageGris(String, int, Rectangle)
+	 */
+	public BufferedImage OuvrirImageCouleur(String path, int sousEch, Rectangle region) throws IOException{
+		String nom=path.toLowerCase();
+		BufferedImage couleur;
+		if(nom.endsWith(".pgm") || nom.endsWith(".ppm") || nom.endsWith(".pnm"))
+			couleur=ImagePNM.ouvrir(path).versImageCouleur(sousEch, region);
+		else
+			couleur=lire(path, sousEch, region, false);
+		this.image=couleur;
+		this.width=couleur.getWidth();
+		this.heigth=couleur.getHeight();
+		return couleur;
+	}
+
+	/**
+	 * Decodage par javax.imageio.ImageReader.
+	 * @param gris vrai pour demander au decodeur une image TYPE_BYTE_GRAY s'il sait la produire
+	 */
+	private static BufferedImage lire(String path, int sousEch, Rectangle region, boolean gris) throws IOException{
+		ImageInputStream iis=javax.imageio.ImageIO.createImageInputStream(new File(path));
+		if(iis==null)
+			throw new IOException("Fichier illisible : "+path);
+		BufferedImage lue;
+		try {
+			Iterator<ImageReader> lecteurs=javax.imageio.ImageIO.getImageReaders(iis);
+			if(!lecteurs.hasNext())
+				throw new IOException("Format d'image non reconnu : "+path);
+			ImageReader lecteur=lecteurs.next();
+			try {
+				lecteur.setInput(iis, true, true);
+				ImageReadParam param=lecteur.getDefaultReadParam();
+				if(sousEch>1)
+					param.setSourceSubsampling(sousEch, sousEch, 0, 0);
+				if(region!=null)
+					param.setSourceRegion(region);
+				Iterator<ImageTypeSpecifier> types=lecteur.getImageTypes(0);
+				while(gris && types.hasNext())
+				{
+					ImageTypeSpecifier type=types.next();
+					if(type.getBufferedImageType()==BufferedImage.TYPE_BYTE_GRAY)
+					{
+						param.setDestinationType(type);
+						break;
+					}
+				}
+				lue=lecteur.read(0, param);
+			} finally {
+				lecteur.dispose();
+			}
+		} finally {
+			iis.close();
+		}
+		return lue;
+	}
+
+	/**
+	 * Conversion en niveaux de gris sur un octet (luminance Y = 0.299 R + 0.587 G + 0.114 B)
+	 * <p>
+	 * Les pixels transparents sont composes sur un fond noir, comme le faisait
+	 * le dessin de l'image dans {@link TraitImage#toBufferedImage(Image)}.
+	 * </p>
+	 * @param im image decodee
+	 * @return image TYPE_BYTE_GRAY (im elle-meme si elle l'est deja)
+	 */
+	static BufferedImage versGris(BufferedImage im){
+		if(im.getType()==BufferedImage.TYPE_BYTE_GRAY)
+			return im;
+		int w=im.getWidth();
+		int h=im.getHeight();
+		BufferedImage gris=new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+		byte[] dst=((DataBufferByte)gris.getRaster().getDataBuffer()).getData();
+		ColorModel cm=im.getColorModel();
+		if(cm instanceof IndexColorModel)
+		{
+			// Table des niveaux de gris de la palette, puis lecture des index
+			IndexColorModel icm=(IndexColorModel)cm;
+			int n=icm.getMapSize();
+			byte[] lut=new byte[Math.max(n, 256)];
+			for(int k=0;k<n;k++)
+				lut[k]=(byte)luminance(icm.getAlpha(k), icm.getRed(k), icm.getGreen(k), icm.getBlue(k));
+			Raster r=im.getRaster();
+			int[] index=new int[w];
+			for(int y=0;y<h;y++)
+			{
+				r.getSamples(0, y, w, 1, 0, index);
+				for(int x=0, k=y*w;x<w;x++,k++)
+					dst[k]=lut[index[x]];
+			}
+		}
+		else
+		{
+			int[] argb=new int[w];
+			for(int y=0;y<h;y++)
+			{
+				im.getRGB(0, y, w, 1, argb, 0, w);
+				for(int x=0, k=y*w;x<w;x++,k++)
+				{
+					int p=argb[x];
+					dst[k]=(byte)luminance(p>>>24, (p>>16)&0xFF, (p>>8)&0xFF, p&0xFF);
+				}
+			}
+		}
+		return gris;
+	}
+
+	/**
+	 * Luminance entiere arrondie d'un pixel RGB compose sur fond noir
+	 */
+	static int luminance(int alpha, int r, int g, int b){
+		int y=(299*r+587*g+114*b+500)/1000;
+		if(alpha==255)
+			return y;
+		return (y*alpha+127)/255;
+	}
+
 	public int getHeigth(){
 		return this.heigth;
 	}
@@ -37,4 +222,4 @@ public class ImageIO {
 	public int getWidth(){
 		return this.width;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package testimage;
+
+/**
+ * Image integrale (table des sommes cumulees) d'un plan indexe [x][y].
+ *
+ * <p>
+ * La case [x][y] de la table vaut la somme des valeurs d'indices strictement
+ * inferieurs a x et a y : la somme sur un rectangle quelconque se lit en
+ * quatre acces, quelle que soit sa taille. Les filtres de statistiques
+ * locales (moyenne, variance, covariance) s'en servent pour un cout constant
+ * par pixel. Les sommes sont en double : exactes tant que les valeurs sont
+ * entieres et que les sommes restent inferieures a 2^53.
+ * </p>
+ *
+ * <p>
+ * La table est construite en deux passes paralleles : sommes cumulees de
+ * chaque colonne x, puis cumul d'une colonne a la suivante, par bandes de y.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class ImageIntegrale {
+
+	/**
+	 * Valeurs cumulees de la colonne x (identite, carre ou produit), rangees
+	 * dans c[1..hauteur]
+	 */
+	private interface Terme {
+		void colonne(int x, double[] c);
+	}
+
+	/**
+	 * Sommes cumulees, [largeur+1][hauteur+1]
+	 */
+	private final double[][] s;
+
+	private ImageIntegrale(final int largeur, final int hauteur,
+			final Terme terme) {
+		s = new double[largeur + 1][hauteur + 1];
+		// sommes cumulees de chaque colonne
+		Parallele.pourBandes(largeur,
+				Parallele.nbBandes(largeur, (long) largeur * hauteur),
+				new Parallele.Bande() {
+					public void traiter(int bande, int debut, int fin) {
+						for (int x = debut; x < fin; x++) {
+							double[] c = s[x + 1];
+							terme.colonne(x, c);
+							for (int y = 1; y <= hauteur; y++)
+								c[y] += c[y - 1];
+						}
+					}
+				});
+		// cumul d'une colonne a la suivante, chaque bande sur ses indices y
+		Parallele.pourBandes(hauteur,
+				Parallele.nbBandes(hauteur, (long) largeur * hauteur),
+				new Parallele.Bande() {
+					public void traiter(int bande, int debut, int fin) {
+						for (int x = 1; x < largeur; x++) {
+							double[] p = s[x], c = s[x + 1];
+							for (int y = debut + 1; y <= fin; y++)
+								c[y] += p[y];
+						}
+					}
+				});
+	}
+
+	/**
+	 * Image integrale d'un plan de valeurs.
+	 * @param donnee plan [largeur][hauteur]
+	 */
+	public ImageIntegrale(final double[][] donnee) {
+		this(donnee.length, donnee.length == 0 ? 0 : donnee[0].length,
+				new Terme() {
+					public void colonne(int x, double[] c) {
+						System.arraycopy(donnee[x], 0, c, 1, c.length - 1);
+					}
+				});
+	}
+
+	/**
+	 * Image integrale d'un plan de valeurs entieres.
+	 * @param donnee plan [largeur][hauteur]
+	 */
+	public ImageIntegrale(final int[][] donnee) {
+		this(donnee.length, donnee.length == 0 ? 0 : donnee[0].length,
+				new Terme() {
+					public void colonne(int x, double[] c) {
+						int[] d = donnee[x];
+						for (int y = 0; y < d.length; y++)
+							c[y + 1] = d[y];
+					}
+				});
+	}
+
+	/**
+	 * Image integrale des carres, pour les variances locales.
+	 * @param donnee plan [largeur][hauteur]
+	 * @return table des sommes de donnee[x][y]^2
+	 */
+	public static ImageIntegrale carres(final double[][] donnee) {
+		return new ImageIntegrale(donnee.length, donnee.length == 0 ? 0
+				: donnee[0].length, new Terme() {
+			public void colonne(int x, double[] c) {
+				double[] d = donnee[x];
+				for (int y = 0; y < d.length; y++)
+					c[y + 1] = d[y] * d[y];
+			}
+		});
+	}
+
+	/**
+	 * Image integrale des produits de deux plans, pour les covariances
+	 * locales.
+	 * @param a premier plan [largeur][hauteur]
+	 * @param b second plan, de memes dimensions
+	 * @return table des sommes de a[x][y] * b[x][y]
+	 */
+	public static ImageIntegrale produits(final double[][] a,
+			final double[][] b) {
+		int hauteur = a.length == 0 ? 0 : a[0].length;
+		if (a.length != b.length || (b.length > 0 && b[0].length != hauteur))
+			throw new IllegalArgumentException("Plans de dimensions differentes");
+		return new ImageIntegrale(a.length, hauteur, new Terme() {
+			public void colonne(int x, double[] c) {
+				double[] u = a[x], v = b[x];
+				for (int y = 0; y < u.length; y++)
+					c[y + 1] = u[y] * v[y];
+			}
+		});
+	}
+
+	/**
+	 * @return largeur du plan
+	 */
+	public int largeur() {
+		return s.length - 1;
+	}
+
+	/**
+	 * @return hauteur du plan
+	 */
+	public int hauteur() {
+		return s[0].length - 1;
+	}
+
+	/**
+	 * Somme des valeurs du rectangle [x0, x1) x [y0, y1), en quatre acces.
+	 * @param x0 premiere colonne
+	 * @param y0 premiere ligne
+	 * @param x1 colonne suivant la derniere
+	 * @param y1 ligne suivant la derniere
+	 * @return somme, nulle pour un rectangle vide
+	 */
+	public double somme(int x0, int y0, int x1, int y1) {
+		if (x1 <= x0 || y1 <= y0)
+			return 0;
+		double[] a = s[x0], b = s[x1];
+		return b[y1] - b[y0] - a[y1] + a[y0];
+	}
+}
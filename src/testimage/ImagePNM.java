@@ -0,0 +1,399 @@
+package testimage;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import compression.PlanCoefficients;
+
+/**
+ * Lecture et ecriture des images PGM (P5) et PPM (P6) binaires, 8 ou 16 bits.
+ * 
+ * <p>
+ * Le fichier est projete en memoire : il n'y a pas de decodage, les
+ * echantillons sont lus directement dans la projection pour remplir le tableau
+ * de pixels (ou le plan de coefficients) de la transformee. Les echantillons 16
+ * bits sont en poids fort d'abord, comme le veut le format.
+ * </p>
+ * 
+ * <p>
+ * Les tableaux de pixels suivent la convention de
+ * {@link TraitImage#getPixelTab(BufferedImage)} : premier indice = abscisse.
+ * Une image couleur (P6) est ramenee a sa luminance, sauf par
+ * {@link #versImageCouleur(int, Rectangle)}.
+ * </p>
+ * 
+ * @version 1.0
+ */
+public class ImagePNM {
+
+	/**
+	 * Taille maximale de la bande de lignes de {@link #remplir(PlanCoefficients, double)}, en octets
+	 */
+	private static final int BANDE = 1 << 22;
+
+	private final int largeur;
+	private final int hauteur;
+	private final int valeurMax;
+	private final int canaux;
+	private final int octets;
+	private final ByteBuffer pixels;
+
+	private ImagePNM(int largeur, int hauteur, int valeurMax, int canaux,
+			ByteBuffer pixels) {
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+		this.valeurMax = valeurMax;
+		this.canaux = canaux;
+		this.octets = valeurMax > 255 ? 2 : 1;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Ouverture d'un fichier PGM (P5) ou PPM (P6) par projection en memoire.
+	 * @param path chemin du fichier
+	 * @return image projetee
+	 * @throws IOException fichier illisible, trop grand pour etre projete
+	 *             (plus de Integer.MAX_VALUE octets) ou entete invalide
+	 */
+	public static ImagePNM ouvrir(String path) throws IOException {
+		RandomAccessFile f = new RandomAccessFile(path, "r");
+		MappedByteBuffer b;
+		try {
+			long longueur = f.length();
+			// une projection est limitee a Integer.MAX_VALUE octets
+			if (longueur > Integer.MAX_VALUE)
+				throw new IOException("Fichier PNM trop grand pour etre projete ("
+						+ longueur + " octets) : " + path);
+			b = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					longueur);
+		} finally {
+			f.close();
+		}
+		// Entete : magique, largeur, hauteur, valeur max, un blanc
+		if (b.remaining() < 2 || b.get() != 'P')
+			throw new IOException("Fichier PNM invalide : " + path);
+		int type = b.get();
+		int canaux;
+		if (type == '5')
+			canaux = 1;
+		else if (type == '6')
+			canaux = 3;
+		else
+			throw new IOException("Seuls les formats P5 et P6 sont lus : "
+					+ path);
+		int largeur = lireEntier(b);
+		int hauteur = lireEntier(b);
+		int valeurMax = lireEntier(b);
+		if (largeur <= 0 || hauteur <= 0 || valeurMax <= 0
+				|| valeurMax > 65535)
+			throw new IOException("Entete PNM invalide : " + path);
+		lireOctet(b);
+		long taille = (long) largeur * hauteur * canaux
+				* (valeurMax > 255 ? 2 : 1);
+		if (b.remaining() < taille)
+			throw new IOException("Fichier PNM tronque : " + path);
+		ByteBuffer pixels = b.slice();
+		pixels.limit((int) taille);
+		return new ImagePNM(largeur, hauteur, valeurMax, canaux, pixels
+				.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN));
+	}
+
+	/**
+	 * Lecture d'un entier decimal de l'entete, en sautant blancs et commentaires.
+	 */
+	private static int lireEntier(ByteBuffer b) throws IOException {
+		int c = lireOctet(b);
+		while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '#') {
+			if (c == '#')
+				while (c != '\n' && c != '\r')
+					c = lireOctet(b);
+			c = lireOctet(b);
+		}
+		if (c < '0' || c > '9')
+			throw new IOException("Entete PNM invalide");
+		int n = 0;
+		while (c >= '0' && c <= '9') {
+			n = n * 10 + (c - '0');
+			c = lireOctet(b);
+		}
+		b.position(b.position() - 1);
+		return n;
+	}
+
+	/**
+	 * Lecture d'un octet de l'entete.
+	 * @throws IOException entete interrompu par la fin du fichier
+	 */
+	private static int lireOctet(ByteBuffer b) throws IOException {
+		if (!b.hasRemaining())
+			throw new IOException("En-tete PNM tronque");
+		return b.get();
+	}
+
+	public int largeur() {
+		return largeur;
+	}
+
+	public int hauteur() {
+		return hauteur;
+	}
+
+	public int valeurMax() {
+		return valeurMax;
+	}
+
+	/**
+	 * @return 1 pour un PGM, 3 pour un PPM
+	 */
+	public int canaux() {
+		return canaux;
+	}
+
+	/**
+	 * Echantillons bruts, lignes successives, canaux entrelaces, sur 1 ou 2
+	 * octets (poids fort d'abord). Tampon en lecture seule sur la projection.
+	 * @return tampon des pixels
+	 */
+	public ByteBuffer pixels() {
+		return pixels.duplicate();
+	}
+
+	/**
+	 * @param x abscisse
+	 * @param y ordonnee
+	 * @param c canal
+	 * @return echantillon brut
+	 */
+	public int echantillon(int x, int y, int c) {
+		int k = ((y * largeur + x) * canaux + c);
+		if (octets == 1)
+			return pixels.get(k) & 0xFF;
+		return pixels.getShort(k << 1) & 0xFFFF;
+	}
+
+	/**
+	 * Niveau de gris d'un pixel (luminance pour une image couleur).
+	 */
+	private int gris(int k) {
+		if (canaux == 1)
+			return octets == 1 ? pixels.get(k) & 0xFF : pixels
+					.getShort(k << 1) & 0xFFFF;
+		int k3 = 3 * k;
+		if (octets == 1)
+			return ImageIO.luminance(255, pixels.get(k3) & 0xFF,
+					pixels.get(k3 + 1) & 0xFF, pixels.get(k3 + 2) & 0xFF);
+		return ImageIO.luminance(255, pixels.getShort(k3 << 1) & 0xFFFF,
+				pixels.getShort((k3 + 1) << 1) & 0xFFFF,
+				pixels.getShort((k3 + 2) << 1) & 0xFFFF);
+	}
+
+	/**
+	 * Tableau de pixels centres, lu directement dans la projection.
+	 * @param moyenne valeur retiree a chaque pixel
+	 * @return pixels [x][y]
+	 */
+	public double[][] getPixelTab(double moyenne) {
+		double[][] donnee = new double[largeur][hauteur];
+		for (int y = 0; y < hauteur; y++) {
+			int k = y * largeur;
+			for (int x = 0; x < largeur; x++, k++)
+				donnee[x][y] = gris(k) - moyenne;
+		}
+		return donnee;
+	}
+
+	/**
+	 * Remplissage d'un plan de coefficients (largeur x hauteur) avec les pixels centres.
+	 * <p>
+	 * Permet de transformer des images plus grandes que le tas avec un
+	 * {@link compression.PlanCoefficientsTampon}.
+	 * </p>
+	 * @param plan plan de destination, indexe [x][y]
+	 * @param moyenne valeur retiree a chaque pixel
+	 */
+	public void remplir(PlanCoefficients plan, double moyenne) {
+		// la projection est lue sequentiellement par bandes de lignes de
+		// l'image, chaque bande etant ensuite repartie sur les lignes x du plan
+		int lignes = (int) Math.max(1,
+				Math.min(hauteur, BANDE / (8L * largeur)));
+		double[] bande = new double[lignes * largeur];
+		for (int y0 = 0; y0 < hauteur; y0 += lignes) {
+			int n = Math.min(lignes, hauteur - y0);
+			int k = y0 * largeur;
+			for (int i = 0; i < n * largeur; i++, k++)
+				bande[i] = gris(k) - moyenne;
+			for (int x = 0; x < largeur; x++)
+				for (int j = 0, i = x; j < n; j++, i += largeur)
+					plan.ecrire(x, y0 + j, bande[i]);
+		}
+	}
+
+	/**
+	 * Image en niveaux de gris 8 bits pour l'affichage et les traitements.
+	 * @param sousEch pas de sous-echantillonnage (1 : image complete)
+	 * @param region region a lire, null pour toute l'image
+	 * @return image TYPE_BYTE_GRAY
+	 */
+	public BufferedImage versImage(int sousEch, Rectangle region) {
+		Rectangle r = new Rectangle(0, 0, largeur, hauteur);
+		if (region != null)
+			r = r.intersection(region);
+		int pas = Math.max(1, sousEch);
+		int w = (r.width + pas - 1) / pas;
+		int h = (r.height + pas - 1) / pas;
+		BufferedImage im = new BufferedImage(Math.max(1, w), Math.max(1, h),
+				BufferedImage.TYPE_BYTE_GRAY);
+		byte[] dst = ((DataBufferByte) im.getRaster().getDataBuffer())
+				.getData();
+		for (int j = 0; j < h; j++) {
+			int k = (r.y + j * pas) * largeur + r.x;
+			for (int i = 0; i < w; i++, k += pas) {
+				int v = gris(k);
+				if (valeurMax != 255)
+					v = (v * 255 + valeurMax / 2) / valeurMax;
+				dst[j * w + i] = (byte) v;
+			}
+		}
+		return im;
+	}
+
+	/**
+	 * Image couleur 8 bits par canal (un PGM donne trois canaux egaux).
+	 * @param sousEch pas de sous-echantillonnage (1 : image complete)
+	 * @param region region a lire, null pour toute l'image
+	 * @return image TYPE_INT_RGB
+	 */
+	public BufferedImage versImageCouleur(int sousEch, Rectangle region) {
+		Rectangle r = new Rectangle(0, 0, largeur, hauteur);
+		if (region != null)
+			r = r.intersection(region);
+		int pas = Math.max(1, sousEch);
+		int w = (r.width + pas - 1) / pas;
+		int h = (r.height + pas - 1) / pas;
+		BufferedImage im = new BufferedImage(Math.max(1, w), Math.max(1, h),
+				BufferedImage.TYPE_INT_RGB);
+		int[] dst = ((DataBufferInt) im.getRaster().getDataBuffer())
+				.getData();
+		for (int j = 0; j < h; j++) {
+			int y = r.y + j * pas;
+			for (int i = 0; i < w; i++) {
+				int x = r.x + i * pas;
+				int p = 0;
+				for (int c = 0; c < 3; c++) {
+					int v = echantillon(x, y, canaux == 1 ? 0 : c);
+					if (valeurMax != 255)
+						v = (v * 255 + valeurMax / 2) / valeurMax;
+					p = (p << 8) | v;
+				}
+				dst[j * w + i] = p;
+			}
+		}
+		return im;
+	}
+
+	/**
+	 * Ecriture d'un tableau de pixels [x][y] en PGM (P5).
+	 * <p>
+	 * Les valeurs sont arrondies et saturees sur [0, valeurMax]. Le fichier est
+	 * projete en memoire et rempli directement.
+	 * </p>
+	 * @param path chemin du fichier
+	 * @param donnee pixels [x][y]
+	 * @param valeurMax 255 (8 bits) ou jusqu'a 65535 (16 bits)
+	 * @throws IOException
+	 */
+	public static void ecrire(String path, double[][] donnee, int valeurMax)
+			throws IOException {
+		int w = donnee.length;
+		int h = donnee[0].length;
+		int oct = valeurMax > 255 ? 2 : 1;
+		RandomAccessFile f = new RandomAccessFile(path, "rw");
+		try {
+			MappedByteBuffer b = projeter(f, path, "P5", w, h, valeurMax,
+					(long) w * h * oct);
+			for (int y = 0; y < h; y++)
+				for (int x = 0; x < w; x++) {
+					double v = donnee[x][y];
+					int p = !(v > 0) ? 0 : v >= valeurMax ? valeurMax
+							: (int) (v + 0.5);
+					if (oct == 1)
+						b.put((byte) p);
+					else
+						b.putShort((short) p);
+				}
+			b.force();
+		} finally {
+			f.close();
+		}
+	}
+
+	/**
+	 * Ecriture d'une image en PGM (P5) si elle est en niveaux de gris, en PPM
+	 * (P6) sinon, sur 8 bits.
+	 * @param path chemin du fichier
+	 * @param im image a ecrire
+	 * @throws IOException
+	 */
+	public static void ecrire(String path, BufferedImage im) throws IOException {
+		int w = im.getWidth();
+		int h = im.getHeight();
+		RandomAccessFile f = new RandomAccessFile(path, "rw");
+		try {
+			MappedByteBuffer b;
+			if (im.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+				b = projeter(f, path, "P5", w, h, 255, (long) w * h);
+				int[] ligne = new int[w];
+				for (int y = 0; y < h; y++) {
+					im.getRaster().getSamples(0, y, w, 1, 0, ligne);
+					for (int x = 0; x < w; x++)
+						b.put((byte) ligne[x]);
+				}
+			} else {
+				b = projeter(f, path, "P6", w, h, 255, 3L * w * h);
+				int[] argb = new int[w];
+				for (int y = 0; y < h; y++) {
+					im.getRGB(0, y, w, 1, argb, 0, w);
+					for (int x = 0; x < w; x++) {
+						b.put((byte) (argb[x] >> 16));
+						b.put((byte) (argb[x] >> 8));
+						b.put((byte) argb[x]);
+					}
+				}
+			}
+			b.force();
+		} finally {
+			f.close();
+		}
+	}
+
+	/**
+	 * Dimensionnement du fichier, ecriture de l'entete et projection de la
+	 * zone des pixels. L'appelant ecrit les pixels puis force l'ecriture de la
+	 * projection sur le disque avant de fermer le fichier.
+	 */
+	private static MappedByteBuffer projeter(RandomAccessFile f, String path,
+			String magique, int w, int h, int valeurMax, long taillePixels)
+			throws IOException {
+		byte[] entete = (magique + "\n" + w + " " + h + "\n" + valeurMax + "\n")
+				.getBytes("US-ASCII");
+		long taille = entete.length + taillePixels;
+		// une projection est limitee a Integer.MAX_VALUE octets
+		if (taille > Integer.MAX_VALUE)
+			throw new IOException("Image trop grande pour etre ecrite en PNM ("
+					+ taille + " octets) : " + path);
+		f.setLength(taille);
+		MappedByteBuffer b = f.getChannel().map(
+				FileChannel.MapMode.READ_WRITE, 0, taille);
+		b.order(ByteOrder.BIG_ENDIAN);
+		b.put(entete);
+		return b;
+	}
+}
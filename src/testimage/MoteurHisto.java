@@ -0,0 +1,270 @@
+package testimage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+
+/**
+ * Calcul parallele d'histogrammes et d'entropies.
+ *
+ * <p>
+ * L'image (ou le plan de coefficients) est decoupee en bandes de lignes
+ * traitees en parallele, chacune dans son propre histogramme ; les
+ * histogrammes des bandes sont additionnes a la fin. Les images 8 ou 16 bits
+ * sont lues directement dans le tableau de leur DataBuffer, sans passer par un
+ * tableau de pixels intermediaire.
+ * </p>
+ *
+ * <p>
+ * Les plans de coefficients (signes, reels) sont repartis en classes de
+ * largeur donnee : la classe k contient les valeurs de
+ * [origine + k.pas, origine + (k+1).pas). Les valeurs hors de l'intervalle
+ * sont comptees dans la premiere ou la derniere classe, les NaN sont ignores.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class MoteurHisto {
+
+	/**
+	 * Nombre maximal de classes d'un histogramme de coefficients
+	 */
+	public static final int CLASSES_MAX = 1 << 24;
+
+	private MoteurHisto() {
+	}
+
+	/**
+	 * Histogramme des echantillons de la premiere bande d'une image.
+	 * @param im image
+	 * @return histogramme a 2^n classes pour des echantillons sur n bits (256
+	 *         pour une image 8 bits)
+	 */
+	public static int[] compter(BufferedImage im) {
+		final Raster raster = im.getRaster();
+		final int w = raster.getWidth();
+		final int h = raster.getHeight();
+		SampleModel sm = raster.getSampleModel();
+		int bits = sm.getSampleSize(0);
+		if (bits > 16)
+			throw new IllegalArgumentException(
+					"Echantillons de plus de 16 bits : " + bits);
+		final int classes = 1 << bits;
+		final int bandes = Parallele.nbBandes(h, (long) w * h);
+		final int[][] partiels = new int[bandes][];
+
+		DataBuffer db = raster.getDataBuffer();
+		if (sm instanceof ComponentSampleModel && db.getNumBanks() == 1
+				&& (db instanceof DataBufferByte || db instanceof DataBufferUShort)) {
+			ComponentSampleModel csm = (ComponentSampleModel) sm;
+			final int scan = csm.getScanlineStride();
+			final int ps = csm.getPixelStride();
+			final int origine = db.getOffset() + csm.getBandOffsets()[0]
+					- raster.getSampleModelTranslateY() * scan
+					- raster.getSampleModelTranslateX() * ps;
+			final byte[] octets = (db instanceof DataBufferByte) ? ((DataBufferByte) db)
+					.getData() : null;
+			final short[] mots = (db instanceof DataBufferUShort) ? ((DataBufferUShort) db)
+					.getData() : null;
+			final int masque = classes - 1;
+			Parallele.pourBandes(h, bandes, new Parallele.Bande() {
+				public void traiter(int bande, int debut, int fin) {
+					int[] histo = new int[classes];
+					for (int j = debut; j < fin; j++) {
+						int k = origine + j * scan;
+						if (octets != null)
+							for (int i = 0; i < w; i++, k += ps)
+								histo[octets[k] & masque]++;
+						else
+							for (int i = 0; i < w; i++, k += ps)
+								histo[mots[k] & masque]++;
+					}
+					partiels[bande] = histo;
+				}
+			});
+		} else {
+			Parallele.pourBandes(h, bandes, new Parallele.Bande() {
+				public void traiter(int bande, int debut, int fin) {
+					int[] histo = new int[classes];
+					int[] ligne = new int[w];
+					for (int j = debut; j < fin; j++) {
+						raster.getSamples(0, j, w, 1, 0, ligne);
+						for (int i = 0; i < w; i++)
+							histo[ligne[i]]++;
+					}
+					partiels[bande] = histo;
+				}
+			});
+		}
+		return fusionner(partiels, classes);
+	}
+
+	/**
+	 * Histogramme de la luminance d'une image couleur (256 classes).
+	 * <p>
+	 * Meme luminance que l'ouverture en niveaux de gris (voir ImageIO),
+	 * calculee ligne par ligne sans construire d'image grise.
+	 * </p>
+	 * @param im image de tout type
+	 * @return histogramme a 256 classes
+	 */
+	public static int[] compterLuminance(final BufferedImage im) {
+		if (im.getRaster().getNumBands() == 1)
+			return compter(im);
+		final int w = im.getWidth();
+		final int h = im.getHeight();
+		final int bandes = Parallele.nbBandes(h, (long) w * h);
+		final int[][] partiels = new int[bandes][];
+		Parallele.pourBandes(h, bandes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				int[] histo = new int[256];
+				int[] argb = new int[w];
+				for (int y = debut; y < fin; y++) {
+					im.getRGB(0, y, w, 1, argb, 0, w);
+					for (int x = 0; x < w; x++) {
+						int p = argb[x];
+						histo[ImageIO.luminance(p >>> 24, (p >> 16) & 0xFF,
+								(p >> 8) & 0xFF, p & 0xFF)]++;
+					}
+				}
+				partiels[bande] = histo;
+			}
+		});
+		return fusionner(partiels, 256);
+	}
+
+	/**
+	 * Histogramme d'un plan de coefficients.
+	 * @param plan coefficients
+	 * @param origine borne inferieure de la premiere classe
+	 * @param pas largeur des classes (strictement positive)
+	 * @param nbClasses nombre de classes
+	 * @return histogramme a nbClasses classes
+	 */
+	public static int[] compter(final double[][] plan, final double origine,
+			final double pas, final int nbClasses) {
+		if (!(pas > 0) || nbClasses < 1 || nbClasses > CLASSES_MAX)
+			throw new IllegalArgumentException("Classes invalides : pas = "
+					+ pas + ", " + nbClasses + " classes");
+		final int n = plan.length;
+		final int bandes = Parallele.nbBandes(n, (long) n
+				* (n == 0 ? 0 : plan[0].length));
+		final int[][] partiels = new int[bandes][];
+		final double inverse = 1 / pas;
+		Parallele.pourBandes(n, bandes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				int[] histo = new int[nbClasses];
+				int der = nbClasses - 1;
+				for (int i = debut; i < fin; i++) {
+					double[] ligne = plan[i];
+					for (int j = 0; j < ligne.length; j++) {
+						double c = Math.floor((ligne[j] - origine) * inverse);
+						if (c != c)
+							continue;
+						histo[c <= 0 ? 0 : (c >= der ? der : (int) c)]++;
+					}
+				}
+				partiels[bande] = histo;
+			}
+		});
+		return fusionner(partiels, nbClasses);
+	}
+
+	/**
+	 * Plus petite et plus grande valeur d'un plan (NaN ignores).
+	 * @param plan coefficients
+	 * @return {min, max}, {+inf, -inf} pour un plan vide
+	 */
+	public static double[] etendue(final double[][] plan) {
+		final int n = plan.length;
+		final int bandes = Parallele.nbBandes(n, (long) n
+				* (n == 0 ? 0 : plan[0].length));
+		final double[][] partiels = new double[bandes][];
+		Parallele.pourBandes(n, bandes, new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (int i = debut; i < fin; i++) {
+					double[] ligne = plan[i];
+					for (int j = 0; j < ligne.length; j++) {
+						double v = ligne[j];
+						if (v < min)
+							min = v;
+						if (v > max)
+							max = v;
+					}
+				}
+				partiels[bande] = new double[] { min, max };
+			}
+		});
+		double[] etendue = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (double[] p : partiels) {
+			etendue[0] = Math.min(etendue[0], p[0]);
+			etendue[1] = Math.max(etendue[1], p[1]);
+		}
+		return etendue;
+	}
+
+	/**
+	 * Histogramme d'un plan de coefficients sur toute son etendue.
+	 * <p>
+	 * Les classes sont alignees sur les multiples de pas : avec pas = 1, la
+	 * classe de chaque coefficient entier est sa valeur moins le minimum.
+	 * </p>
+	 * @param plan coefficients
+	 * @param pas largeur des classes
+	 * @return histogramme (la premiere classe commence a
+	 *         floor(min / pas) * pas)
+	 */
+	public static int[] compter(double[][] plan, double pas) {
+		double[] e = etendue(plan);
+		if (e[0] > e[1])
+			return new int[1];
+		double origine = Math.floor(e[0] / pas) * pas;
+		double classes = Math.floor((e[1] - origine) / pas) + 1;
+		if (classes > CLASSES_MAX)
+			throw new IllegalArgumentException("Trop de classes (" + classes
+					+ ") : augmenter le pas");
+		return compter(plan, origine, pas, (int) classes);
+	}
+
+	/**
+	 * Entropie d'ordre 1 (bits par echantillon) d'un histogramme.
+	 * @param histo histogramme
+	 * @return entropie, 0 pour un histogramme vide
+	 */
+	public static double entropie(int[] histo) {
+		long total = 0;
+		for (int v : histo)
+			total += v;
+		if (total == 0)
+			return 0;
+		double somme = 0;
+		for (int v : histo)
+			if (v > 0)
+				somme += v * Math.log(v);
+		return (Math.log(total) - somme / total) / Math.log(2);
+	}
+
+	/**
+	 * Entropie d'ordre 1 d'un plan de coefficients quantifies avec le pas donne.
+	 * @param plan coefficients
+	 * @param pas pas de quantification
+	 * @return entropie en bits par coefficient
+	 */
+	public static double entropie(double[][] plan, double pas) {
+		return entropie(compter(plan, pas));
+	}
+
+	private static int[] fusionner(int[][] partiels, int classes) {
+		int[] histo = partiels[0];
+		for (int b = 1; b < partiels.length; b++)
+			for (int k = 0; k < classes; k++)
+				histo[k] += partiels[b][k];
+		return histo;
+	}
+}
@@ -0,0 +1,235 @@
+package testimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Execution parallele des traitements d'image.
+ *
+ * <p>
+ * Un seul groupe de threads demons, de la taille du nombre de processeurs, est
+ * partage par tous les traitements. Le thread appelant execute lui-meme la
+ * premiere tache puis attend les autres. Un traitement lance depuis un thread
+ * du groupe (traitement imbrique) s'execute sequentiellement, ce qui evite
+ * tout blocage du groupe.
+ * </p>
+ *
+ * @version 1.0
+ */
+final class Parallele {
+
+	/**
+	 * Tache indexee executee par {@link Parallele#pourChaque(int, Tache)}.
+	 */
+	interface Tache {
+		void executer(int k);
+	}
+
+	/**
+	 * Traitement d'une bande de lignes [debut, fin) par
+	 * {@link Parallele#pourBandes(int, int, Bande)}.
+	 */
+	interface Bande {
+		void traiter(int bande, int debut, int fin);
+	}
+
+	/**
+	 * Traitement d'un bloc [i0, i1) x [j0, j1) par
+	 * {@link Parallele#pourFronts(int, int, long, Bloc)}.
+	 */
+	interface Bloc {
+		void traiter(int i0, int i1, int j0, int j1);
+	}
+
+	/**
+	 * En dessous de ce nombre d'operations, un traitement reste sequentiel.
+	 */
+	static final long TRAVAIL_MIN = 1 << 16;
+
+	/**
+	 * Nombre de processeurs disponibles
+	 */
+	static final int PROCESSEURS = Runtime.getRuntime().availableProcessors();
+
+	private static ExecutorService groupe;
+
+	private Parallele() {
+	}
+
+	/**
+	 * Thread du groupe, reconnu pour executer sequentiellement les traitements imbriques.
+	 */
+	private static final class Ouvrier extends Thread {
+		Ouvrier(Runnable r, int numero) {
+			super(r, "testimage-parallele-" + numero);
+			setDaemon(true);
+		}
+	}
+
+	private static synchronized ExecutorService groupe() {
+		if (groupe == null) {
+			groupe = Executors.newFixedThreadPool(PROCESSEURS,
+					new ThreadFactory() {
+						private int numero = 0;
+
+						public synchronized Thread newThread(Runnable r) {
+							return new Ouvrier(r, numero++);
+						}
+					});
+		}
+		return groupe;
+	}
+
+	/**
+	 * @return vrai si le traitement doit rester sur le thread courant
+	 */
+	static boolean sequentiel() {
+		return PROCESSEURS == 1 || Thread.currentThread() instanceof Ouvrier;
+	}
+
+	/**
+	 * Execute tache.executer(k) pour k = 0..n-1, en parallele.
+	 * <p>
+	 * Rend la main quand toutes les taches sont terminees. Une exception levee
+	 * par une tache est relancee dans le thread appelant.
+	 * </p>
+	 * @param n nombre de taches
+	 * @param tache tache a executer
+	 */
+	static void pourChaque(int n, final Tache tache) {
+		if (n <= 1 || sequentiel()) {
+			for (int k = 0; k < n; k++)
+				tache.executer(k);
+			return;
+		}
+		List<Future<?>> futurs = new ArrayList<Future<?>>(n - 1);
+		for (int k = 1; k < n; k++) {
+			final int indice = k;
+			futurs.add(groupe().submit(new Runnable() {
+				public void run() {
+					tache.executer(indice);
+				}
+			}));
+		}
+		RuntimeException echec = null;
+		try {
+			tache.executer(0);
+		} catch (RuntimeException e) {
+			echec = e;
+		}
+		boolean interrompu = false;
+		for (Future<?> f : futurs) {
+			while (true) {
+				try {
+					f.get();
+					break;
+				} catch (InterruptedException e) {
+					// Les taches lancees ecrivent dans les tableaux de
+					// l'appelant : on les attend quand meme
+					interrompu = true;
+				} catch (ExecutionException e) {
+					if (echec == null)
+						echec = relancer(e.getCause());
+					break;
+				}
+			}
+		}
+		if (interrompu) {
+			Thread.currentThread().interrupt();
+			if (echec == null)
+				echec = new CancellationException("Traitement interrompu");
+		}
+		if (echec != null)
+			throw echec;
+	}
+
+	/**
+	 * Nombre de bandes pour decouper n lignes.
+	 * @param n nombre de lignes
+	 * @param travail nombre total d'operations du traitement
+	 * @return 1 pour un petit traitement ou un traitement imbrique, sinon au
+	 *         plus le nombre de processeurs
+	 */
+	static int nbBandes(int n, long travail) {
+		if (n <= 1 || travail < TRAVAIL_MIN || sequentiel())
+			return 1;
+		return Math.min(PROCESSEURS, n);
+	}
+
+	/**
+	 * Decoupe les lignes [0, n) en bandes contigues de tailles egales (a une
+	 * ligne pres) traitees en parallele.
+	 * <p>
+	 * Le numero de bande permet a chaque bande d'accumuler dans ses propres
+	 * tableaux, fusionnes par l'appelant.
+	 * </p>
+	 * @param n nombre de lignes
+	 * @param bandes nombre de bandes, en general {@link #nbBandes(int, long)}
+	 * @param bande traitement d'une bande
+	 */
+	static void pourBandes(final int n, final int bandes, final Bande bande) {
+		pourChaque(bandes, new Tache() {
+			public void executer(int k) {
+				bande.traiter(k, (int) ((long) n * k / bandes),
+						(int) ((long) n * (k + 1) / bandes));
+			}
+		});
+	}
+
+	/**
+	 * Parcours en front d'onde d'un tableau n x m dont chaque element depend
+	 * d'elements d'indices inferieurs ou egaux sur les deux axes (prediction
+	 * causale).
+	 * <p>
+	 * Le tableau est decoupe en blocs ; les blocs d'une meme anti-diagonale
+	 * sont independants et traites en parallele, une anti-diagonale apres
+	 * l'autre. Un bloc parcouru ligne par ligne lit donc exactement les memes
+	 * valeurs qu'un parcours ligne par ligne du tableau entier. Un petit
+	 * traitement est passe en un seul bloc.
+	 * </p>
+	 * @param n nombre de lignes
+	 * @param m nombre de colonnes
+	 * @param travail nombre total d'operations du traitement
+	 * @param bloc traitement d'un bloc
+	 */
+	static void pourFronts(final int n, final int m, long travail,
+			final Bloc bloc) {
+		if (n <= 0 || m <= 0)
+			return;
+		if (travail < TRAVAIL_MIN || sequentiel()) {
+			bloc.traiter(0, n, 0, m);
+			return;
+		}
+		// 4 blocs par processeur sur chaque axe : les anti-diagonales
+		// centrales occupent tous les processeurs
+		final int bi = Math.min(n, 4 * PROCESSEURS);
+		final int bj = Math.min(m, 4 * PROCESSEURS);
+		for (int d = 0; d < bi + bj - 1; d++) {
+			final int iMin = Math.max(0, d - bj + 1);
+			final int diag = d;
+			pourChaque(Math.min(bi - 1, d) - iMin + 1, new Tache() {
+				public void executer(int k) {
+					int I = iMin + k, J = diag - I;
+					bloc.traiter((int) ((long) n * I / bi),
+							(int) ((long) n * (I + 1) / bi),
+							(int) ((long) m * J / bj),
+							(int) ((long) m * (J + 1) / bj));
+				}
+			});
+		}
+	}
+
+	private static RuntimeException relancer(Throwable cause) {
+		if (cause instanceof Error)
+			throw (Error) cause;
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		return new RuntimeException(cause);
+	}
+}
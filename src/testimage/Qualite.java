@@ -0,0 +1,217 @@
+package testimage;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Mesures de qualite d'une image reconstruite par rapport a l'originale :
+ * erreur quadratique moyenne (EQM), PSNR et SSIM.
+ *
+ * <p>
+ * Le SSIM est la moyenne des indices de similarite structurelle de Wang et
+ * al. sur toutes les fenetres carrees de {@link #FENETRE} pixels entierement
+ * dans l'image, a fenetre uniforme : moyennes, variances et covariance de
+ * chaque fenetre se lisent dans cinq images integrales (voir
+ * {@link ImageIntegrale}), pour un cout constant par pixel quelle que soit la
+ * taille de la fenetre.
+ * </p>
+ *
+ * <p>
+ * Les deux mesures sont calculees en parallele par bandes de colonnes. Les
+ * sommes partielles portent sur des groupes fixes de {@link #GROUPE}
+ * colonnes, repartis entre les bandes, et sont additionnees dans l'ordre des
+ * groupes : le resultat ne depend pas du nombre de processeurs.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class Qualite {
+
+	/**
+	 * Valeur crete des pixels, pour le PSNR et les constantes du SSIM
+	 */
+	public static final double CRETE = 255;
+
+	/**
+	 * Cote des fenetres du SSIM
+	 */
+	public static final int FENETRE = 8;
+
+	/**
+	 * Constantes de stabilisation du SSIM, (0.01 CRETE)^2 et (0.03 CRETE)^2
+	 */
+	private static final double C1 = (0.01 * CRETE) * (0.01 * CRETE),
+			C2 = (0.03 * CRETE) * (0.03 * CRETE);
+
+	/**
+	 * Nombre de colonnes d'une somme partielle
+	 */
+	private static final int GROUPE = 64;
+
+	private final double eqm;
+	private final double ssim;
+
+	/**
+	 * Mesure de deux plans de pixels.
+	 * @param originale plan [x][y] de l'image originale
+	 * @param reconstruite plan de memes dimensions
+	 */
+	public Qualite(double[][] originale, double[][] reconstruite) {
+		eqm = eqm(originale, reconstruite);
+		ssim = ssim(originale, reconstruite);
+	}
+
+	/**
+	 * Mesure de deux images, comparees en niveaux de gris (luminance pour une
+	 * image couleur, voir {@link ImageIO#versGris(BufferedImage)}).
+	 * @param originale image originale
+	 * @param reconstruite image de memes dimensions
+	 * @return mesures
+	 */
+	public static Qualite mesurer(BufferedImage originale,
+			BufferedImage reconstruite) {
+		if (originale.getWidth() != reconstruite.getWidth()
+				|| originale.getHeight() != reconstruite.getHeight())
+			throw new IllegalArgumentException("Images de dimensions differentes : "
+					+ originale.getWidth() + " x " + originale.getHeight()
+					+ " et " + reconstruite.getWidth() + " x "
+					+ reconstruite.getHeight());
+		return new Qualite(
+				TraitImage.getPixelTab(ImageIO.versGris(originale)),
+				TraitImage.getPixelTab(ImageIO.versGris(reconstruite)));
+	}
+
+	/**
+	 * @return erreur quadratique moyenne
+	 */
+	public double eqm() {
+		return eqm;
+	}
+
+	/**
+	 * @return PSNR en dB, infini pour deux images identiques
+	 */
+	public double psnr() {
+		return psnr(eqm);
+	}
+
+	/**
+	 * @return SSIM moyen, 1 pour deux images identiques
+	 */
+	public double ssim() {
+		return ssim;
+	}
+
+	public String toString() {
+		return String.format("EQM %.3f, PSNR %.2f dB, SSIM %.4f", eqm, psnr(),
+				ssim);
+	}
+
+	/**
+	 * PSNR d'une erreur quadratique moyenne.
+	 * @param eqm erreur quadratique moyenne
+	 * @return 10 log10(CRETE^2 / eqm) en dB
+	 */
+	public static double psnr(double eqm) {
+		return 10 * Math.log10(CRETE * CRETE / eqm);
+	}
+
+	/**
+	 * Erreur quadratique moyenne entre deux plans.
+	 * @param a plan [x][y]
+	 * @param b plan de memes dimensions
+	 * @return moyenne des (a - b)^2
+	 */
+	public static double eqm(final double[][] a, final double[][] b) {
+		final int w = a.length, h = dimensions(a, b);
+		if (w == 0 || h == 0)
+			return 0;
+		final int groupes = groupes(w);
+		final double[] partiel = new double[groupes];
+		Parallele.pourBandes(groupes, Parallele.nbBandes(groupes, (long) w * h),
+				new Parallele.Bande() {
+					public void traiter(int bande, int debut, int fin) {
+						for (int g = debut; g < fin; g++) {
+							double s = 0;
+							int x1 = Math.min(w, (g + 1) * GROUPE);
+							for (int x = g * GROUPE; x < x1; x++) {
+								double[] u = a[x], v = b[x];
+								for (int y = 0; y < h; y++) {
+									double d = u[y] - v[y];
+									s += d * d;
+								}
+							}
+							partiel[g] = s;
+						}
+					}
+				});
+		return somme(partiel) / ((double) w * h);
+	}
+
+	/**
+	 * SSIM moyen entre deux plans, sur les fenetres de {@link #FENETRE} pixels
+	 * de cote (du cote de l'image si elle est plus petite).
+	 * @param a plan [x][y]
+	 * @param b plan de memes dimensions
+	 * @return moyenne des indices SSIM des fenetres
+	 */
+	public static double ssim(double[][] a, double[][] b) {
+		int w = a.length, h = dimensions(a, b);
+		if (w == 0 || h == 0)
+			return 1;
+		final int fx = Math.min(FENETRE, w), fy = Math.min(FENETRE, h);
+		final double n = (double) fx * fy;
+		final ImageIntegrale sa = new ImageIntegrale(a), sb = new ImageIntegrale(b);
+		final ImageIntegrale saa = ImageIntegrale.carres(a), sbb = ImageIntegrale
+				.carres(b), sab = ImageIntegrale.produits(a, b);
+		final int nx = w - fx + 1, ny = h - fy + 1;
+		final int groupes = groupes(nx);
+		final double[] partiel = new double[groupes];
+		Parallele.pourBandes(groupes, Parallele.nbBandes(groupes,
+				16L * nx * ny), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int g = debut; g < fin; g++) {
+					double s = 0;
+					int xf = Math.min(nx, (g + 1) * GROUPE);
+					for (int x = g * GROUPE; x < xf; x++)
+						for (int y = 0; y < ny; y++) {
+							int x1 = x + fx, y1 = y + fy;
+							double ma = sa.somme(x, y, x1, y1) / n;
+							double mb = sb.somme(x, y, x1, y1) / n;
+							double va = saa.somme(x, y, x1, y1) / n - ma * ma;
+							double vb = sbb.somme(x, y, x1, y1) / n - mb * mb;
+							double cov = sab.somme(x, y, x1, y1) / n - ma * mb;
+							s += (2 * ma * mb + C1) * (2 * cov + C2)
+									/ ((ma * ma + mb * mb + C1) * (va + vb + C2));
+						}
+					partiel[g] = s;
+				}
+			}
+		});
+		return somme(partiel) / ((double) nx * ny);
+	}
+
+	/**
+	 * Verifie que deux plans ont les memes dimensions.
+	 * @return hauteur commune
+	 */
+	private static int dimensions(double[][] a, double[][] b) {
+		int h = a.length == 0 ? 0 : a[0].length;
+		if (a.length != b.length || (b.length > 0 && b[0].length != h))
+			throw new IllegalArgumentException("Plans de dimensions differentes");
+		return h;
+	}
+
+	/**
+	 * @return nombre de groupes de {@link #GROUPE} colonnes couvrant n colonnes
+	 */
+	private static int groupes(int n) {
+		return (n + GROUPE - 1) / GROUPE;
+	}
+
+	private static double somme(double[] partiel) {
+		double s = 0;
+		for (double p : partiel)
+			s += p;
+		return s;
+	}
+}
@@ -2,6 +2,7 @@ package testimage;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 
 public class SystemeLineaire {
 	public static final int INITIAL      = 1;
@@ -10,9 +11,12 @@ public class SystemeLineaire {
 	public static final int SINGULIER    = 4;
 
 	private int n;                      // dimension du systeme
-	private double mat[][];             // matrice n*(n+1) du systeme
+	private double coef[][];            // matrice n*(n+1) du systeme, non modifiee
+	private double mat[][];             // copie de travail, triangularisee en place
 	private double epsilon;             // |x| < epsilon => x est nul
 	private int etat;                   // etat courant du systeme
+	private FactorisationLU facto;      // factorisation de la matrice initiale
+	private boolean eliminee;           // matrice deja eliminee pour un second membre
 
 	public static DecimalFormat fmt;   // pour l'affichage des nombres
 	static {
@@ -24,6 +28,7 @@ public class SystemeLineaire {
 	public SystemeLineaire(int dim) {
 		// Construction d'un systeme n x n, entierement fait de 0
 		n = dim;
+		coef = new double[n][n + 1];
 		mat = new double[n][n + 1];
 		epsilon = 1e-8;
 		etat = INITIAL;
@@ -35,11 +40,12 @@ public class SystemeLineaire {
 		for (int i = 0; i < n; i++) {
 			int jMax = Math.min(n, a[i].length);
 			for (int j = 0; j < jMax; j++)
-				mat[i][j] = a[i][j];
+				coef[i][j] = a[i][j];
 		}
 		int iMax = Math.min(n, b.length);
 		for (int i = 0; i < iMax; i++)
-			mat[i][n] = b[i];
+			coef[i][n] = b[i];
+		restauration();
 	}
 
 	public int n() {
@@ -55,15 +61,45 @@ public class SystemeLineaire {
 	}
 
 	public void defCoef(int i, int j, double aij) {
-		mat[i][j] = aij;
-		etat = INITIAL;
+		if (etat != INITIAL)
+			restauration();
+		coef[i][j] = mat[i][j] = aij;
+		if (j < n) {
+			facto = null;
+			eliminee = false;
+		}
 	}
 
 	public void defEpsilon(double epsilon) {
 		this.epsilon = epsilon;
+		restauration();
+		facto = null;
+		eliminee = false;
+	}
+
+	// la copie de travail repart de la matrice du systeme
+	private void restauration() {
+		for (int i = 0; i < n; i++)
+			System.arraycopy(coef[i], 0, mat[i], 0, n + 1);
 		etat = INITIAL;
 	}
 
+	/**
+	 * Factorisation LU de la matrice du systeme, pour resoudre d'autres
+	 * seconds membres sans refaire l'elimination.
+	 * <p>
+	 * Calculee au premier appel, a partir de la matrice du systeme et non de
+	 * sa forme triangularisee, et conservee tant que la matrice et epsilon ne
+	 * changent pas (defCoef sur le second membre la conserve).
+	 * </p>
+	 * @return factorisation (voir {@link FactorisationLU#estSinguliere()})
+	 */
+	public FactorisationLU factorisation() {
+		if (facto == null)
+			facto = new FactorisationLU(coef, epsilon);
+		return facto;
+	}
+
 	public void triangularisation() {
 		if (etat == INITIAL) {
 			for (int k = 0; k < n; k++) {
@@ -98,9 +134,16 @@ public class SystemeLineaire {
 	}
 
 	public void resolution() {
+		if (etat == INITIAL && (facto != null || eliminee)) {
+			// seul le second membre a change depuis la derniere resolution :
+			// la factorisation evite une nouvelle elimination
+			resolutionFactorisee();
+			return;
+		}
 		triangularisation();
 		if (etat == RESOLU || etat == SINGULIER)
 			return;
+		eliminee = true;
 		// la solution est rangee a la place du second membre
 		for (int i = n - 1; i >= 0; i--) {
 			double s = 0;
@@ -114,6 +157,24 @@ public class SystemeLineaire {
 		etat = RESOLU;
 	}
 
+	private void resolutionFactorisee() {
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++)
+			b[i] = coef[i][n];
+		double[] x = factorisation().resoudre(b);
+		if (x == null) {
+			etat = SINGULIER;
+			return;
+		}
+		// meme forme que l'elimination : identite et solution en colonne n
+		for (int i = 0; i < n; i++) {
+			Arrays.fill(mat[i], 0, n, 0);
+			mat[i][i] = 1;
+			mat[i][n] = x[i];
+		}
+		etat = RESOLU;
+	}
+
 	public double[] solution() {
 		if (etat != RESOLU)
 			resolution();
@@ -125,6 +186,267 @@ public class SystemeLineaire {
 		return res;
 	}
 
+	/**
+	 * Resolution d'un systeme symetrique defini positif par Cholesky.
+	 * <p>
+	 * La matrice est rangee par lignes dans un tableau plat (a[i*n+j]) ; seul
+	 * son triangle inferieur est lu. Deux fois moins d'operations que
+	 * l'elimination de Gauss, et pas de recherche de pivot.
+	 * </p>
+	 * @param a matrice n x n (non modifiee)
+	 * @param n dimension
+	 * @param b second membre (non modifie)
+	 * @return solution, null si la matrice n'est pas definie positive
+	 */
+	public static double[] resolutionCholesky(double[] a, int n, double[] b) {
+		double[] l = new double[n * n];
+		double seuil = 0;
+		for (int i = 0; i < n; i++)
+			seuil = Math.max(seuil, Math.abs(a[i * n + i]));
+		seuil *= PRECISION;
+		// facteur L (triangle inferieur, par lignes)
+		for (int i = 0; i < n; i++) {
+			int li = i * n;
+			for (int j = 0; j <= i; j++) {
+				int lj = j * n;
+				double s = a[li + j];
+				for (int k = 0; k < j; k++)
+					s -= l[li + k] * l[lj + k];
+				if (i == j) {
+					if (!(s > seuil))
+						return null;
+					l[li + i] = Math.sqrt(s);
+				} else
+					l[li + j] = s / l[lj + j];
+			}
+		}
+		// L.y = b puis L'.x = y
+		double[] x = b.clone();
+		for (int i = 0; i < n; i++) {
+			double s = x[i];
+			for (int k = 0; k < i; k++)
+				s -= l[i * n + k] * x[k];
+			x[i] = s / l[i * n + i];
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double s = x[i];
+			for (int k = i + 1; k < n; k++)
+				s -= l[k * n + i] * x[k];
+			x[i] = s / l[i * n + i];
+		}
+		return x;
+	}
+
+	/**
+	 * Resolution d'un systeme symetrique de Toeplitz par blocs de Toeplitz,
+	 * par la recursion de Levinson par blocs (Whittle, Wiggins-Robinson).
+	 * <p>
+	 * La matrice a p x p blocs de taille m x m ; le bloc (i, k) vaut T(i-k),
+	 * avec T(-d) = transposee de T(d), et chaque bloc est lui-meme de Toeplitz :
+	 * T(d)[j][l] = t[d*(2m-1) + j-l+m-1]. C'est la matrice des equations
+	 * normales d'un predicteur AR 2D, t etant l'autocorrelation aux decalages
+	 * (d, j-l). La matrice est alors persymetrique : le predicteur arriere de la
+	 * recursion est le predicteur avant retourne, seul ce dernier est calcule.
+	 * </p>
+	 * <p>
+	 * Cout en O(p^2.m^3) au lieu de O(p^3.m^3) pour Gauss, sans construire la
+	 * matrice. Les inconnues et le second membre sont ranges bloc par bloc :
+	 * indice i*m + j.
+	 * </p>
+	 * @param t diagonales des blocs T(0) a T(p-1), p*(2m-1) valeurs
+	 * @param p nombre de blocs sur une ligne
+	 * @param m taille d'un bloc
+	 * @param b second membre (p*m valeurs, non modifie)
+	 * @return solution, null si une sous-matrice principale est singuliere
+	 */
+	public static double[] resolutionToeplitzBlocs(double[] t, int p, int m,
+			double[] b) {
+		int mm = m * m;
+		double[] blocs = new double[p * mm];
+		for (int d = 0; d < p; d++)
+			for (int j = 0; j < m; j++)
+				for (int l = 0; l < m; l++)
+					blocs[d * mm + j * m + l] = t[d * (2 * m - 1) + j - l + m - 1];
+		// X : predicteur avant (X_0 = I) et son erreur Pf ; predicteur
+		// arriere Y = J.X.J (Y_k = I a l'ordre k) et son erreur Pb = J.Pf.J,
+		// J renversant l'ordre des lignes ou des colonnes ; Pb est gardee
+		// sous forme factorisee
+		double[] X = new double[p * mm];
+		double[] Y = new double[p * mm];
+		double[] Pf = new double[mm];
+		double[] Pb = new double[mm];
+		System.arraycopy(blocs, 0, Pf, 0, mm);
+		System.arraycopy(blocs, 0, Pb, 0, mm);
+		for (int j = 0; j < m; j++)
+			X[j * m + j] = Y[j * m + j] = 1;
+		double seuil = 0;
+		for (int j = 0; j < m; j++)
+			seuil = Math.max(seuil, Math.abs(blocs[j * m + j]));
+		seuil *= PRECISION;
+		// solution des sous-systemes successifs
+		double[] s = new double[p * m];
+		double[] e = new double[m];
+		System.arraycopy(b, 0, e, 0, m);
+		// Pb factorisee une fois par ordre, pour la solution et pour alpha
+		int[] perm = new int[m];
+		if (!factoriserBloc(Pb, m, perm, seuil))
+			return null;
+		resoudreBloc(Pb, perm, m, e, 1);
+		System.arraycopy(e, 0, s, 0, m);
+
+		double[] df = new double[mm];
+		double[] alpha = new double[mm];
+		for (int ordre = 1; ordre < p; ordre++) {
+			// df = somme T(ordre-k).X_k, ecart du predicteur avant prolonge
+			Arrays.fill(df, 0);
+			for (int k = 0; k < ordre; k++)
+				produit(blocs, (ordre - k) * mm, X, k * mm, df, 0, m);
+			// alpha = -Pb^-1.df ; X <- [X;0] + [0;Y].alpha
+			System.arraycopy(df, 0, alpha, 0, mm);
+			resoudreBloc(Pb, perm, m, alpha, m);
+			for (int k = 0; k < mm; k++)
+				alpha[k] = -alpha[k];
+			for (int k = 1; k <= ordre; k++)
+				produit(Y, (k - 1) * mm, alpha, 0, X, k * mm, m);
+			// Pf <- Pf + (J.df.J).alpha, puis Y et Pb par symetrie
+			renverser(df, 0, m);
+			produit(df, 0, alpha, 0, Pf, 0, m);
+			for (int k = 0; k <= ordre; k++) {
+				System.arraycopy(X, (ordre - k) * mm, Y, k * mm, mm);
+				renverser(Y, k * mm, m);
+			}
+			System.arraycopy(Pf, 0, Pb, 0, mm);
+			renverser(Pb, 0, m);
+			if (!factoriserBloc(Pb, m, perm, seuil))
+				return null;
+
+			// s <- [s;0] + Y.Pb^-1.(b_ordre - somme T(ordre-k).s_k)
+			for (int j = 0; j < m; j++) {
+				double v = b[ordre * m + j];
+				for (int k = 0; k < ordre; k++) {
+					int o = (ordre - k) * mm + j * m;
+					for (int l = 0; l < m; l++)
+						v -= blocs[o + l] * s[k * m + l];
+				}
+				e[j] = v;
+			}
+			resoudreBloc(Pb, perm, m, e, 1);
+			for (int k = 0; k <= ordre; k++)
+				for (int j = 0; j < m; j++) {
+					double v = 0;
+					int o = k * mm + j * m;
+					for (int l = 0; l < m; l++)
+						v += Y[o + l] * e[l];
+					s[k * m + j] += v;
+				}
+		}
+		return s;
+	}
+
+	/**
+	 * Bloc m x m retourne en place : a[i][j] <- a[m-1-i][m-1-j]
+	 */
+	private static void renverser(double[] a, int o, int m) {
+		for (int i = 0, k = o + m * m - 1; i < k - o; i++, k--) {
+			double w = a[o + i];
+			a[o + i] = a[k];
+			a[k] = w;
+		}
+	}
+
+	/**
+	 * Seuil relatif de singularite des resolutions structurees
+	 */
+	private static final double PRECISION = 1e-12;
+
+	/**
+	 * c += A.B pour des blocs m x m ranges a plat
+	 */
+	private static void produit(double[] a, int oa, double[] bb, int ob,
+			double[] c, int oc, int m) {
+		for (int i = 0; i < m; i++) {
+			int la = oa + i * m, lc = oc + i * m;
+			for (int k = 0; k < m; k++) {
+				double v = a[la + k];
+				int lb = ob + k * m;
+				for (int j = 0; j < m; j++)
+					c[lc + j] += v * bb[lb + j];
+			}
+		}
+	}
+
+	/**
+	 * Factorisation LU en place d'un bloc m x m, avec pivot partiel (perm
+	 * recoit les lignes des pivots).
+	 * @return faux si un pivot est inferieur au seuil
+	 */
+	private static boolean factoriserBloc(double[] lu, int m, int[] perm,
+			double seuil) {
+		for (int k = 0; k < m; k++) {
+			int ip = k;
+			for (int i = k + 1; i < m; i++)
+				if (Math.abs(lu[i * m + k]) > Math.abs(lu[ip * m + k]))
+					ip = i;
+			if (!(Math.abs(lu[ip * m + k]) > seuil))
+				return false;
+			perm[k] = ip;
+			if (ip != k)
+				for (int j = 0; j < m; j++) {
+					double w = lu[k * m + j];
+					lu[k * m + j] = lu[ip * m + j];
+					lu[ip * m + j] = w;
+				}
+			double piv = lu[k * m + k];
+			for (int i = k + 1; i < m; i++) {
+				double q = lu[i * m + k] /= piv;
+				if (q == 0)
+					continue;
+				for (int j = k + 1; j < m; j++)
+					lu[i * m + j] -= q * lu[k * m + j];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Resout A.X = B en place (B : m lignes de nb colonnes) avec la
+	 * factorisation de factoriserBloc
+	 */
+	private static void resoudreBloc(double[] lu, int[] perm, int m,
+			double[] bb, int nb) {
+		// les echanges de factoriserBloc portent sur des lignes entieres,
+		// multiplicateurs de L compris : la permutation est appliquee en entier
+		// avant la descente
+		for (int k = 0; k < m; k++) {
+			int ip = perm[k];
+			if (ip != k)
+				for (int j = 0; j < nb; j++) {
+					double w = bb[k * nb + j];
+					bb[k * nb + j] = bb[ip * nb + j];
+					bb[ip * nb + j] = w;
+				}
+		}
+		for (int k = 0; k < m; k++) {
+			for (int i = k + 1; i < m; i++) {
+				double q = lu[i * m + k];
+				if (q != 0)
+					for (int j = 0; j < nb; j++)
+						bb[i * nb + j] -= q * bb[k * nb + j];
+			}
+		}
+		for (int k = m - 1; k >= 0; k--) {
+			for (int i = k + 1; i < m; i++) {
+				double q = lu[k * m + i];
+				if (q != 0)
+					for (int j = 0; j < nb; j++)
+						bb[k * nb + j] -= q * bb[i * nb + j];
+			}
+			double piv = lu[k * m + k];
+			for (int j = 0; j < nb; j++)
+				bb[k * nb + j] /= piv;
+		}
+	}
+
 	public void impression(java.io.PrintStream sortie) {
 		for (int i = 0; i < n; i++) {
 			for (int j = 0; j <= n; j++)
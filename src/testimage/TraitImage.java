@@ -6,7 +6,13 @@ import java.awt.image.*;
 import javax.swing.*;
 import java.awt.event.*;
 import javax.swing.border.*;
+import java.io.IOException;
 import java.util.*;
+
+import compression.Arene;
+import compression.CodageDPCM;
+import compression.CodageZTWCouleur;
+import compression.PlanCoefficients;
 /**
  * <p>Title: TestImage</p>
  * <p>Description: </p>
@@ -47,11 +53,26 @@ public abstract class TraitImage {
 
 	/**
 	 * Appliquer filtrage de l'image avec fenetrage
+	 * <p>
+	 * Une image en niveaux de gris sur un octet est filtree directement dans
+	 * son tableau de pixels par {@link Convolution} (noyau separable en deux
+	 * passes, bandes de lignes en parallele), avec le meme resultat que
+	 * ConvolveOp aux arrondis pres ; les autres images passent par ConvolveOp.
+	 * </p>
 	 * @param imOri Image a filtrer
 	 * @param coeff Coefficients de la fenetre
 	 * @return Image filtree
 	 */
 	public static BufferedImage applicMasque(BufferedImage imOri, float[] coeff, int w, int h){
+		byte[] octets=octetsGris(imOri);
+		if(octets!=null)
+		{
+			BufferedImage nouvelleImage=new BufferedImage(imOri.getWidth(),imOri.getHeight(),BufferedImage.TYPE_BYTE_GRAY);
+			Convolution.convoluer(octets, ((DataBufferByte)nouvelleImage.getRaster().getDataBuffer()).getData(),
+					imOri.getWidth(), imOri.getHeight(), coeff, w, h);
+			return nouvelleImage;
+		}
+
 		//Masque
 		Kernel kern=new Kernel(w,h,coeff);
 
@@ -64,8 +85,38 @@ public abstract class TraitImage {
 		return nouvelleImage;
 	}
 
+	/**
+	 * @return pixels d'une image en niveaux de gris sur un octet, ranges
+	 *         par lignes sans ecart ; null pour une autre disposition
+	 */
+	private static byte[] octetsGris(BufferedImage im){
+		WritableRaster raster=im.getRaster();
+		if(im.getType()!=BufferedImage.TYPE_BYTE_GRAY || raster.getParent()!=null
+				|| !(raster.getSampleModel() instanceof ComponentSampleModel))
+			return null;
+		ComponentSampleModel csm=(ComponentSampleModel)raster.getSampleModel();
+		DataBuffer db=raster.getDataBuffer();
+		if(csm.getPixelStride()!=1 || csm.getScanlineStride()!=raster.getWidth()
+				|| db.getOffset()!=0 || csm.getBandOffsets()[0]!=0
+				|| raster.getSampleModelTranslateX()!=0 || raster.getSampleModelTranslateY()!=0)
+			return null;
+		return ((DataBufferByte)db).getData();
+	}
+
+	/**
+	 * Taille des blocs du parcours des pixels : le tableau de pixels est
+	 * indexe [x][y] alors que le raster est range par lignes, on parcourt donc
+	 * l'image par blocs pour rester dans le cache.
+	 */
+	private static final int BLOC = 64;
+
 	/**
 	 * Obtenir un tableau de pixels (double) a partir de l'image bufferisee
+	 * <p>
+	 * Pour les rasters 8 ou 16 bits (DataBufferByte, DataBufferUShort), les
+	 * echantillons sont lus directement dans le tableau du DataBuffer. Les
+	 * autres rasters sont lus par lignes entieres avec getSamples.
+	 * </p>
 	 * @param im
 	 * @return
 	 */
@@ -79,15 +130,56 @@ public abstract class TraitImage {
 
 		double[][] donnee=new double[w][h];
 
-		for(int i=0;i<w;i++)
+		DataBuffer db=raster.getDataBuffer();
+		SampleModel sm=raster.getSampleModel();
+		if(sm instanceof ComponentSampleModel && db.getNumBanks()==1
+				&& (db instanceof DataBufferByte || db instanceof DataBufferUShort))
+		{
+			ComponentSampleModel csm=(ComponentSampleModel)sm;
+			int scan=csm.getScanlineStride();
+			int ps=csm.getPixelStride();
+			int origine=db.getOffset()+csm.getBandOffsets()[0]
+					-raster.getSampleModelTranslateY()*scan
+					-raster.getSampleModelTranslateX()*ps;
+			byte[] octets=(db instanceof DataBufferByte) ? ((DataBufferByte)db).getData() : null;
+			short[] mots=(db instanceof DataBufferUShort) ? ((DataBufferUShort)db).getData() : null;
+			for(int y0=0;y0<h;y0+=BLOC)
+				for(int x0=0;x0<w;x0+=BLOC)
+				{
+					int yMax=Math.min(h, y0+BLOC);
+					int xMax=Math.min(w, x0+BLOC);
+					for(int j=y0;j<yMax;j++)
+					{
+						int k=origine+j*scan+x0*ps;
+						if(octets!=null)
+							for(int i=x0;i<xMax;i++,k+=ps)
+								donnee[i][j]=octets[k]&0xFF;
+						else
+							for(int i=x0;i<xMax;i++,k+=ps)
+								donnee[i][j]=mots[k]&0xFFFF;
+					}
+				}
+		}
+		else
+		{
+			int[] ligne=new int[w];
 			for(int j=0;j<h;j++)
-				donnee[i][j]=raster.getSample(i,j,0);
+			{
+				raster.getSamples(0,j,w,1,0,ligne);
+				for(int i=0;i<w;i++)
+					donnee[i][j]=ligne[i];
+			}
+		}
 
 		return donnee;
 	}
 
 	/**
 	 * Obtenir l'image bufferisee a partir d'un tableau de pixels (double) 
+	 * <p>
+	 * Les valeurs sont arrondies et saturees sur [0, 255], puis ecrites
+	 * directement dans le tableau d'octets de l'image.
+	 * </p>
 	 * @param donnee
 	 * @return
 	 */
@@ -102,13 +194,36 @@ public abstract class TraitImage {
 
 		//System.out.println("modifiee :        h = "+h+"    w = "+w+"\n");
 
-		for(int i=0;i<w;i++)
-			for(int j=0;j<h;j++)
-				raster.setSample(i,j,0,donnee[i][j]);
+		byte[] octets=((DataBufferByte)raster.getDataBuffer()).getData();
+		for(int y0=0;y0<h;y0+=BLOC)
+			for(int x0=0;x0<w;x0+=BLOC)
+			{
+				int yMax=Math.min(h, y0+BLOC);
+				int xMax=Math.min(w, x0+BLOC);
+				for(int j=y0;j<yMax;j++)
+				{
+					int k=j*w+x0;
+					for(int i=x0;i<xMax;i++,k++)
+						octets[k]=versOctet(donnee[i][j]);
+				}
+			}
 
 		return modifIm;
 	}
 
+	/**
+	 * Arrondi et saturation d'une valeur sur [0, 255]
+	 * @param v
+	 * @return niveau de gris sur un octet
+	 */
+	static byte versOctet(double v){
+		if(!(v>0))
+			return 0;
+		if(v>=255)
+			return (byte)255;
+		return (byte)(int)(v+0.5);
+	}
+
 	public static double calculMoyenne(BufferedImage aCentrer)
 	{
 		double[][] centrage = getPixelTab(aCentrer);
@@ -141,6 +256,33 @@ public abstract class TraitImage {
 		//System.out.println("moyenne : "+moyenne+"\n");
 		return centrage;
 	}
+	/**
+	 * Centrage d'une image dans un plan de coefficients alloue hors du tas.
+	 * <p>
+	 * Meme disposition que {@link #getPixelTab(BufferedImage)} : le premier
+	 * indice du plan est l'abscisse du pixel.
+	 * </p>
+	 * @param aCentrer image
+	 * @param moyenne valeur retiree a chaque pixel
+	 * @param arene arene proprietaire du plan
+	 * @return plan des pixels centres, libere a la fermeture de l'arene
+	 */
+	public static PlanCoefficients centrageImage(BufferedImage aCentrer,double moyenne, Arene arene){
+		Raster raster=aCentrer.getRaster();
+		int w=raster.getWidth();
+		int h=raster.getHeight();
+		PlanCoefficients plan=arene.allouerCoefficients(w, h);
+		int[] colonne=new int[h];
+		double[] ligne=new double[h];
+		for(int i=0;i<w;i++)
+		{
+			raster.getSamples(i, 0, 1, h, 0, colonne);
+			for(int j=0;j<h;j++)
+				ligne[j]=colonne[j]-moyenne;
+			plan.ecrireLigne(i, ligne);
+		}
+		return plan;
+	}
 	public static double[][] centrageImage(double[][] centrage,double moyenne){
 		for (int x=0;x<centrage[0].length;x++)
 			for (int y=0;y<centrage.length;y++)
@@ -159,38 +301,70 @@ public abstract class TraitImage {
 	}
 
 	public static double quantification(double valeur, double pas){
+		// pas unite et valeur entiere exacte en float : le calcul ci-dessous
+		// rend la valeur elle-meme (+0.0 pour -0.0, comme Math.round)
+		if (pas == 1 && valeur == (int) valeur && valeur >= -ENTIER_FLOAT && valeur <= ENTIER_FLOAT)
+			return valeur + 0.0;
 		int tempo=0;
 		tempo=Math.round((float)(valeur/pas));
 		//System.out.println("in : "+valeur+ " out : "+(double)(tempo*pas));
 		return (double)(tempo*pas);
 	}
 
+	/**
+	 * Plus grand entier dont tous les predecesseurs sont representables en float
+	 */
+	private static final double ENTIER_FLOAT = 1 << 24;
+
 	/**
 	 * PREDICTION
 	 */
 	
 	/**
 	 * Prediction AR 2D directe
+	 * <p>
+	 * Chaque pixel depend des pixels deja traites au-dessus et a gauche de
+	 * lui : l'interieur de l'image est parcouru en front d'onde de blocs
+	 * (voir Parallele.pourFronts), avec le meme resultat, au bit pres, qu'un
+	 * parcours ligne par ligne.
+	 * </p>
 	 * @param x
 	 * @param err
 	 * @param coeffs
 	 * @param pas
 	 */
-	public static void predictionAR2d(double[][] x,double[][] err, double[][] coeffs, double pas)
+	public static void predictionAR2d(final double[][] x,final double[][] err, final double[][] coeffs, final double pas)
+	{
+		predictionAR2dTuiles(x, err, new double[][][][] {{coeffs}}, Integer.MAX_VALUE, pas);
+	}
+	/**
+	 * Prediction AR 2D directe, avec un predicteur par tuile
+	 * <p>
+	 * Le pixel (i, j) est predit avec coeffs[i/tuile][j/tuile] a partir de
+	 * ses voisins deja traites, dans sa tuile ou non : seuls les coefficients
+	 * changent d'une tuile a l'autre, et le parcours en front d'onde est celui
+	 * de predictionAR2d. Tous les predicteurs ont les memes dimensions K x L.
+	 * </p>
+	 * @param x image (modifiee comme par predictionAR2d)
+	 * @param err residus
+	 * @param coeffs predicteurs [tuiles sur i][tuiles sur j][K][L] (voir getCoeffTuiles)
+	 * @param tuile cote des tuiles
+	 * @param pas
+	 */
+	public static void predictionAR2dTuiles(final double[][] x,final double[][] err, final double[][][][] coeffs, final int tuile, final double pas)
 	{
-		double error=0;
-		double predit=0;
 		//err = new double[x.length][x[0].length];
+		final int K=coeffs[0][0].length, L=coeffs[0][0][0].length;
 
 		//System.out.println("Calcul prediction boucle 1");
 		for (int i=0;i<x.length;i++)
-			for (int j=0;j<coeffs[0].length;j++)
+			for (int j=0;j<L;j++)
 			{err[i][j]=quantification(x[i][j],pas); x[i][j]=err[i][j];}
 
 		//err[i][j]=x[i][j];
 
 		//System.out.println("Calcul prediction boucle 2");
-		for (int i=0;i<coeffs.length;i++)
+		for (int i=0;i<K;i++)
 			for (int j=0;j<x[0].length;j++)
 			{err[i][j]=quantification(x[i][j],pas);x[i][j]=err[i][j];}
 
@@ -200,91 +374,307 @@ public abstract class TraitImage {
 
 
 		//System.out.println("Calcul prediction boucle 3");
-		for (int i=coeffs.length-1;i<x.length;i++)
-			for (int j=coeffs[0].length-1;j<x[0].length;j++)
-			{
-				predit=0;
-				for (int k=0;k<coeffs.length;k++)
-					for (int l=0;l<coeffs[0].length;l++)
+		pourInterieur(x.length, x[0].length, K, L, new Parallele.Bloc() {
+			public void traiter(int i0, int i1, int j0, int j1) {
+				double error=0;
+				double predit=0;
+				for (int i=i0;i<i1;i++)
+				{
+					double[][][] ligne=coeffs[i/tuile];
+					for (int jt=j0;jt<j1;jt=finTuile(jt, j1, tuile))
 					{
-						predit += (coeffs[k][l]*x[i-coeffs.length+1+k][j-coeffs[0].length+1+l]);
-					}
+						double[][] c=ligne[jt/tuile];
+						for (int j=jt, jf=finTuile(jt, j1, tuile);j<jf;j++)
+						{
+							predit=0;
+							for (int k=0;k<K;k++)
+								for (int l=0;l<L;l++)
+								{
+									predit += (c[k][l]*x[i-K+1+k][j-L+1+l]);
+								}
 
-				predit = Math.round(predit);
+							predit = Math.round(predit);
 
-				error=x[i][j]-predit;
-				err[i][j]=quantification(error, pas);
-				x[i][j]=predit+err[i][j];
-				//		if(x[i][j]<0) x[i][j] = 0; 
-				//		if(x[i][j]>255) x[i][j] = 255; 
+							error=x[i][j]-predit;
+							err[i][j]=quantification(error, pas);
+							x[i][j]=predit+err[i][j];
+							//		if(x[i][j]<0) x[i][j] = 0; 
+							//		if(x[i][j]>255) x[i][j] = 255; 
 
+						}
+					}
+				}
 			}
+		});
 	}
 	/**
 	 * Prediction AR 2D inverse
+	 * <p>
+	 * Meme parcours en front d'onde que la prediction directe.
+	 * </p>
 	 * @param err
 	 * @param x_rec
 	 * @param coeffs
 	 * @param pas
 	 * @param moyenne
 	 */
-	public static void predictionAR2d_inv(double[][] err,double[][] x_rec, double[][] coeffs, double pas,double moyenne)
+	public static void predictionAR2d_inv(final double[][] err,final double[][] x_rec, final double[][] coeffs, double pas,final double moyenne)
+	{
+		predictionAR2dTuiles_inv(err, x_rec, new double[][][][] {{coeffs}}, Integer.MAX_VALUE, pas, moyenne);
+	}
+	/**
+	 * Prediction AR 2D inverse, avec un predicteur par tuile (voir
+	 * predictionAR2dTuiles)
+	 * @param err
+	 * @param x_rec
+	 * @param coeffs predicteurs [tuiles sur i][tuiles sur j][K][L]
+	 * @param tuile cote des tuiles
+	 * @param pas
+	 * @param moyenne
+	 */
+	public static void predictionAR2dTuiles_inv(final double[][] err,final double[][] x_rec, final double[][][][] coeffs, final int tuile, double pas,final double moyenne)
 	{
-		double error=0;
-		double predit=0;
+		final int K=coeffs[0][0].length, L=coeffs[0][0][0].length;
+
 		for (int i=0;i<err.length;i++)
-			for (int j=0;j<coeffs[0].length;j++)
+			for (int j=0;j<L;j++)
 				x_rec[i][j]=err[i][j];
 
-		for (int i=0;i<coeffs.length;i++)
+		for (int i=0;i<K;i++)
 			for (int j=0;j<err[0].length;j++)
 				x_rec[i][j]=err[i][j];
 
-		for (int i=coeffs.length-1;i<err.length;i++)
-			for (int j=coeffs[0].length-1;j<err[0].length;j++)
-			{
-
-				predit=0;
-				for (int k=0;k<coeffs.length;k++)
-					for (int l=0;l<coeffs[0].length;l++)
+		pourInterieur(err.length, err[0].length, K, L, new Parallele.Bloc() {
+			public void traiter(int i0, int i1, int j0, int j1) {
+				double predit=0;
+				for (int i=i0;i<i1;i++)
+				{
+					double[][][] ligne=coeffs[i/tuile];
+					for (int jt=j0;jt<j1;jt=finTuile(jt, j1, tuile))
 					{
-						predit += (coeffs[k][l]*x_rec[i-coeffs.length+1+k][j-coeffs[0].length+1+l]);
+						double[][] c=ligne[jt/tuile];
+						for (int j=jt, jf=finTuile(jt, j1, tuile);j<jf;j++)
+						{
+
+							predit=0;
+							for (int k=0;k<K;k++)
+								for (int l=0;l<L;l++)
+								{
+									predit += (c[k][l]*x_rec[i-K+1+k][j-L+1+l]);
+								}
+							predit = Math.round(predit);
+							x_rec[i][j]=err[i][j]+predit;
+
+						}
 					}
-				predit = Math.round(predit);
-				x_rec[i][j]=err[i][j]+predit;
+				}
+			}
+		});
+
+		final int n=err.length, m=err[0].length;
+		Parallele.pourBandes(n, Parallele.nbBandes(n, (long) n*m), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int i=debut;i<fin;i++)
+					for (int j=0;j<m;j++)
+						x_rec[i][j]+=moyenne;
+			}
+		});
+
+	}
 
+	/**
+	 * Fin du segment de colonnes [j, fin) qui reste dans la tuile de j
+	 */
+	private static int finTuile(int j, int fin, int tuile)
+	{
+		int reste=tuile-j%tuile;
+		return reste<fin-j ? j+reste : fin;
+	}
+
+	/**
+	 * Parcours en front d'onde des pixels predits [K-1, n) x [L-1, m)
+	 */
+	private static void pourInterieur(int n, int m, final int K, final int L, final Parallele.Bloc bloc)
+	{
+		int hauteur=n-(K-1), largeur=m-(L-1);
+		if (hauteur<=0 || largeur<=0)
+			return;
+		Parallele.pourFronts(hauteur, largeur, (long) hauteur*largeur*K*L, new Parallele.Bloc() {
+			public void traiter(int i0, int i1, int j0, int j1) {
+				bloc.traiter(i0+K-1, i1+K-1, j0+L-1, j1+L-1);
 			}
+		});
+	}
 
-		for (int i=0;i<err.length;i++)
-			for (int j=0;j<err[0].length;j++)
-				x_rec[i][j]+=moyenne;
+	/**
+	 * CODAGE SANS PERTE
+	 */
 
+	/**
+	 * Codage sans perte par prediction AR 2D et codes de Golomb-Rice
+	 * adaptatifs (voir CodageDPCM).
+	 * <p>
+	 * L'image est centree sur sa moyenne arrondie a l'entier et predite avec
+	 * un pas de 1 : pixels, predictions et residus restent entiers, et la
+	 * prediction inverse redonne exactement l'image.
+	 * </p>
+	 * @param donnee image a valeurs entieres (non modifiee)
+	 * @param coeffs coefficients du predicteur (voir getCoeff) ; celui du
+	 *            pixel predit, coeffs[K-1][L-1], doit etre nul
+	 * @param bitstream_name nom du fichier de stockage du flux binaire
+	 * @return taille du flux en octets
+	 * @throws IOException
+	 */
+	public static long codageSansPerte(double[][] donnee, double[][] coeffs, String bitstream_name) throws IOException
+	{
+		if (coeffs[coeffs.length-1][coeffs[0].length-1] != 0)
+			throw new IllegalArgumentException("Prediction non causale : coefficient du pixel predit non nul");
+		double moyenne=Math.round(calculMoyenne(donnee));
+		double[][] x=new double[donnee.length][];
+		for (int i=0;i<x.length;i++)
+			x[i]=donnee[i].clone();
+		centrageImage(x, moyenne);
+		double[][] err=new double[x.length][x[0].length];
+		predictionAR2d(x, err, coeffs, 1);
+		return new CodageDPCM().code(err, coeffs, moyenne, bitstream_name);
 	}
 
-	public static int[][] moyenneur(int[][] donnee,float[] fenetre){
-		int[][] modif=new int[donnee.length][donnee[0].length];
+	/**
+	 * Codage sans perte avec un predicteur AR 2D par tuile.
+	 * <p>
+	 * Les predicteurs sont estimes sur l'image centree (getCoeffTuiles),
+	 * ramenes aux valeurs signalees dans le flux
+	 * (CodageDPCM.coefficientSignale), puis la prediction se fait comme
+	 * pour codageSansPerte, tuile par tuile. Le predicteur le plus employe
+	 * est signale une fois pour toutes ses tuiles.
+	 * </p>
+	 * @param donnee image a valeurs entieres (non modifiee)
+	 * @param K hauteur du predicteur
+	 * @param L largeur du predicteur
+	 * @param tuile cote des tuiles
+	 * @param bitstream_name nom du fichier de stockage du flux binaire
+	 * @return taille du flux en octets
+	 * @throws IOException
+	 */
+	public static long codageSansPerte(double[][] donnee, int K, int L, int tuile, String bitstream_name) throws IOException
+	{
+		double moyenne=Math.round(calculMoyenne(donnee));
+		double[][] x=new double[donnee.length][];
+		for (int i=0;i<x.length;i++)
+			x[i]=donnee[i].clone();
+		centrageImage(x, moyenne);
+		double[][][][] coeffs=getCoeffTuiles(x, K, L, tuile);
+		// un predicteur partage par plusieurs tuiles (le global) reste
+		// partage ; le plus frequent est signale une seule fois
+		IdentityHashMap<double[][], double[][]> signales=new IdentityHashMap<double[][], double[][]>();
+		IdentityHashMap<double[][], Integer> frequences=new IdentityHashMap<double[][], Integer>();
+		double[][] defaut=null;
+		for (double[][][] ligne : coeffs)
+			for (int t=0;t<ligne.length;t++)
+			{
+				double[][] c=signales.get(ligne[t]);
+				if (c==null)
+				{
+					c=new double[K][L];
+					for (int k=0;k<K;k++)
+						for (int l=0;l<L;l++)
+							c[k][l]=CodageDPCM.coefficientSignale(ligne[t][k][l]);
+					signales.put(ligne[t], c);
+					frequences.put(c, 0);
+				}
+				ligne[t]=c;
+				int f=frequences.get(c)+1;
+				frequences.put(c, f);
+				if (defaut==null || f>frequences.get(defaut))
+					defaut=c;
+			}
+		double[][] err=new double[x.length][x[0].length];
+		predictionAR2dTuiles(x, err, coeffs, tuile, 1);
+		return new CodageDPCM().code(err, defaut, coeffs, tuile, moyenne, bitstream_name);
+	}
 
+	/**
+	 * Decodage d'un flux de {@link #codageSansPerte(double[][], double[][], String)}
+	 * ou de {@link #codageSansPerte(double[][], int, int, int, String)}.
+	 * @param bitstream_name nom du fichier du flux binaire
+	 * @return image reconstruite
+	 * @throws IOException
+	 */
+	public static double[][] decodageSansPerte(String bitstream_name) throws IOException
+	{
+		CodageDPCM dpcm=new CodageDPCM();
+		double[][] err=dpcm.decode(bitstream_name);
+		double[][] x_rec=new double[err.length][err.length==0 ? 0 : err[0].length];
+		if (err.length>0 && dpcm.tuile()>0)
+			predictionAR2dTuiles_inv(err, x_rec, dpcm.coefficientsTuiles(), dpcm.tuile(), 1, dpcm.moyenne());
+		else if (err.length>0)
+			predictionAR2d_inv(err, x_rec, dpcm.coefficients(), 1, dpcm.moyenne());
+		return x_rec;
+	}
 
+	/**
+	 * Filtre moyenneur sur une fenetre de la grille {@link Fenetrage}
+	 * @param donnee image [x][y]
+	 * @param fenetre coefficients de la grille carree : seule sa taille compte,
+	 * tous les pixels de la fenetre ont le meme poids
+	 * @return image filtree (voir {@link #moyenneur(int[][], int, int)})
+	 */
+	public static int[][] moyenneur(int[][] donnee,float[] fenetre){
+		int cote=(int)Math.round(Math.sqrt(fenetre.length));
+		if(cote==0 || cote*cote!=fenetre.length)
+			throw new IllegalArgumentException("Fenetre de "+fenetre.length+" coefficients non carree");
+		return moyenneur(donnee, cote, cote);
+	}
 
+	/**
+	 * Filtre moyenneur w x h
+	 * <p>
+	 * La fenetre du pixel (x, y) couvre les colonnes x-w/2 a x+(w-1)/2 et les
+	 * lignes y-h/2 a y+(h-1)/2, comme le noyau de {@link #applicMasque(BufferedImage, float[], int, int)}.
+	 * Pres des bords, la moyenne porte sur la partie de la fenetre interieure a
+	 * l'image. Chaque somme est lue dans l'{@link ImageIntegrale} en quatre
+	 * acces : le cout par pixel ne depend pas de la taille de la fenetre. Les
+	 * bandes de colonnes x sont filtrees en parallele.
+	 * </p>
+	 * @param donnee image [x][y]
+	 * @param w largeur de la fenetre
+	 * @param h hauteur de la fenetre
+	 * @return image filtree, moyennes arrondies a l'entier le plus proche
+	 */
+	public static int[][] moyenneur(final int[][] donnee, final int w, final int h){
+		if(w<=0 || h<=0)
+			throw new IllegalArgumentException("Fenetre "+w+" x "+h);
+		final int W=donnee.length, H=W==0 ? 0 : donnee[0].length;
+		final int[][] modif=new int[W][H];
+		final ImageIntegrale integrale=new ImageIntegrale(donnee);
+		Parallele.pourBandes(W, Parallele.nbBandes(W, 4L*W*H), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for(int x=debut;x<fin;x++)
+				{
+					int x0=Math.max(0, x-w/2), x1=Math.min(W, x+(w-1)/2+1);
+					int[] ligne=modif[x];
+					for(int y=0;y<H;y++)
+					{
+						int y0=Math.max(0, y-h/2), y1=Math.min(H, y+(h-1)/2+1);
+						ligne[y]=(int)Math.round(integrale.somme(x0, y0, x1, y1)/((x1-x0)*(y1-y0)));
+					}
+				}
+			}
+		});
 		return modif;
 	}
 
 	/**
 	 * Calcul l'histogramme d'une image
+	 * <p>
+	 * Compte les echantillons de la premiere bande directement dans le raster,
+	 * en parallele (voir {@link MoteurHisto#compter(BufferedImage)}).
+	 * </p>
 	 * @param im Image bufferidee
-	 * @return Tableau contenant les valeurs de l'histogramme
+	 * @return Tableau contenant les valeurs de l'histogramme (256 valeurs pour une image 8 bits)
 	 */
 	public static int[] calculHisto(BufferedImage im){
-		int[] histo=new int[256];
-		double[][] donnee= getPixelTab(im);
-
-		for(int i=0;i<donnee.length;i++)
-			for(int j=0;j<donnee[i].length;j++)
-			{
-				histo[(int)donnee[i][j]]++;
-			}
-
-		return histo;
+		return MoteurHisto.compter(im);
 	}
 
 	/**
@@ -305,38 +695,59 @@ public abstract class TraitImage {
 	}
 	/**
 	 * Calcul de l'autocorrelation
-	 * @param donnee
-	 * @param w
-	 * @param h
-	 * @return
+	 * <p>
+	 * auto[k][l] est la moyenne des produits donnee[i][j]*donnee[i-di][j-dj]
+	 * pour le decalage di = k-(w-1), dj = l-(h-1), sur les pixels dont le
+	 * decale est dans l'image (NaN si aucun). Pour chaque decalage, les bornes
+	 * des boucles sont celles de la zone de recouvrement : les produits sont
+	 * accumules dans le meme ordre qu'un parcours complet de l'image. Les
+	 * lignes de decalages sont reparties entre les processeurs.
+	 * </p>
+	 * <p>
+	 * Pour une grande fenetre, {@link FFT2D#autocorrelation(double[][], int, int)}
+	 * donne le meme resultat aux arrondis pres, en O(N log N).
+	 * </p>
+	 * @param donnee image (tableau rectangulaire)
+	 * @param w demi-largeur de la fenetre (decalages -(w-1) a w-1 sur le premier indice)
+	 * @param h demi-hauteur de la fenetre (decalages -(h-1) a h-1 sur le second indice)
+	 * @return autocorrelation [2w-1][2h-1]
 	 */
-	public static double[][] Autocorelation(double[][] donnee,int w,int h){
-		double[][] auto=new double[2*w-1][2*h-1];
-
-		for(int k=0;k<2*w-1;k++)
-			for(int l=0;l<2*h-1;l++)
-			{
-				int count=0;
-				double temp=0;
-
-				for(int i=0;i<donnee.length;i++)
-					for(int j=0;j<donnee[0].length;j++)
+	public static double[][] Autocorelation(final double[][] donnee,final int w,final int h){
+		final double[][] auto=new double[2*w-1][2*h-1];
+		final int lignes=donnee.length;
+		final int colonnes=lignes==0 ? 0 : donnee[0].length;
+		long travail=(long)(2*w-1)*(2*h-1)*lignes*colonnes;
+
+		Parallele.pourBandes(2*w-1, Parallele.nbBandes(2*w-1, travail), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for(int k=debut;k<fin;k++)
+				{
+					int di=k-(w-1);
+					int iMin=Math.max(0, di);
+					int iMax=Math.min(lignes, lignes+di);
+					for(int l=0;l<2*h-1;l++)
 					{
+						int dj=l-(h-1);
+						int jMin=Math.max(0, dj);
+						int jMax=Math.min(colonnes, colonnes+dj);
+						int count=0;
+						double temp=0;
 
-						try{
-							temp+=donnee[i][j]*donnee[i-k+w-1][j-l+h-1];
-							count++;
-						}
-						catch(ArrayIndexOutOfBoundsException e){
-							continue;
+						for(int i=iMin;i<iMax;i++)
+						{
+							double[] ligne=donnee[i];
+							double[] decale=donnee[i-di];
+							for(int j=jMin;j<jMax;j++)
+								temp+=ligne[j]*decale[j-dj];
+							if(jMax>jMin)
+								count+=jMax-jMin;
 						}
-					}
 
-				auto[/*w-1-*/k][/*h-1-*/l]=temp/count;
-				//auto[/*w-1-*/l][/*h-1-*/k]=temp/count; // MODIF TITUS 
+						auto[k][l]=temp/count;
+					}
+				}
 			}
-
-
+		});
 
 		return auto;
 	}
@@ -349,7 +760,6 @@ public abstract class TraitImage {
 
 		double[][] R=new double[W][H];
 
-		System.out.println("w = "+w+" h = "+h+" W = "+W+" H = "+H); 
 		int cont = 0; int contp = 0; 
 		for(int i=0;i<w;i++)
 			for(int j=0;j<h;j++)
@@ -369,8 +779,6 @@ public abstract class TraitImage {
 					cont++; 
 				}
 			}
-		System.out.println("cont = "+cont+" contp = "+contp);
-
 		return R;
 	}
 	public static double[] getV(double[][] r){
@@ -391,7 +799,6 @@ public abstract class TraitImage {
 					cont++; 
 				}
 			}
-		System.out.println("getV : cont = "+cont); 
 		return V;
 	}
 	private static void getCoeff2(double[] V,double[][] coeff){
@@ -422,76 +829,200 @@ public abstract class TraitImage {
           coeff[i][j]/=somme;
 		 */ // MODIF TITUS 
 	}
+	/**
+	 * Resolution des equations normales du predicteur AR 2D en exploitant leur
+	 * structure.
+	 * <p>
+	 * La matrice de getR, completee par la colonne getV et la ligne
+	 * symetrique, est la matrice M de Toeplitz par blocs des decalages de la
+	 * fenetre. La derniere colonne y de M^-1 donne la solution du systeme de
+	 * getR : x = -y'/y_n, ou y' est y sans sa derniere composante y_n. M n'est
+	 * jamais construite : y est obtenue par la recursion de Levinson par blocs
+	 * de {@link SystemeLineaire#resolutionToeplitzBlocs(double[], int, int, double[])},
+	 * qui recoit directement les lignes utiles de l'autocorrelation.
+	 * </p>
+	 * @param auto autocorrelation [2w-1][2h-1] (voir Autocorelation)
+	 * @param w demi-largeur de la fenetre
+	 * @param h demi-hauteur de la fenetre
+	 * @return les w*h-1 coefficients, dans l'ordre de getV ; null si le
+	 *         systeme est singulier
+	 */
+	public static double[] resolutionAR(double[][] auto, int w, int h){
+		int n = w*h, l = 2*h-1;
+		double[] t = new double[w*l];
+		for(int d=0;d<w;d++)
+			for(int j=0;j<l;j++)
+			{
+				double v = auto[d+w-1][j];
+				if (v != v)
+					return null;
+				t[d*l+j] = v;
+			}
+		double[] e = new double[n];
+		e[n-1] = 1;
+		double[] y = SystemeLineaire.resolutionToeplitzBlocs(t, w, h, e);
+		if (y == null || !(Math.abs(y[n-1]) > 0))
+			return null;
+		double[] solu = new double[n-1];
+		for(int c=0;c<n-1;c++)
+			solu[c] = -y[c]/y[n-1];
+		return solu;
+	}
 	public static void getCoeff(double[][] donnee, double[][] coeff){
 
 		double[][] auto=TraitImage.Autocorelation(donnee,coeff.length,coeff[0].length);
 
-		System.out.println("TraitImage.getR r:"+auto.length+"*"+auto[0].length);
-
-		for (int i = 0; i < auto.length; i++)
-		{
-			System.out.println("");
-			for (int j = 0; j < auto[0].length; j++)
-				System.out.print(auto[i][j] + " ");
-		}
-
-		System.out.println("");
+		double[] solu=resolutionAR(auto,coeff.length,coeff[0].length);
+		if (solu == null)
+			solu=resolutionGauss(auto);
 
-		double[][] R=getR(auto);
+		getCoeff2(solu,coeff); // MODIF TITUS 
+	}
 
-		System.out.println("getV  R:"+R.length+"*"+R[0].length);
+	/**
+	 * Estimation d'un predicteur AR 2D par tuile
+	 * <p>
+	 * L'image est decoupee en tuiles de tuile x tuile pixels (les dernieres
+	 * eventuellement plus petites), reparties entre les processeurs. Chaque
+	 * tuile accumule les produits des voisinages K x L de ses pixels predits
+	 * (voisins hors de la tuile compris, comme a la prediction) et resout ces
+	 * equations normales par Cholesky : predicteur des moindres carres de la
+	 * tuile, stable meme pour une petite tuile. La somme des produits des
+	 * tuiles est celle de l'image entiere, d'ou le predicteur global sans
+	 * nouveau parcours. Une tuile garde le predicteur global si le sien est
+	 * singulier (tuile uniforme) ou donne des residus plus grands en valeur
+	 * absolue.
+	 * </p>
+	 * @param donnee image (centree, comme pour getCoeff)
+	 * @param K hauteur du predicteur
+	 * @param L largeur du predicteur
+	 * @param tuile cote des tuiles
+	 * @return predicteurs [tuiles sur i][tuiles sur j][K][L], coefficients dans
+	 *         l'ordre de getCoeff, celui du pixel predit nul ; les tuiles au
+	 *         predicteur global partagent le meme tableau
+	 */
+	public static double[][][][] getCoeffTuiles(final double[][] donnee, final int K, final int L, final int tuile){
+		final int n=donnee.length, m=donnee[0].length;
+		final int ti=(n+tuile-1)/tuile, tj=(m+tuile-1)/tuile;
+		final int nn=K*L;
+		final double[][][][] coeffs=new double[ti][tj][][];
+		final double[][] produits=new double[ti*tj][];
+
+		Parallele.pourBandes(ti*tj, Parallele.nbBandes(ti*tj, (long) n*m*nn*nn), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int t=debut;t<fin;t++)
+				{
+					int i0=Math.max(t/tj*tuile, K-1), j0=Math.max(t%tj*tuile, L-1);
+					int i1=Math.min(n, t/tj*tuile+tuile), j1=Math.min(m, t%tj*tuile+tuile);
+					// triangle inferieur de la somme des v.v', v voisinage
+					// d'un pixel predit, le pixel lui-meme en dernier : un
+					// produit scalaire par ligne pour chaque couple de voisins
+					double[] g=new double[nn*nn];
+					for (int a=0;a<nn;a++)
+						for (int b=0;b<=a;b++)
+						{
+							int da=a/L-K+1, ea=a%L-L+1, db=b/L-K+1, eb=b%L-L+1;
+							double somme=0;
+							for (int i=i0;i<i1;i++)
+							{
+								double[] xa=donnee[i+da], xb=donnee[i+db];
+								for (int j=j0;j<j1;j++)
+									somme+=xa[j+ea]*xb[j+eb];
+							}
+							g[a*nn+b]=somme;
+						}
+					produits[t]=g;
+					coeffs[t/tj][t%tj]=moindresCarres(g, K, L);
+				}
+			}
+		});
+
+		double[] g=new double[nn*nn];
+		for (int t=0;t<ti*tj;t++)
+			for (int a=0;a<nn*nn;a++)
+				g[a]+=produits[t][a];
+		double[][] c=moindresCarres(g, K, L);
+		// image sans predicteur possible (uniforme) : prediction par la moyenne
+		final double[][] global=c!=null ? c : new double[K][L];
+
+		// le predicteur de la tuile minimise l'energie des residus, que les
+		// contours dominent : on garde le global s'il donne des residus plus
+		// petits en valeur absolue, ce qui compte pour le codage
+		Parallele.pourBandes(ti*tj, Parallele.nbBandes(ti*tj, (long) n*m*nn), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for (int t=debut;t<fin;t++)
+				{
+					double[][] c=coeffs[t/tj][t%tj];
+					int i0=t/tj*tuile, j0=t%tj*tuile;
+					int i1=Math.min(n, i0+tuile), j1=Math.min(m, j0+tuile);
+					if (c==null || coutResidus(donnee, global, i0, i1, j0, j1)<=coutResidus(donnee, c, i0, i1, j0, j1))
+						coeffs[t/tj][t%tj]=global;
+				}
+			}
+		});
+		return coeffs;
+	}
 
-		for (int i = 0; i < R.length; i++)
+	/**
+	 * Predicteur des moindres carres a partir de la somme des produits des
+	 * voisinages (triangle inferieur, pixel predit en dernier)
+	 * @return coefficients K x L, pixel predit nul ; null si le systeme est singulier
+	 */
+	private static double[][] moindresCarres(double[] g, int K, int L){
+		int nn=K*L, p=nn-1;
+		if (p==0)
+			return null;
+		double[] a=new double[p*p];
+		double[] b=new double[p];
+		for (int i=0;i<p;i++)
 		{
-			System.out.println("");
-			for (int j = 0; j < R[0].length; j++)
-				System.out.print(R[i][j] + " ");
+			System.arraycopy(g, i*nn, a, i*p, i+1);
+			b[i]=g[p*nn+i];
 		}
+		double[] solu=SystemeLineaire.resolutionCholesky(a, p, b);
+		if (solu==null)
+			return null;
+		double[][] c=new double[K][L];
+		for (int q=0;q<p;q++)
+			c[q/L][q%L]=solu[q];
+		return c;
+	}
 
-		System.out.println("");
-		System.out.println("----------------------");
+	/**
+	 * Somme des valeurs absolues des residus de prediction (pas de 1) sur
+	 * les pixels predits de [i0, i1) x [j0, j1)
+	 */
+	private static double coutResidus(double[][] x, double[][] c, int i0, int i1, int j0, int j1){
+		int K=c.length, L=c[0].length;
+		double cout=0;
+		for (int i=Math.max(i0, K-1);i<i1;i++)
+			for (int j=Math.max(j0, L-1);j<j1;j++)
+			{
+				double predit=0;
+				for (int k=0;k<K;k++)
+					for (int l=0;l<L;l++)
+						predit += c[k][l]*x[i-K+1+k][j-L+1+l];
+				cout+=Math.abs(x[i][j]-Math.round(predit));
+			}
+		return cout;
+	}
 
+	/**
+	 * Resolution des equations normales par Gauss sur la matrice complete
+	 * (systeme singulier pour la recursion de Levinson).
+	 */
+	private static double[] resolutionGauss(double[][] auto){
+		double[][] R=getR(auto);
 		double[] V=getV(auto);
-
-		for (int i = 0; i < V.length; i++)
-			System.out.println("V[" + i + "] = " + V[i]);
-
-		System.out.println("syst  V:"+V.length);
-
-		SystemeLineaire sys=new SystemeLineaire(R,V);
-
-		//System.out.println("sol :");
-
-		double[] solu=sys.solution();
-
+		double[] solu=new SystemeLineaire(R,V).solution();
 		if (solu == null)
 		{
-			System.out.println("solution impossible mise a 1");
+			// systeme singulier : coefficients mis a 1
 			solu = new double[V.length];
 			for (int i=0;i<V.length;i++)
 				solu[i]=1.0;
 		}
-		/*else
-			 for (int i = 0; i < solu.length; i++)
-			 System.out.println("solu[" + i + "] = " + sys.fmt.format(solu[i]));*/
-
-		/*System.out.println("coeff  "+solu.length+"  "+coeff.length+"*"+coeff[0].length);
-
-	for(int i=0;i<coeff.length;i++)
-	{
-	  System.out.print("\n");
-	  for(int j=0;j<coeff[0].length;j++)
-	  	System.out.print(coeff[i][j]+" ");
-	}
-		 */
-		getCoeff2(solu,coeff); // MODIF TITUS 
-		/*
-	for(int i=0;i<coeff.length;i++)
-	{
-	  System.out.print("\n");
-	  for(int j=0;j<coeff[0].length;j++)
-	  	System.out.print(coeff[i][j]+" ");
-	}*/
+		return solu;
 	}
 	
 	/**
@@ -654,6 +1185,640 @@ public abstract class TraitImage {
 				}
 		}	
 	}
-	
+
+	/**
+	 * Haar 2D multiresolution directe, en place.
+	 * <p>
+	 * Donne exactement le meme resultat que {@link #haar2D_multi(double[][], double[][], int)}
+	 * sans autre memoire qu'une ligne de travail par bande : les sommes et
+	 * differences de chaque paire de lignes sont calculees sur place, puis les
+	 * debuts de lignes sont ranges par cycles de la permutation. Les lignes
+	 * sont traitees par bandes en parallele.
+	 * </p>
+	 * @param y image, remplacee par sa transformee
+	 * @param niv_resol
+	 */
+	public static void haar2D_multi(double[][] y, int niv_resol)
+	{
+		haar2D_multi_suite(y, 0, niv_resol);
+	}
+	/**
+	 * Suite en place d'une transformee de Haar multiresolution : les niveaux
+	 * niv_deja a niv_resol-1 sont appliques a une transformee qui a deja
+	 * niv_deja niveaux, avec exactement le resultat de
+	 * {@link #haar2D_multi(double[][], int)} sur l'image.
+	 * @param y transformee a niv_deja niveaux, remplacee par celle a niv_resol
+	 * @param niv_deja niveaux deja appliques
+	 * @param niv_resol
+	 */
+	public static void haar2D_multi_suite(double[][] y, int niv_deja, int niv_resol)
+	{
+		int h = y.length;
+		int w = y[0].length;
+		for(int n=niv_deja; n<niv_resol; n++){
+			int MM = (int) (h / Math.pow(2, n));
+			int NN = (int) (w / Math.pow(2, n));
+			haar2D_mono(y, MM, NN);
+		}
+	}
+	/**
+	 * Haar 2D multiresolution inverse, en place (voir {@link #haar2D_multi(double[][], int)}).
+	 * @param x transformee, remplacee par l'image reconstruite
+	 * @param niv_resol
+	 */
+	public static void haar2D_multi_inv(double[][] x, int niv_resol)
+	{
+		int h = x.length;
+		int w = x[0].length;
+		for(int n=niv_resol-1; n>-1; n--){
+			int MM = (int) (h / Math.pow(2, n));
+			int NN = (int) (w / Math.pow(2, n));
+			haar2D_mono_inv(x, MM, NN);
+		}
+	}
+	/**
+	 * Haar 2D multiresolution inverse, en place, jusqu'a l'image d'affichage.
+	 * <p>
+	 * Meme image que {@link #setPixelTab(double[][])} apres
+	 * {@link #haar2D_multi_inv(double[][], double[][], int)}, sans tableau
+	 * intermediaire : le pas vertical du dernier niveau est arrondi, sature
+	 * et ecrit directement dans le tableau d'octets de l'image, par bandes de
+	 * lignes de l'image en parallele.
+	 * </p>
+	 * @param x transformee [x][y], detruite
+	 * @param niv_resol
+	 * @return image reconstruite en niveaux de gris
+	 */
+	public static BufferedImage haar2D_multi_inv_image(final double[][] x, int niv_resol)
+	{
+		if(niv_resol<1)
+			return setPixelTab(x);
+		final int h = x.length;
+		int w = x[0].length;
+		for(int n=niv_resol-1; n>0; n--){
+			int MM = (int) (h / Math.pow(2, n));
+			int NN = (int) (w / Math.pow(2, n));
+			haar2D_mono_inv(x, MM, NN);
+		}
+		// Dernier niveau : lignes en place, colonnes vers l'image
+		final int H2 = h>>1;
+		lignesHaar(x, h, w, H2, true);
+		final int nb = nbPaires(h, w>>1);
+		BufferedImage im = new BufferedImage(h, w, BufferedImage.TYPE_BYTE_GRAY);
+		final byte[] octets = ((DataBufferByte)im.getRaster().getDataBuffer()).getData();
+		// les colonnes x de l'image au-dela des paires restent a zero
+		Parallele.pourBandes(w, Parallele.nbBandes(w, 2L*h*w), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for(int j0=debut;j0<fin;j0+=BLOC)
+					for(int i0=0;i0<nb;i0+=BLOC/2)
+					{
+						int jMax = Math.min(fin, j0+BLOC);
+						int iMax = Math.min(nb, i0+BLOC/2);
+						for(int j=j0;j<jMax;j++)
+						{
+							int k = j*h+2*i0;
+							for(int i=i0;i<iMax;i++,k+=2)
+							{
+								double s = x[i][j], d = x[i+H2][j];
+								octets[k] = versOctet(s + d);
+								octets[k+1] = versOctet(s - d);
+							}
+						}
+					}
+			}
+		});
+		return im;
+	}
+	/**
+	 * Haar 2D monoresolution directe, en place, sur le coin h x w du tableau.
+	 */
+	private static void haar2D_mono(final double[][] y, int h, final int w)
+	{
+		final int H2 = h/2;
+		int W2 = w/2;
+		// Lignes
+		lignesHaar(y, h, w, H2, false);
+		// Colonnes : paires de lignes (2i, 2i+1) -> basses en i, hautes en i+W2
+		final int nb = nbPaires(h, W2);
+		Parallele.pourBandes(nb, Parallele.nbBandes(nb, 2L*nb*w), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for(int i=debut;i<fin;i++)
+				{
+					double[] a = y[2*i], b = y[2*i+1];
+					for(int j=0;j<w;j++)
+					{
+						double s = a[j], d = b[j];
+						a[j] = (s+d)/2;
+						b[j] = (s-d)/2;
+					}
+				}
+			}
+		});
+		int[] source = new int[h];
+		Arrays.fill(source, -1);
+		for(int i=0;i<nb;i++)
+		{
+			source[i] = 2*i;
+			source[i+W2] = 2*i+1;
+		}
+		permuterDebutsLignes(y, source, w);
+	}
+	/**
+	 * Haar 2D monoresolution inverse, en place, sur le coin h x w du tableau.
+	 */
+	private static void haar2D_mono_inv(final double[][] x, int h, final int w)
+	{
+		int H2 = h>>1;
+		int W2 = w>>1;
+		// Lignes
+		lignesHaar(x, h, w, H2, true);
+		// Colonnes : basses i et hautes i+H2 ramenees en (2i, 2i+1) puis recombinees
+		final int nb = nbPaires(h, W2);
+		int[] source = new int[h];
+		Arrays.fill(source, -1);
+		for(int i=0;i<nb;i++)
+		{
+			source[2*i] = i;
+			source[2*i+1] = i+H2;
+		}
+		permuterDebutsLignes(x, source, w);
+		Parallele.pourBandes(nb, Parallele.nbBandes(nb, 2L*nb*w), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				for(int i=debut;i<fin;i++)
+				{
+					double[] a = x[2*i], b = x[2*i+1];
+					for(int j=0;j<w;j++)
+					{
+						double s = a[j], d = b[j];
+						a[j] = s + d;
+						b[j] = s - d;
+					}
+				}
+			}
+		});
+	}
+	/**
+	 * Nombre de paires de lignes transformees : i < W2, 2i+1 < h et i+W2 < h
+	 */
+	private static int nbPaires(int h, int W2)
+	{
+		int nb = 0;
+		while(nb<W2 && (2*nb+1 < h) && (nb+W2 < h))
+			nb++;
+		return nb;
+	}
+	/**
+	 * Pas horizontal de Haar (direct ou inverse) sur les w premieres valeurs des h premieres lignes
+	 */
+	private static void lignesHaar(final double[][] y, int h, final int w, final int H2, final boolean inverse)
+	{
+		Parallele.pourBandes(h, Parallele.nbBandes(h, 2L*h*w), new Parallele.Bande() {
+			public void traiter(int bande, int debut, int fin) {
+				double[] z = new double[w];
+				for(int i=debut;i<fin;i++)
+				{
+					double[] ligne = y[i];
+					Arrays.fill(z, 0);
+					for(int j=0;j<H2;j++)
+					{
+						if((2*j+1 < w)&&(j+H2 < w)){
+							if(inverse){
+								z[2*j] = ligne[j] + ligne[j+H2];
+								z[2*j+1] = ligne[j] - ligne[j+H2];
+							}else{
+								z[j] = (ligne[2*j]+ligne[2*j+1])/2;
+								z[j+H2] = (ligne[2*j]-ligne[2*j+1])/2;
+							}
+						}
+					}
+					System.arraycopy(z, 0, ligne, 0, w);
+				}
+			}
+		});
+	}
+	/**
+	 * Le debut (w valeurs) de chaque ligne r recoit celui de la ligne source[r],
+	 * ou des zeros si source[r] &lt; 0. Les sources sont distinctes.
+	 * <p>
+	 * Les chaines de la permutation sont parcourues depuis une ligne qui n'est
+	 * la source d'aucune autre, les cycles avec une seule ligne de travail.
+	 * </p>
+	 */
+	private static void permuterDebutsLignes(double[][] y, int[] source, int w)
+	{
+		int h = source.length;
+		boolean[] estSource = new boolean[h];
+		for(int r=0;r<h;r++)
+			if(source[r]>=0)
+				estSource[source[r]] = true;
+		boolean[] faite = new boolean[h];
+		// chaines
+		for(int r=0;r<h;r++)
+		{
+			if(source[r]<0 || estSource[r])
+				continue;
+			int d = r;
+			while(source[d]>=0 && !faite[d])
+			{
+				System.arraycopy(y[source[d]], 0, y[d], 0, w);
+				faite[d] = true;
+				d = source[d];
+			}
+		}
+		// cycles
+		double[] tampon = null;
+		for(int r=0;r<h;r++)
+		{
+			if(faite[r] || source[r]<0)
+				continue;
+			faite[r] = true;
+			if(source[r]==r)
+				continue;
+			if(tampon==null)
+				tampon = new double[w];
+			System.arraycopy(y[r], 0, tampon, 0, w);
+			int d = r;
+			while(source[d]!=r)
+			{
+				System.arraycopy(y[source[d]], 0, y[d], 0, w);
+				d = source[d];
+				faite[d] = true;
+			}
+			System.arraycopy(tampon, 0, y[d], 0, w);
+		}
+		for(int r=0;r<h;r++)
+			if(source[r]<0)
+				Arrays.fill(y[r], 0, w, 0);
+	}
+
+	/**
+	 * Haar 2D multiresolution directe sur un plan de coefficients, en place.
+	 * <p>
+	 * Donne le meme resultat que {@link #haar2D_multi(double[][], double[][], int)}
+	 * mais sans copie de l'image a chaque niveau. Le plan est lu et ecrit par
+	 * lignes croissantes : avec un {@link compression.PlanCoefficientsTampon}, les
+	 * images plus grandes que le tas sont transformees en flux.
+	 * </p>
+	 * @param y plan contenant l'image, remplace par sa transformee
+	 * @param niv_resol
+	 * @throws IOException
+	 */
+	public static void haar2D_multi(PlanCoefficients y, int niv_resol) throws IOException
+	{
+		int h = y.hauteur();
+		int w = y.largeur();
+		for(int n=0; n<niv_resol; n++){
+			int MM = (int) (h / Math.pow(2, n));
+			int NN = (int) (w / Math.pow(2, n));
+			haar2D_mono(y, MM, NN);
+		}
+	}
+	/**
+	 * Haar 2D multiresolution inverse sur un plan de coefficients, en place.
+	 * @param x plan contenant la transformee, remplace par l'image reconstruite
+	 * @param niv_resol
+	 * @throws IOException
+	 */
+	public static void haar2D_multi_inv(PlanCoefficients x, int niv_resol) throws IOException
+	{
+		int h = x.hauteur();
+		int w = x.largeur();
+		for(int n=niv_resol-1; n>-1; n--){
+			int MM = (int) (h / Math.pow(2, n));
+			int NN = (int) (w / Math.pow(2, n));
+			haar2D_mono_inv(x, MM, NN);
+		}
+	}
+	/**
+	 * Haar 2D monoresolution directe, en place, sur le coin superieur gauche h x w du plan.
+	 * <p>
+	 * Les lignes de hautes frequences verticales sont mises de cote dans un plan
+	 * de travail car elles ecrasent des lignes non encore lues.
+	 * </p>
+	 */
+	private static void haar2D_mono(PlanCoefficients y, int h, int w) throws IOException
+	{
+		int W2 = w/2;
+		int H2 = h/2;
+		double[] ligne = new double[y.largeur()];
+		double[] ligne2 = new double[y.largeur()];
+		double[] z = new double[w];
+		//Lignes
+		for(int i=0; i<h; i++)
+		{
+			y.lireLigne(i, ligne);
+			Arrays.fill(z, 0);
+			for(int j=0;j<H2;j++)
+			{
+				if((2*j+1 < w)&&(j+H2 < w)){
+					z[j] = (ligne[2*j]+ligne[2*j+1])/2;
+					z[j+H2] = (ligne[2*j]-ligne[2*j+1])/2;
+				}
+			}
+			System.arraycopy(z, 0, ligne, 0, w);
+			y.ecrireLigne(i, ligne);
+		}
+		//Colonnes
+		int nb = 0;
+		while(nb<W2 && (2*nb+1 < h) && (nb+W2 < h))
+			nb++;
+		boolean[] ecrite = new boolean[h];
+		PlanCoefficients hautes = y.creerSimilaire(Math.max(1, nb), y.largeur());
+		try {
+			for(int i=0;i<nb;i++)
+			{
+				y.lireLigne(2*i, ligne);
+				y.lireLigne(2*i+1, ligne2);
+				for(int j=0;j<w;j++)
+				{
+					double a = ligne[j], b = ligne2[j];
+					ligne2[j] = (a-b)/2;
+					z[j] = (a+b)/2;
+				}
+				hautes.ecrireLigne(i, ligne2);
+				ecrireDebutLigne(y, i, z, w, ligne);
+				ecrite[i] = true;
+			}
+			for(int i=0;i<h;i++)
+			{
+				if(ecrite[i])
+					continue;
+				if(i>=W2 && i-W2<nb)
+					hautes.lireLigne(i-W2, ligne2);
+				else
+					Arrays.fill(ligne2, 0, w, 0);
+				ecrireDebutLigne(y, i, ligne2, w, ligne);
+			}
+		} finally {
+			hautes.close();
+		}
+	}
+	/**
+	 * Haar 2D monoresolution inverse, en place, sur le coin superieur gauche h x w du plan.
+	 * <p>
+	 * Les lignes de basses frequences verticales sont mises de cote dans un plan
+	 * de travail car elles sont ecrasees avant d'etre lues.
+	 * </p>
+	 */
+	private static void haar2D_mono_inv(PlanCoefficients x, int h, int w) throws IOException
+	{
+		int W2 = w>>1;
+		int H2 = h>>1;
+		double[] ligne = new double[x.largeur()];
+		double[] ligne2 = new double[x.largeur()];
+		double[] z = new double[w];
+		//Lignes
+		for(int i=0; i<h; i++)
+		{
+			x.lireLigne(i, ligne);
+			Arrays.fill(z, 0);
+			for(int j=0;j<H2;j++)
+			{
+				if(((2*j+1) < w) && ((j+H2) < w)){
+					z[2*j] = ligne[j] + ligne[j+H2];
+					z[2*j+1] = ligne[j] - ligne[j+H2];
+				}
+			}
+			System.arraycopy(z, 0, ligne, 0, w);
+			x.ecrireLigne(i, ligne);
+		}
+		//Colonnes
+		int nb = 0;
+		while(nb<W2 && ((2*nb+1) < h) && ((nb+W2) < h))
+			nb++;
+		boolean[] ecrite = new boolean[h];
+		PlanCoefficients basses = x.creerSimilaire(Math.max(1, nb), x.largeur());
+		try {
+			for(int i=0;i<nb;i++)
+			{
+				x.lireLigne(i, ligne);
+				basses.ecrireLigne(i, ligne);
+			}
+			for(int i=0;i<nb;i++)
+			{
+				basses.lireLigne(i, ligne);
+				x.lireLigne(i+H2, ligne2);
+				for(int j=0;j<w;j++)
+				{
+					double a = ligne[j], b = ligne2[j];
+					ligne2[j] = a - b;
+					z[j] = a + b;
+				}
+				ecrireDebutLigne(x, 2*i, z, w, ligne);
+				ecrireDebutLigne(x, 2*i+1, ligne2, w, ligne);
+				ecrite[2*i] = true;
+				ecrite[2*i+1] = true;
+			}
+			for(int i=0;i<h;i++)
+			{
+				if(ecrite[i])
+					continue;
+				x.lireLigne(i, ligne);
+				Arrays.fill(ligne, 0, w, 0);
+				x.ecrireLigne(i, ligne);
+			}
+		} finally {
+			basses.close();
+		}
+	}
+	/**
+	 * Remplace les w premieres valeurs de la ligne i du plan.
+	 * @param p plan
+	 * @param i ligne
+	 * @param valeurs nouvelles valeurs
+	 * @param w nombre de valeurs
+	 * @param tampon ligne de travail de taille p.largeur()
+	 */
+	private static void ecrireDebutLigne(PlanCoefficients p, int i, double[] valeurs, int w, double[] tampon)
+	{
+		p.lireLigne(i, tampon);
+		System.arraycopy(valeurs, 0, tampon, 0, w);
+		p.ecrireLigne(i, tampon);
+	}
+
+	/**
+	 * COULEUR
+	 */
+
+	/**
+	 * Composantes couleur d'une image, [x][y] comme {@link #getPixelTab(BufferedImage)}.
+	 * <p>
+	 * En YCbCr la luminance garde la dynamique 0..255 des images en niveaux de
+	 * gris et les chrominances sont centrees sur zero. La RCT donne des
+	 * composantes entieres et se retourne exactement.
+	 * </p>
+	 * @param im image couleur (tout type)
+	 * @param espace CodageZTWCouleur.ESPACE_YCBCR ou ESPACE_RCT
+	 * @param sousEchChroma vrai pour des chrominances sous-echantillonnees 4:2:0
+	 * @return luminance et deux chrominances
+	 */
+	public static double[][][] composantesCouleur(BufferedImage im, int espace, boolean sousEchChroma)
+	{
+		int w = im.getWidth();
+		int h = im.getHeight();
+		double[][] lum = new double[w][h];
+		double[][] cb = new double[w][h];
+		double[][] cr = new double[w][h];
+		int[] argb = new int[w];
+		for(int y=0;y<h;y++)
+		{
+			im.getRGB(0, y, w, 1, argb, 0, w);
+			for(int x=0;x<w;x++)
+			{
+				int p = argb[x];
+				int r = (p>>16)&0xFF, g = (p>>8)&0xFF, b = p&0xFF;
+				if(espace == CodageZTWCouleur.ESPACE_RCT)
+				{
+					lum[x][y] = (r+2*g+b)>>2;
+					cb[x][y] = b-g;
+					cr[x][y] = r-g;
+				}
+				else
+				{
+					lum[x][y] = 0.299*r + 0.587*g + 0.114*b;
+					cb[x][y] = -0.168736*r - 0.331264*g + 0.5*b;
+					cr[x][y] = 0.5*r - 0.418688*g - 0.081312*b;
+				}
+			}
+		}
+		if(sousEchChroma)
+		{
+			cb = sousEchantillonner(cb);
+			cr = sousEchantillonner(cr);
+		}
+		return new double[][][] { lum, cb, cr };
+	}
+
+	/**
+	 * Image couleur a partir de ses composantes, [x][y].
+	 * <p>
+	 * Des chrominances plus petites que la luminance (4:2:0) sont
+	 * reechantillonnees par duplication. Les valeurs sont arrondies et saturees
+	 * sur 0..255.
+	 * </p>
+	 * @param composantes luminance et deux chrominances
+	 * @param espace CodageZTWCouleur.ESPACE_YCBCR ou ESPACE_RCT
+	 * @return image TYPE_INT_RGB
+	 */
+	public static BufferedImage imageCouleur(double[][][] composantes, int espace)
+	{
+		double[][] lum = composantes[0];
+		double[][] cb = composantes[1];
+		double[][] cr = composantes[2];
+		int w = lum.length;
+		int h = lum[0].length;
+		BufferedImage im = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		int[] dst = ((DataBufferInt)im.getRaster().getDataBuffer()).getData();
+		int cw = cb.length;
+		int ch = cb[0].length;
+		for(int y=0;y<h;y++)
+		{
+			int yc = (int)((long)y*ch/h);
+			for(int x=0;x<w;x++)
+			{
+				int xc = (int)((long)x*cw/w);
+				double l = lum[x][y], u = cb[xc][yc], v = cr[xc][yc];
+				int r, g, b;
+				if(espace == CodageZTWCouleur.ESPACE_RCT)
+				{
+					int li = (int)Math.round(l), ui = (int)Math.round(u), vi = (int)Math.round(v);
+					g = li - ((ui+vi)>>2);
+					r = vi + g;
+					b = ui + g;
+				}
+				else
+				{
+					r = (int)Math.round(l + 1.402*v);
+					g = (int)Math.round(l - 0.344136*u - 0.714136*v);
+					b = (int)Math.round(l + 1.772*u);
+				}
+				dst[y*w+x] = (saturer(r)<<16) | (saturer(g)<<8) | saturer(b);
+			}
+		}
+		return im;
+	}
+
+	private static int saturer(int v)
+	{
+		return v < 0 ? 0 : (v > 255 ? 255 : v);
+	}
+
+	/**
+	 * Sous-echantillonnage 2x2 par la moyenne (les bords impairs sont moyennes
+	 * sur les pixels existants).
+	 * @param x composante [x][y]
+	 * @return composante de taille ((w+1)/2, (h+1)/2)
+	 */
+	public static double[][] sousEchantillonner(double[][] x)
+	{
+		int w = x.length;
+		int h = x[0].length;
+		int w2 = (w+1)/2;
+		int h2 = (h+1)/2;
+		double[][] y = new double[w2][h2];
+		for(int i=0;i<w2;i++)
+			for(int j=0;j<h2;j++)
+			{
+				double somme = 0;
+				int n = 0;
+				for(int di=0;di<2 && 2*i+di<w;di++)
+					for(int dj=0;dj<2 && 2*j+dj<h;dj++)
+					{
+						somme += x[2*i+di][2*j+dj];
+						n++;
+					}
+				y[i][j] = somme/n;
+			}
+		return y;
+	}
+
+	/**
+	 * Haar 2D multiresolution des composantes d'une image couleur, en place,
+	 * une composante par thread.
+	 * @param x composantes, remplacees par leurs transformees
+	 * @param niv_resol niveaux de resolution de chaque composante
+	 * @return x
+	 */
+	public static double[][][] haar2D_composantes(final double[][][] x, final int[] niv_resol)
+	{
+		Parallele.pourChaque(x.length, new Parallele.Tache() {
+			public void executer(int c) {
+				haar2D_multi(x[c], niv_resol[c]);
+			}
+		});
+		return x;
+	}
+
+	/**
+	 * Haar 2D multiresolution inverse des composantes d'une image couleur, en
+	 * place, une composante par thread.
+	 * @param x composantes transformees, remplacees par les composantes
+	 *            reconstruites
+	 * @param niv_resol niveaux de resolution de chaque composante
+	 * @return x
+	 */
+	public static double[][][] haar2D_composantes_inv(final double[][][] x, final int[] niv_resol)
+	{
+		Parallele.pourChaque(x.length, new Parallele.Tache() {
+			public void executer(int c) {
+				haar2D_multi_inv(x[c], niv_resol[c]);
+			}
+		});
+		return x;
+	}
+
+	/**
+	 * Niveaux de resolution des composantes : un niveau de moins pour des
+	 * chrominances sous-echantillonnees, qui gardent ainsi une sous-bande basses
+	 * frequences de la taille de celle de la luminance.
+	 * @param niv_resol niveaux de resolution de la luminance
+	 * @param sousEchChroma vrai si les chrominances sont sous-echantillonnees
+	 * @return niveaux de resolution des trois composantes
+	 */
+	public static int[] niveauxComposantes(int niv_resol, boolean sousEchChroma)
+	{
+		int nc = sousEchChroma ? Math.max(1, niv_resol-1) : niv_resol;
+		return new int[] { niv_resol, nc, nc };
+	}
 
 }
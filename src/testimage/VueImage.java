@@ -0,0 +1,302 @@
+package testimage;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Vue d'une image avec zoom et deplacement, a placer dans un JScrollPane.
+ *
+ * <p>
+ * L'image agrandie ou reduite est decoupee en tuiles de {@link #TUILE} pixels
+ * d'ecran, rendues a la demande dans des images accelerees (VolatileImage) et
+ * gardees dans un cache LRU : un affichage ne redessine que les tuiles
+ * visibles, en les copiant depuis le cache, et seules les tuiles absentes ou
+ * perdues par la carte graphique sont recalculees depuis l'image.
+ * </p>
+ *
+ * <p>
+ * Le facteur de zoom est une puissance de 2, de 1/16 a 16 : une tuile couvre
+ * alors un nombre entier de pixels de l'image. La molette zoome autour du
+ * pointeur, le glisser de la souris deplace la vue.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class VueImage extends JComponent {
+
+	private static final long serialVersionUID = -2514896372031447705L;
+
+	/**
+	 * Cote des tuiles, en pixels d'ecran
+	 */
+	static final int TUILE = 256;
+
+	/**
+	 * Nombre de tuiles gardees en cache : 64 Mo de memoire video au plus, a 4
+	 * octets par pixel
+	 */
+	private static final int MAX_TUILES = 256;
+
+	/**
+	 * Bornes de l'exposant du zoom
+	 */
+	private static final int ZOOM_MIN = -4, ZOOM_MAX = 4;
+
+	private BufferedImage image;
+
+	/**
+	 * Zoom : 2^niveau pixels d'ecran par pixel de l'image
+	 */
+	private int niveau;
+
+	/**
+	 * Tuiles rendues, par cle (niveau, colonne, ligne), de la moins a la plus
+	 * recemment affichee
+	 */
+	private final LinkedHashMap<Long, VolatileImage> tuiles = new LinkedHashMap<Long, VolatileImage>(
+			64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Long, VolatileImage> e) {
+			if (size() <= MAX_TUILES)
+				return false;
+			e.getValue().flush();
+			return true;
+		}
+	};
+
+	public VueImage(BufferedImage image) {
+		this.image = image;
+		setOpaque(true);
+		setBackground(Color.black);
+		MouseAdapter souris = new MouseAdapter() {
+			private Point depart;
+
+			public void mousePressed(MouseEvent e) {
+				depart = e.getLocationOnScreen();
+			}
+
+			public void mouseDragged(MouseEvent e) {
+				if (depart == null)
+					return;
+				Point p = e.getLocationOnScreen();
+				deplacer(depart.x - p.x, depart.y - p.y);
+				depart = p;
+			}
+
+			public void mouseReleased(MouseEvent e) {
+				depart = null;
+			}
+
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				zoomer(niveau - e.getWheelRotation(), e.getPoint());
+			}
+		};
+		addMouseListener(souris);
+		addMouseMotionListener(souris);
+		addMouseWheelListener(souris);
+	}
+
+	/**
+	 * Remplace l'image : le cache est vide, le zoom conserve.
+	 * @param image nouvelle image
+	 */
+	public void setImage(BufferedImage image) {
+		boolean memeTaille = this.image != null && image != null
+				&& this.image.getWidth() == image.getWidth()
+				&& this.image.getHeight() == image.getHeight();
+		this.image = image;
+		viderCache();
+		if (!memeTaille)
+			revalidate();
+		repaint();
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @return facteur de zoom, pixels d'ecran par pixel de l'image
+	 */
+	public double getZoom() {
+		return Math.pow(2, niveau);
+	}
+
+	/**
+	 * Change le zoom en gardant fixe le point de l'image sous un point de la
+	 * vue.
+	 * @param nouveau exposant du zoom, ramene a [-4, 4]
+	 * @param fixe point de la vue (coordonnees du composant)
+	 */
+	public void zoomer(int nouveau, Point fixe) {
+		nouveau = Math.max(ZOOM_MIN, Math.min(ZOOM_MAX, nouveau));
+		if (nouveau == niveau)
+			return;
+		JViewport vue = viewport();
+		Point visible = vue == null ? new Point() : vue.getViewPosition();
+		double rapport = Math.pow(2, nouveau - niveau);
+		niveau = nouveau;
+		revalidate();
+		if (vue != null) {
+			// le point fixe garde sa place a l'ecran
+			Dimension taille = getPreferredSize();
+			Dimension ecran = vue.getExtentSize();
+			int x = (int) Math.round(fixe.x * rapport) - (fixe.x - visible.x);
+			int y = (int) Math.round(fixe.y * rapport) - (fixe.y - visible.y);
+			x = Math.max(0, Math.min(x, taille.width - ecran.width));
+			y = Math.max(0, Math.min(y, taille.height - ecran.height));
+			setSize(taille);
+			vue.setViewPosition(new Point(x, y));
+		}
+		repaint();
+	}
+
+	/**
+	 * Deplace la partie visible de l'image.
+	 * @param dx deplacement horizontal, en pixels d'ecran
+	 * @param dy deplacement vertical
+	 */
+	void deplacer(int dx, int dy) {
+		JViewport vue = viewport();
+		if (vue == null)
+			return;
+		Dimension taille = getSize();
+		Dimension ecran = vue.getExtentSize();
+		Point p = vue.getViewPosition();
+		int x = Math.max(0, Math.min(p.x + dx, taille.width - ecran.width));
+		int y = Math.max(0, Math.min(p.y + dy, taille.height - ecran.height));
+		vue.setViewPosition(new Point(x, y));
+	}
+
+	private JViewport viewport() {
+		return (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class,
+				this);
+	}
+
+	/**
+	 * Libere les tuiles en memoire video.
+	 */
+	void viderCache() {
+		for (Iterator<VolatileImage> it = tuiles.values().iterator(); it
+				.hasNext();)
+			it.next().flush();
+		tuiles.clear();
+	}
+
+	public void removeNotify() {
+		viderCache();
+		super.removeNotify();
+	}
+
+	public Dimension getPreferredSize() {
+		if (image == null)
+			return new Dimension(0, 0);
+		return new Dimension(echelle(image.getWidth()),
+				echelle(image.getHeight()));
+	}
+
+	/**
+	 * @param n longueur dans l'image
+	 * @return longueur a l'ecran, au moins 1 pixel
+	 */
+	private int echelle(int n) {
+		return Math.max(1, niveau >= 0 ? n << niveau : n >> -niveau);
+	}
+
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(getSize());
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		if (image == null)
+			return;
+		Dimension taille = getPreferredSize();
+		int c0 = clip.x / TUILE, l0 = clip.y / TUILE;
+		int c1 = Math.min(clip.x + clip.width, taille.width - 1) / TUILE;
+		int l1 = Math.min(clip.y + clip.height, taille.height - 1) / TUILE;
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		for (int l = l0; l <= l1; l++)
+			for (int c = c0; c <= c1; c++) {
+				if (gc == null) {
+					// hors ecran : dessin direct
+					dessinerTuile((Graphics2D) g, c, l, c * TUILE, l * TUILE);
+					continue;
+				}
+				VolatileImage t;
+				do {
+					t = tuile(gc, c, l);
+					g.drawImage(t, c * TUILE, l * TUILE, null);
+				} while (t.contentsLost());
+			}
+	}
+
+	/**
+	 * Tuile du cache, rendue si elle est absente, perdue ou incompatible avec
+	 * l'ecran.
+	 */
+	private VolatileImage tuile(GraphicsConfiguration gc, int c, int l) {
+		Long cle = Long.valueOf(((long) (niveau - ZOOM_MIN) << 56)
+				| ((long) c << 28) | l);
+		VolatileImage t = tuiles.get(cle);
+		int etat = t == null ? VolatileImage.IMAGE_INCOMPATIBLE : t
+				.validate(gc);
+		if (etat == VolatileImage.IMAGE_INCOMPATIBLE) {
+			if (t != null)
+				t.flush();
+			t = gc.createCompatibleVolatileImage(TUILE, TUILE);
+			tuiles.put(cle, t);
+			etat = VolatileImage.IMAGE_RESTORED;
+		}
+		if (etat == VolatileImage.IMAGE_RESTORED) {
+			Graphics2D g = t.createGraphics();
+			g.setColor(getBackground());
+			g.fillRect(0, 0, TUILE, TUILE);
+			dessinerTuile(g, c, l, 0, 0);
+			g.dispose();
+		}
+		return t;
+	}
+
+	/**
+	 * Dessine la partie de l'image couverte par une tuile.
+	 * @param g destination
+	 * @param c colonne de la tuile
+	 * @param l ligne de la tuile
+	 * @param x abscisse de la tuile dans g
+	 * @param y ordonnee de la tuile dans g
+	 */
+	private void dessinerTuile(Graphics2D g, int c, int l, int x, int y) {
+		// une tuile couvre TUILE / 2^niveau pixels de l'image, un nombre
+		// entier pour les zooms de 1/16 a 16
+		int cote = niveau >= 0 ? TUILE >> niveau : TUILE << -niveau;
+		int sx0 = c * cote, sy0 = l * cote;
+		int sx1 = Math.min(image.getWidth(), sx0 + cote);
+		int sy1 = Math.min(image.getHeight(), sy0 + cote);
+		// agrandi : pixels visibles ; reduit : interpolation
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				niveau >= 0 ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+						: RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(image, x, y, x + echelle(sx1 - sx0), y
+				+ echelle(sy1 - sy0), sx0, sy0, sx1, sy1, null);
+	}
+}
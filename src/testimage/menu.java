@@ -14,6 +14,10 @@ import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -25,11 +29,16 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.TitledBorder;
 
 import compression.CodageZTW;
+import compression.CodageZTWCouleur;
+import compression.SuiviCodage;
 
 /**
  * <p>
@@ -66,8 +75,26 @@ public class menu extends JFrame {
 	private Image imageOri;
 	private BufferedImage bufIm;
 	private BufferedImage modifIm;
+	/**
+	 * Image d'affichage de erreur, construite a la premiere demande (voir
+	 * imageErreur()) : module des coefficients ou valeurs saturees
+	 */
 	private BufferedImage erreurIm;
+	private boolean erreurModule;
 	double[][] erreur;
+	/**
+	 * Mode couleur : image source, composantes transformees et leurs niveaux de resolution
+	 */
+	private BufferedImage couleurIm;
+	double[][][] composantes;
+	int[] nivComposantes;
+	int espaceCouleur = CodageZTWCouleur.ESPACE_YCBCR;
+	/**
+	 * Transformees deja calculees de l'image originale, par niveaux de
+	 * resolution
+	 */
+	final CacheTransformees cacheTransformees = new CacheTransformees(
+			CacheTransformees.capaciteParDefaut());
 	/**
 	 * Infos image originale
 	 */
@@ -107,6 +134,7 @@ public class menu extends JFrame {
 	JButton jButtonOpenBitstream = new JButton();
 	JButton jButtonQuit = new JButton();
 	JButton jButHisto = new JButton();
+	JButton jButQualite = new JButton();
 	JButton jButtonTransformee = new JButton();
 	JButton jButtonTransInverse = new JButton();
 	JButton jButtonCodage = new JButton();
@@ -115,6 +143,12 @@ public class menu extends JFrame {
 	JButton BAffichErreur = new JButton();
 	JButton BAffichModif = new JButton();
 	JButton JButModifFen = new JButton();
+	JButton jButtonAnnuler = new JButton();
+	/**
+	 * UI ini : progression du traitement en cours
+	 */
+	JProgressBar jProgress = new JProgressBar();
+	private Tache tache;
 	/**
 	 * UI ini : TextField champs de texte
 	 */
@@ -140,6 +174,11 @@ public class menu extends JFrame {
 	JComboBox<String> jComboTransformee = new JComboBox<String>();
 	JComboBox<Integer> jComboNivResolution = new JComboBox<Integer>();
 	JComboBox<Integer> jComboTauxCompression = new JComboBox<Integer>();
+	/**
+	 * UI ini : cases a cocher
+	 */
+	JCheckBox jCheckCouleur = new JCheckBox();
+	JCheckBox jCheckChroma = new JCheckBox();
 	/**
 	 * UI ini : Panel et Box conteneurs
 	 */
@@ -150,6 +189,7 @@ public class menu extends JFrame {
 	Box hBoxT2 = Box.createHorizontalBox();
 	Box hBoxS1 = Box.createHorizontalBox();
 	Box vBoxFiles = Box.createVerticalBox();
+	Box hBoxProgres = Box.createHorizontalBox();
 	Box vBox = Box.createVerticalBox();
 
 	/**
@@ -253,6 +293,10 @@ public class menu extends JFrame {
 		jLabelTransformee.setMaximumSize(jLabelTransformee.getPreferredSize());
 		jLabelTauxComp.setMaximumSize(jLabelTauxComp.getPreferredSize());
 		jLabelHeight.setText("H = ");
+		jCheckCouleur.setText("Couleur");
+		jCheckCouleur.setToolTipText("Coder les trois composantes YCbCr (effet a l'ouverture de l'image)");
+		jCheckChroma.setText("Chroma 4:2:0");
+		jCheckChroma.setToolTipText("Sous-echantillonner les chrominances");
 		jLabelWidth.setText("W = ");
 		/**
 		 * UI elements : boutons
@@ -298,6 +342,22 @@ public class menu extends JFrame {
 				public void actionPerformed(ActionEvent e) {
 					jButtonDecodage_actionPerformed(e);
 				}});
+		jButQualite.setText("Mesurer qualite");
+		jButQualite.setToolTipText("EQM, PSNR et SSIM de l'image reconstituee par rapport a l'originale");
+		jButQualite.addActionListener(new java.awt.event.ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					jButQualite_actionPerformed(e);
+				}});
+		
+		jButtonAnnuler.setText("Annuler");
+		jButtonAnnuler.setEnabled(false);
+		jButtonAnnuler.addActionListener(new java.awt.event.ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					if (tache != null)
+						tache.annuler();
+				}});
+		jProgress.setStringPainted(true);
+		jProgress.setString("");
 		
 		fieldHeight.setEnabled(true);
 		fieldWidth.setEnabled(true);
@@ -342,6 +402,9 @@ public class menu extends JFrame {
 		hBoxT1.add(jLabelTauxComp);
 		hBoxT1.add(jComboTauxCompression);
 		hBoxT1.add(Box.createVerticalStrut(10));
+		hBoxT1.add(jCheckCouleur);
+		hBoxT1.add(jCheckChroma);
+		hBoxT1.add(Box.createVerticalStrut(10));
 		/**
 		 * UI Bot et Top
 		 */
@@ -357,10 +420,16 @@ public class menu extends JFrame {
 		hBoxTop2.add(jButtonOpenBitstream);
 		hBoxTop2.add(jButtonDecodage);
 		hBoxTop2.add(jButtonTransInverse);
+		hBoxTop2.add(jButQualite);
 		hBoxTop2.add(jButHisto);
 		hBoxTop2.add(Box.createVerticalStrut(10));
 		hBoxTop2.setMaximumSize(hBoxTop2.getPreferredSize());
 		
+		hBoxProgres.add(Box.createVerticalStrut(10));
+		hBoxProgres.add(jProgress);
+		hBoxProgres.add(jButtonAnnuler);
+		hBoxProgres.add(Box.createVerticalStrut(10));
+		
 		hBoxBot.add(jButtonQuit);
 		/**
 		 * UI globale : Assemblage des Panels et Boxs
@@ -372,6 +441,7 @@ public class menu extends JFrame {
 		vBox.add(Box.createGlue());
 		vBox.add(hBoxT1);
 		vBox.add(Box.createGlue());
+		vBox.add(hBoxProgres);
 		vBox.add(hBoxBot);
 		this.getContentPane().add(vBox);
 	}
@@ -533,8 +603,8 @@ public class menu extends JFrame {
 		JFileChooser Ffile = new JFileChooser("./Images/");
 
 		// Filtrage type de fichier a selectionner/
-		MonFiltre mfi = new MonFiltre(new String[] { "gif", "jpg" },
-				"les fichiers image (*.gif, *.jpg)");
+		MonFiltre mfi = new MonFiltre(new String[] { "gif", "jpg", "jpeg", "bmp", "pgm", "ppm" },
+				"les fichiers image (*.gif, *.jpg, *.bmp, *.pgm, *.ppm)");
 		Ffile.addChoosableFileFilter(mfi);
 		Ffile.setFileFilter(mfi);
 
@@ -663,11 +733,26 @@ public class menu extends JFrame {
 			System.out.println("Aucune selection\n");
 			return;
 		}
-		// Image d'origine
-		this.imageOri = imIO.OuvrirImage(this.pathOri);
-
-		// Image bufferisee
-		this.bufIm = TraitImage.toBufferedImage(this.imageOri);
+		// Image d'origine, decodee directement en niveaux de gris
+		// (en mode couleur, l'image couleur est gardee pour le codage)
+		this.couleurIm = null;
+		this.composantes = null;
+		cacheTransformees.vider();
+		try {
+			if (jCheckCouleur.isSelected()) {
+				this.couleurIm = imIO.OuvrirImageCouleur(this.pathOri);
+				this.bufIm = ImageIO.versGris(this.couleurIm);
+			} else {
+				this.bufIm = imIO.OuvrirImageGris(this.pathOri);
+			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(null,
+					"Impossible d'ouvrir l'image : " + e.getMessage(), "Erreur",
+					JOptionPane.ERROR_MESSAGE);
+			oriName.setText("");
+			return;
+		}
+		this.imageOri = this.bufIm;
 		fieldHeight.setText(""+bufIm.getHeight());
 		fieldWidth.setText(""+bufIm.getWidth());
 
@@ -722,8 +807,8 @@ public class menu extends JFrame {
 	 * @param niv_resolution
 	 * @param required_size
 	 */
-	public void doCodage(double[][] err, int niv_resolution,
-			int required_size) {
+	public void doCodage(final double[][] err, final int niv_resolution,
+			final int required_size) {
 		pathBitstream = "./Images/"+ nomOri + ".bitstream";
 		/**
 		 * Image to double
@@ -731,27 +816,57 @@ public class menu extends JFrame {
 		//double[][] transIm = new double[Itrans.getHeight()][Itrans.getWidth()];
 		//transIm = TraitImage.getPixelTab(Itrans);
 
-		CodageZTW ztw = new CodageZTW();
-
-		try {
-			ztw.ztw_code(err, err.length, err[0].length,
-					niv_resolution, required_size, pathBitstream);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		if (composantes != null) {
+			doCodageCouleur(required_size);
+			return;
 		}
-		
-		// Generer l'image d'erreur
-		double[][] erreurAbs = new double[erreur.length][erreur[0].length];
-		for (int i = 0; i < erreurAbs.length; i++)
-			for (int j = 0; j < erreurAbs[0].length; j++) {
-				/*
-				 * if (erreur[i][j]<0) System.out.println(erreur[i][j]+" ");
-				 */
-				erreurAbs[i][j] = Math.abs(erreur[i][j]);
+		final String chemin = pathBitstream;
+		// Le codage modifie le plan : on code une copie, qui ne remplace le
+		// plan courant qu'a la fin d'un codage abouti (annule ou en echec, le
+		// codage laisse l'etat precedent)
+		final double[][] copie = new double[err.length][];
+		for (int i = 0; i < copie.length; i++)
+			copie[i] = err[i].clone();
+		lancer(new Tache("Codage", required_size * 1000L) {
+			void calculer() throws IOException {
+				CodageZTW ztw = new CodageZTW();
+				ztw.setSuivi(this);
+				ztw.ztw_code(copie, copie.length, copie[0].length,
+						niv_resolution, required_size, chemin);
+			}
+
+			void appliquer() {
+				// Image d'erreur : la transformee modifiee par le codage
+				erreur = copie;
+				erreurIm = null;
+				erreurModule = true;
+			}
+		});
+	}
 
+	/**
+	 * Codage ztw des trois composantes, entrelacees dans un seul flux
+	 * @param required_size
+	 */
+	void doCodageCouleur(final int required_size) {
+		// Le codage modifie les composantes : on code une copie pour garder
+		// la transformee affichee et inversible
+		final double[][][] copie = new double[composantes.length][][];
+		for (int c = 0; c < copie.length; c++) {
+			copie[c] = new double[composantes[c].length][];
+			for (int i = 0; i < copie[c].length; i++)
+				copie[c][i] = composantes[c][i].clone();
+		}
+		final int[] niv = nivComposantes;
+		final int espace = espaceCouleur;
+		final String chemin = pathBitstream;
+		lancer(new Tache("Codage", required_size * 1000L) {
+			void calculer() throws IOException {
+				CodageZTWCouleur ztw = new CodageZTWCouleur();
+				ztw.setSuivi(this);
+				ztw.ztw_code(copie, niv, espace, required_size, chemin);
 			}
-		erreurIm = TraitImage.setPixelTab(erreurAbs);
+		});
 	}
 
 	/**
@@ -759,68 +874,197 @@ public class menu extends JFrame {
 	 * @param path
 	 * @param niv_resolution
 	 */
-	void doDecodage(String path, int height, int width, int niv_resolution) {
+	void doDecodage(String path, final int height, final int width,
+			final int niv_resolution) {
+		final String chemin = pathBitstream;
 		
-		erreur = new double[height][width];
-		CodageZTW ztw = new CodageZTW();
+		if (CodageZTWCouleur.estFluxCouleur(chemin)) {
+			// Flux couleur : dimensions et niveaux sont lus dans l'entete
+			lancer(new Tache("Decodage", new File(chemin).length()) {
+				double[][][] comp;
+				int[] niv;
+				int espace;
 
-		try {
-			ztw.ztw_decode(erreur, erreur.length, erreur[0].length, niv_resolution, pathBitstream);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+				void calculer() throws IOException {
+					CodageZTWCouleur ztw = new CodageZTWCouleur();
+					ztw.setSuivi(this);
+					comp = ztw.ztw_decode(chemin);
+					niv = ztw.niveaux();
+					espace = ztw.espace();
+				}
+
+				void appliquer() {
+					composantes = comp;
+					nivComposantes = niv;
+					espaceCouleur = espace;
+					erreur = composantes[0];
+					erreurIm = null;
+					erreurModule = false;
+				}
+			});
+			return;
 		}
-		/**
-		 * double to Image
-		 */
-		
-		erreurIm = TraitImage.setPixelTab(erreur);
-		
+		// Flux en niveaux de gris : le flux etant imbrique, chaque passe
+		// decodee affine l'image reconstituee, affichee au fil du decodage
+		lancer(new Tache("Decodage", new File(chemin).length()) {
+			double[][] plan;
+			/**
+			 * Copie du plan reconstruite a chaque image, reutilisee
+			 */
+			double[][] copie;
+			BufferedImage finale;
+			/**
+			 * Date (ns) avant laquelle aucune image n'est reconstruite : au
+			 * plus une par rafraichissement de l'ecran, et pas plus souvent
+			 * que ne dure une reconstruction
+			 */
+			long prochaine;
+			final long intervalle = CadreImage.intervalleRafraichissement();
+			/**
+			 * Image pas encore affichee : tant qu'elle n'a pas ete prise par
+			 * le thread de l'interface, les passes suivantes n'en construisent
+			 * pas d'autre
+			 */
+			final AtomicReference<BufferedImage> enAttente = new AtomicReference<BufferedImage>();
+			boolean cadreOuvert;
+
+			void calculer() throws IOException {
+				plan = new double[height][width];
+				copie = new double[height][width];
+				CodageZTW ztw = new CodageZTW();
+				ztw.setSuivi(this);
+				ztw.ztw_decode(plan, plan.length, plan[0].length, niv_resolution, chemin);
+				finale = ChaineCodage.reconstruire(copier(plan, copie), niv_resolution);
+			}
+
+			/**
+			 * Appelee entre deux passes, sur le thread du decodage : le plan
+			 * n'est pas modifie pendant sa copie
+			 */
+			public void passe(final int numero, long octets, double seuil) {
+				super.passe(numero, octets, seuil);
+				long debut = System.nanoTime();
+				if (debut < prochaine || enAttente.get() != null || estAnnule())
+					return;
+				enAttente.set(ChaineCodage.reconstruire(copier(plan, copie),
+						niv_resolution));
+				long fin = System.nanoTime();
+				prochaine = fin + Math.max(intervalle, fin - debut);
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						BufferedImage im = enAttente.getAndSet(null);
+						if (im != null && !estAnnule() && !isDone())
+							afficherEtape(im, "decodage, passe " + numero);
+					}
+				});
+			}
+
+			void afficherEtape(BufferedImage im, String etape) {
+				String titre = "Image reconstituee : " + etape;
+				if (cadreOuvert) {
+					modifCadre.setImage(im, titre);
+				} else {
+					cadreOuvert = true;
+					modifCadre.setName("modifCadre");
+					afficherIm(im, modifCadre, titre);
+				}
+			}
+
+			void appliquer() {
+				composantes = null;
+				erreur = plan;
+				erreurIm = null;
+				erreurModule = false;
+				modifIm = finale;
+				modifName.setText("M" + oriName.getText());
+				if (cadreOuvert)
+					modifCadre.setImage(finale, "Image reconstituee : "
+							+ modifName.getText());
+			}
+		});
 	}
 	
+	/**
+	 * Copie d'un plan dans un plan de memes dimensions
+	 * @param source
+	 * @param dest
+	 * @return dest
+	 */
+	private static double[][] copier(double[][] source, double[][] dest) {
+		for (int i = 0; i < source.length; i++)
+			System.arraycopy(source[i], 0, dest[i], 0, source[i].length);
+		return dest;
+	}
+
 	/**
 	 * Transformee directe
 	 * @param Iori
 	 * @param valeur
 	 */
-	public void doTransformee(BufferedImage Iori, String transformee,
-			int niv_resolution) {
-		modifName.setText("");
-		modifCadre.dispose();
-		erreurName.setText("");
-		erreurCadre.dispose();
-
+	public void doTransformee(final BufferedImage Iori, String transformee,
+			final int niv_resolution) {
 		// ################### HAAR #######################
 		// modifIm=TraitImage.setPixelTab(donnee);
 		if (transformee.equals("Transformee en ondelettes de Haar")) {
 			System.out.println("Debut transformee en ondelettes de Haar");
 			System.out.println("Niveaux de resolution : " + niv_resolution);
 
-			// System.out.println("Chargement et centrage de l'image");
-			double[][] donnee = TraitImage.centrageImage(Iori, 0);
-			erreur = new double[donnee.length][donnee[0].length];
+			final boolean couleur = couleurIm != null && jCheckCouleur.isSelected();
+			final boolean sousEch = jCheckChroma.isSelected();
+			final BufferedImage source = couleurIm;
+			final int espace = espaceCouleur;
+			lancer(new Tache("Transformee", 0) {
+				double[][][] comp;
+				int[] niv;
+				double[][] plan;
 
-			/**
-			 * Transformee
-			 */
-			TraitImage.haar2D_multi(donnee, erreur, niv_resolution);
+				void calculer() {
+					if (couleur) {
+						/**
+						 * Transformee des trois composantes, en parallele
+						 */
+						niv = TraitImage.niveauxComposantes(niv_resolution, sousEch);
+						comp = TraitImage.haar2D_composantes(
+								TraitImage.composantesCouleur(source, espace, sousEch),
+								niv);
+					} else {
+						/**
+						 * Transformee en cache, ou derivee d'une transformee
+						 * en cache a moins de niveaux
+						 */
+						plan = cacheTransformees.haar(Iori, niv_resolution);
+					}
+				}
 
-			/**
-			 * Generer l'image transformee
-			 */
-			double[][] erreurAbs = new double[erreur.length][erreur[0].length];
-			for (int i = 0; i < erreurAbs.length; i++)
-				for (int j = 0; j < erreurAbs[0].length; j++) {
-					/*
-					 * if (erreur[i][j]<0) System.out.println(erreur[i][j]+" ");
+				void appliquer() {
+					// l'affichage precedent n'est remplace qu'a la fin d'une
+					// transformee aboutie
+					modifName.setText("");
+					modifCadre.dispose();
+					erreurCadre.dispose();
+					if (couleur) {
+						nivComposantes = niv;
+						composantes = comp;
+						erreur = composantes[0];
+					} else {
+						composantes = null;
+						erreur = plan;
+					}
+					/**
+					 * L'image transformee n'est generee que si elle est affichee
 					 */
-					erreurAbs[i][j] = Math.abs(erreur[i][j]);
-
+					erreurIm = null;
+					erreurModule = true;
+					erreurName.setText("E" + oriName.getText());
 				}
-			erreurIm = TraitImage.setPixelTab(erreurAbs);
+			});
+			return;
 		}
 		// #############################################################
 		
+		modifName.setText("");
+		modifCadre.dispose();
+		erreurCadre.dispose();
 		erreurName.setText("E" + oriName.getText());
 	}
 	
@@ -831,22 +1075,195 @@ public class menu extends JFrame {
 	 * @param transformee
 	 * @param niv_resolution
 	 */
-	public void doTransInverse(double[][] err, String transformee,
-			int niv_resolution){
+	public void doTransInverse(final double[][] err, String transformee,
+			final int niv_resolution){
 		
-		modifName.setText("");
-		modifCadre.dispose();
+		if(composantes != null && transformee.equals("Transformee en ondelettes de Haar")){
+			final double[][][] comp = composantes;
+			final int[] niv = nivComposantes;
+			final int espace = espaceCouleur;
+			lancer(new Tache("Transformee inverse", 0) {
+				BufferedImage image;
 
-		double[][] x_rec = new double[err.length][err[0].length];
+				void calculer() {
+					// l'inverse travaille en place : les composantes restent
+					// codables
+					double[][][] copie = new double[comp.length][][];
+					for (int c = 0; c < copie.length; c++) {
+						copie[c] = new double[comp[c].length][];
+						for (int i = 0; i < copie[c].length; i++)
+							copie[c][i] = comp[c][i].clone();
+					}
+					image = TraitImage.imageCouleur(
+							TraitImage.haar2D_composantes_inv(copie, niv),
+							espace);
+				}
+
+				void appliquer() {
+					afficherInverse(image);
+				}
+			});
+			return;
+		}
 
 		if(transformee.equals("Transformee en ondelettes de Haar")){
-			TraitImage.haar2D_multi_inv(err, x_rec, niv_resolution);
+			lancer(new Tache("Transformee inverse", 0) {
+				BufferedImage image;
+
+				void calculer() {
+					// err reste affichable et codable : l'inverse travaille en
+					// place sur une copie et ecrit directement dans l'image
+					double[][] x_rec = new double[err.length][];
+					for (int i = 0; i < x_rec.length; i++)
+						x_rec[i] = err[i].clone();
+					image = ChaineCodage.reconstruire(x_rec, niv_resolution);
+				}
+
+				void appliquer() {
+					afficherInverse(image);
+				}
+			});
+		}
+		else
+			afficherInverse(TraitImage.setPixelTab(new double[err.length][err[0].length]));
+	}
+
+	/**
+	 * Remplace l'image reconstituee par le resultat d'une transformee inverse
+	 * @param im image reconstituee
+	 */
+	private void afficherInverse(BufferedImage im) {
+		modifCadre.dispose();
+		modifIm = im;
+		modifName.setText("M" + oriName.getText());
+	}
+
+	/**
+	 * Lance un traitement long : les boutons de traitement sont desactives
+	 * jusqu'a sa fin, seul Annuler reste actif.
+	 * @param t traitement
+	 */
+	private void lancer(Tache t) {
+		tache = t;
+		activerTraitements(false);
+		jButtonAnnuler.setEnabled(true);
+		jProgress.setValue(0);
+		jProgress.setIndeterminate(true);
+		jProgress.setString(t.nom + "...");
+		t.execute();
+	}
+
+	private void activerTraitements(boolean actif) {
+		JButton[] boutons = { jButtonOpenImage, jButtonOpenBitstream,
+				jButtonTransformee, jButtonTransInverse, jButtonCodage,
+				jButtonDecodage, jButHisto, jButQualite, BAfficheOri,
+				BAffichErreur, BAffichModif };
+		for (JButton b : boutons)
+			b.setEnabled(actif);
+	}
+
+	/**
+	 * Traitement long (transformee, codage, decodage) execute hors du thread
+	 * de l'interface.
+	 * <p>
+	 * calculer() s'execute en arriere-plan sans toucher a l'etat de la fenetre,
+	 * appliquer() installe ensuite son resultat sur le thread de l'interface.
+	 * Les passes ZTW sont publiees vers la barre de progression. Annuler leve
+	 * un drapeau que le codeur consulte entre deux passes : le traitement se
+	 * termine alors par une InterruptedIOException et son resultat est ignore.
+	 * </p>
+	 */
+	private abstract class Tache extends SwingWorker<Void, double[]>
+			implements SuiviCodage {
+		final String nom;
+		/**
+		 * Taille attendue du flux (octets), 0 si inconnue
+		 */
+		private final long total;
+		private volatile boolean annule;
+
+		Tache(String nom, long total) {
+			this.nom = nom;
+			this.total = total;
+		}
+
+		abstract void calculer() throws Exception;
+
+		void appliquer() {
+		}
+
+		void annuler() {
+			annule = true;
+			jButtonAnnuler.setEnabled(false);
+			jProgress.setString(nom + " : annulation...");
+		}
+
+		public boolean estAnnule() {
+			return annule;
+		}
+
+		public void passe(int numero, long octets, double seuil) {
+			publish(new double[] { numero, octets, seuil });
+		}
+
+		protected Void doInBackground() throws Exception {
+			calculer();
+			return null;
+		}
+
+		protected void process(List<double[]> passes) {
+			if (annule)
+				return;
+			double[] p = passes.get(passes.size() - 1);
+			if (total > 0) {
+				jProgress.setIndeterminate(false);
+				jProgress.setMaximum((int) Math.min(Integer.MAX_VALUE, total));
+				jProgress.setValue((int) Math.min(total, (long) p[1]));
+			}
+			jProgress.setString(nom + " : passe " + (int) p[0] + ", "
+					+ ((long) p[1] / 1000) + " ko, seuil " + p[2]);
+		}
+
+		protected void done() {
+			tache = null;
+			activerTraitements(true);
+			jButtonAnnuler.setEnabled(false);
+			jProgress.setIndeterminate(false);
+			jProgress.setValue(0);
+			try {
+				get();
+				if (annule) {
+					jProgress.setString(nom + " annule");
+				} else {
+					appliquer();
+					jProgress.setString(nom + " termine");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof InterruptedIOException) {
+					jProgress.setString(nom + " annule");
+					return;
+				}
+				jProgress.setString(nom + " : echec");
+				JOptionPane.showMessageDialog(null, "Echec : "
+						+ cause.getMessage(), "Erreur",
+						JOptionPane.ERROR_MESSAGE);
+			}
 		}
-		
-		modifIm = TraitImage.setPixelTab(x_rec);
-		
-		String nom = "M" + oriName.getText();
-		modifName.setText(nom);
+	}
+
+	/**
+	 * Image d'affichage de erreur, generee a la premiere demande
+	 * @return module des coefficients apres transformee ou codage, valeurs
+	 *         saturees apres decodage
+	 */
+	BufferedImage imageErreur() {
+		if (erreurIm == null)
+			erreurIm = erreurModule ? ChaineCodage.imageModule(erreur)
+					: TraitImage.setPixelTab(erreur);
+		return erreurIm;
 	}
 
 	void jButton2_actionPerformed(ActionEvent e) {
@@ -880,7 +1297,7 @@ public class menu extends JFrame {
 					Color.red, modifEntrop);
 
 			double delta = histoGraphModif.getSize().getWidth() / 2;
-			this.modifHisto = TraitImage.calculHisto(modifIm);
+			this.modifHisto = MoteurHisto.compterLuminance(modifIm);
 			this.modifEntrop = TraitImage.calculEntropie(this.modifHisto,
 					modifIm.getHeight() * modifIm.getWidth());
 			histoGraphModif.valeurHisto = this.modifHisto;
@@ -898,9 +1315,10 @@ public class menu extends JFrame {
 					Color.green, erreurEntrop);
 
 			double delta = histoGraphErreur.getSize().getWidth() / 2;
-			this.erreurHisto = TraitImage.calculHisto(erreurIm);
+			BufferedImage im = imageErreur();
+			this.erreurHisto = TraitImage.calculHisto(im);
 			this.erreurEntrop = TraitImage.calculEntropie(this.erreurHisto,
-					erreurIm.getHeight() * erreurIm.getWidth());
+					im.getHeight() * im.getWidth());
 			histoGraphErreur.valeurHisto = this.erreurHisto;
 			this.histoGraphErreur.entropie = this.erreurEntrop;
 
@@ -912,6 +1330,41 @@ public class menu extends JFrame {
 
 	}
 
+	/**
+	 * Mesure de qualite de l'image reconstituee par rapport a l'originale
+	 * @param e
+	 */
+	void jButQualite_actionPerformed(ActionEvent e) {
+		if (oriName.getText().length() == 0 || modifName.getText().length() == 0) {
+			JOptionPane.showMessageDialog(null,
+					"Ouvrir une image et la reconstituer avant de mesurer sa qualite",
+					"Erreur", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		final BufferedImage originale = bufIm, reconstruite = modifIm;
+		if (originale.getWidth() != reconstruite.getWidth()
+				|| originale.getHeight() != reconstruite.getHeight()) {
+			JOptionPane.showMessageDialog(null,
+					"Images originale et reconstituee de dimensions differentes",
+					"Erreur", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		lancer(new Tache("Qualite", 0) {
+			Qualite q;
+
+			void calculer() {
+				q = Qualite.mesurer(originale, reconstruite);
+			}
+
+			void appliquer() {
+				System.out.println("Qualite de " + modifName.getText() + " : " + q);
+				JOptionPane.showMessageDialog(null, "Image reconstituee "
+						+ modifName.getText() + " :\n" + q, "Qualite",
+						JOptionPane.INFORMATION_MESSAGE);
+			}
+		});
+	}
+
 	void BAfficheOri_actionPerformed(ActionEvent e) {
 		if (this.oriName.getText().length() > 0) {
 			oriCadre.setName("oriCadre");
@@ -922,7 +1375,7 @@ public class menu extends JFrame {
 	void BAffichErreur_actionPerformed(ActionEvent e) {
 		if (this.erreurName.getText().length() > 0) {
 			erreurCadre.setName("erreurCadre");
-			afficherIm(erreurIm, erreurCadre, "Erreur prediction : "
+			afficherIm(imageErreur(), erreurCadre, "Erreur prediction : "
 					+ this.erreurName.getText());
 		}
 